@@ -0,0 +1,11 @@
+package com.swp391.bookverse.configuration;
+
+/**
+ * Principal built from the JWT claims of a request, no database lookup involved.
+ * @param id user id ("uid" claim), null for tokens issued before the claim existed
+ * @param username subject
+ * @param scope space separated roles
+ * @param active active flag when the token was issued
+ */
+public record AuthenticatedUser(String id, String username, String scope, boolean active) {
+}
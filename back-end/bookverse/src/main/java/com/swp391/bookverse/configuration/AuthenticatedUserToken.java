@@ -0,0 +1,38 @@
+package com.swp391.bookverse.configuration;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.Collection;
+
+/**
+ * Authentication of a request carrying a valid JWT, with an {@link AuthenticatedUser} as principal.
+ * getName() stays the username, as with the default JwtAuthenticationToken.
+ */
+public class AuthenticatedUserToken extends AbstractAuthenticationToken {
+    private final AuthenticatedUser principal;
+    private final Jwt jwt;
+
+    public AuthenticatedUserToken(AuthenticatedUser principal, Jwt jwt, Collection<? extends GrantedAuthority> authorities) {
+        super(authorities);
+        this.principal = principal;
+        this.jwt = jwt;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public AuthenticatedUser getPrincipal() {
+        return principal;
+    }
+
+    @Override
+    public Jwt getCredentials() {
+        return jwt;
+    }
+
+    @Override
+    public String getName() {
+        return principal.username();
+    }
+}
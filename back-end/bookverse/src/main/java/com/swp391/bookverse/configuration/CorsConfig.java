@@ -25,10 +25,10 @@ public class CorsConfig {
 
         cfg.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         cfg.setAllowedHeaders(Arrays.asList(
-                "Authorization", "Content-Type", "X-Requested-With", "Accept", "Origin"
+                "Authorization", "Content-Type", "X-Requested-With", "Accept", "Origin", "Idempotency-Key"
         ));
         cfg.setExposedHeaders(Arrays.asList(
-                "Authorization", "Link", "X-Total-Count"
+                "Authorization", "Link", "X-Total-Count", "Idempotent-Replayed"
         ));
 
         // You’re using Bearer JWT (Authorization header), so credentials usually aren’t needed.
@@ -0,0 +1,114 @@
+package com.swp391.bookverse.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.service.idempotency.IdempotencyStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Deduplicates retries of non-idempotent endpoints (checkout, payment creation) sent with an Idempotency-Key header.
+ * <p>
+ * The first request with a key runs normally and its successful response is stored; a repeated key gets the
+ * stored bytes back without running the handler again. Failed executions are not stored, so they can be retried.
+ * Runs after the Spring Security filter chain, keys are scoped to the authenticated user.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    IdempotencyStore idempotencyStore;
+    ObjectMapper objectMapper;
+
+    @NonFinal
+    @Value("${idempotency.paths:/api/orders/checkout,/api/payments/create}")
+    List<String> paths;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(IDEMPOTENCY_KEY_HEADER) == null || !paths.contains(pathOf(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String principal = authentication != null ? authentication.getName() : "anonymous";
+
+        String key;
+        IdempotencyStore.StoredResponse stored;
+        try {
+            key = idempotencyStore.keyOf(principal, request.getMethod(), pathOf(request), request.getHeader(IDEMPOTENCY_KEY_HEADER));
+            stored = idempotencyStore.begin(key);
+        } catch (AppException e) {
+            writeError(response, e);
+            return;
+        }
+
+        if (stored != null) {
+            response.setStatus(stored.status());
+            if (stored.contentType() != null) {
+                response.setContentType(stored.contentType());
+            }
+            response.setHeader(REPLAYED_HEADER, "true");
+            response.setContentLength(stored.body() != null ? stored.body().length : 0);
+            if (stored.body() != null) {
+                response.getOutputStream().write(stored.body());
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, wrapper);
+            if (wrapper.getStatus() >= 200 && wrapper.getStatus() < 300) {
+                idempotencyStore.complete(key, new IdempotencyStore.StoredResponse(
+                        wrapper.getStatus(), wrapper.getContentType(), wrapper.getContentAsByteArray()));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                idempotencyStore.release(key);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private void writeError(HttpServletResponse response, AppException e) throws IOException {
+        APIResponse<?> body = new APIResponse<>();
+        body.setCode(e.getErrorCode().getCode());
+        body.setMessage(e.getErrorCode().getMessage());
+
+        response.setStatus(e.getErrorCode() == ErrorCode.IDEMPOTENCY_KEY_INVALID
+                ? HttpStatus.BAD_REQUEST.value() : HttpStatus.CONFLICT.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(objectMapper.writeValueAsString(body));
+    }
+}
@@ -0,0 +1,199 @@
+package com.swp391.bookverse.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.service.ratelimit.RateLimit;
+import com.swp391.bookverse.service.ratelimit.RateLimitKey;
+import com.swp391.bookverse.service.ratelimit.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies the @RateLimit rules of controller methods, ahead of the Spring Security filter chain.
+ * <p>
+ * The annotated handler methods are collected once; a request is matched against those few mappings only,
+ * and a rejected request gets 429 with Retry-After without reaching JWT decoding, JSON binding or MySQL.
+ * Endpoints keyed by a body field take small JSON bodies: the body is read up front, a larger one gets 413.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 10)
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RateLimitFilter extends OncePerRequestFilter {
+    static final int MAX_BODY_BYTES = 16 * 1024;
+
+    RateLimiter rateLimiter;
+    RequestMappingHandlerMapping handlerMapping;
+    ObjectMapper objectMapper;
+
+    @NonFinal
+    @Value("${rate-limit.enabled:true}")
+    boolean enabled;
+
+    @NonFinal
+    volatile List<Rule> rules;
+
+    private record Rule(RequestMappingInfo mapping, Set<RateLimit> limits, boolean readsBody) {
+    }
+
+    public RateLimitFilter(RateLimiter rateLimiter,
+                           @Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping handlerMapping,
+                           ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.handlerMapping = handlerMapping;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || CorsUtils.isPreFlightRequest(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Rule rule = match(request);
+        if (rule == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest effective = request;
+        JsonNode json = null;
+        if (rule.readsBody()) {
+            byte[] body = request.getInputStream().readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                write(response, HttpStatus.PAYLOAD_TOO_LARGE, ErrorCode.REQUEST_TOO_LARGE);
+                return;
+            }
+            effective = new CachedBodyRequest(request, body);
+            try {
+                json = objectMapper.readTree(body);
+            } catch (IOException e) {
+                // not JSON, the IP is used instead
+            }
+        }
+
+        for (RateLimit limit : rule.limits()) {
+            String key = limit.name() + ':' + keyOf(limit, request, json);
+            long waitMs = rateLimiter.tryAcquire(key, limit.capacity(), limit.periodSeconds());
+            if (waitMs > 0) {
+                reject(response, waitMs);
+                return;
+            }
+        }
+        filterChain.doFilter(effective, response);
+    }
+
+    private Rule match(HttpServletRequest request) {
+        List<Rule> current = rules;
+        if (current == null) {
+            current = rules = collectRules();
+        }
+        if (current.isEmpty()) {
+            return null;
+        }
+        boolean parsed = ServletRequestPathUtils.hasParsedRequestPath(request);
+        if (!parsed) {
+            ServletRequestPathUtils.parseAndCache(request);
+        }
+        try {
+            for (Rule rule : current) {
+                if (rule.mapping().getMatchingCondition(request) != null) {
+                    return rule;
+                }
+            }
+            return null;
+        } finally {
+            if (!parsed) {
+                ServletRequestPathUtils.clearParsedRequestPath(request);
+            }
+        }
+    }
+
+    private List<Rule> collectRules() {
+        List<Rule> collected = new ArrayList<>();
+        handlerMapping.getHandlerMethods().forEach((mapping, method) -> {
+            Set<RateLimit> limits = AnnotatedElementUtils.findMergedRepeatableAnnotations(method.getMethod(), RateLimit.class);
+            if (!limits.isEmpty()) {
+                boolean readsBody = limits.stream().anyMatch(limit -> limit.key() == RateLimitKey.BODY_FIELD);
+                collected.add(new Rule(mapping, limits, readsBody));
+            }
+        });
+        return List.copyOf(collected);
+    }
+
+    private static String keyOf(RateLimit limit, HttpServletRequest request, JsonNode json) {
+        switch (limit.key()) {
+            case USER -> {
+                String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+                // the token is not verified yet, so its hash is the key rather than its (forgeable) subject
+                if (authorization != null && authorization.startsWith("Bearer ")) {
+                    return "t" + sha256(authorization);
+                }
+            }
+            case BODY_FIELD -> {
+                JsonNode value = json != null ? json.get(limit.field()) : null;
+                if (value != null && value.isValueNode() && !value.asText().isBlank()) {
+                    return "f" + value.asText().trim().toLowerCase();
+                }
+            }
+            default -> {
+            }
+        }
+        return "ip" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, long waitMs) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max((waitMs + 999) / 1000, 1)));
+        write(response, HttpStatus.TOO_MANY_REQUESTS, ErrorCode.RATE_LIMITED);
+    }
+
+    private void write(HttpServletResponse response, HttpStatus status, ErrorCode errorCode) throws IOException {
+        APIResponse<?> body = new APIResponse<>();
+        body.setCode(errorCode.getCode());
+        body.setMessage(errorCode.getMessage());
+
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(objectMapper.writeValueAsString(body));
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
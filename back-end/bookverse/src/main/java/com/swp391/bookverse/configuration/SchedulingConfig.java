@@ -0,0 +1,14 @@
+package com.swp391.bookverse.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (cart write-behind flush, cleanup jobs, ...).
+ * They share the pool sized by spring.task.scheduling.pool.size; jobs that wait on a remote server hand the
+ * waiting off to their own executor.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,5 +1,6 @@
 package com.swp391.bookverse.configuration;
 
+import com.swp391.bookverse.service.auth.TokenDenyList;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -14,8 +15,15 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
 import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.web.SecurityFilterChain;
 
@@ -36,6 +44,8 @@ import java.nio.charset.StandardCharsets;
 @EnableWebSecurity
 @EnableMethodSecurity
 public class SecurityConfig {
+    TokenDenyList tokenDenyList;
+
     // JWT signing key, used to sign and verify JWT tokens.
     @NonFinal
     @Value("${jwt.signerKey}")
@@ -43,10 +53,10 @@ public class SecurityConfig {
 
     // Define endpoint access rules based on user roles and HTTP methods
 
-    String[] PUBLIC_POST_ENDPOINTS = {"api/auth/token", "api/auth/introspect", "api/users/create", "api/users/signup", "api/otp/**"};
-    String[] PUBLIC_GET_ENDPOINTS = {"api/users/id-by-email/**","api/users/myInfo","api/users/is-active/**","api/authors/**", "api/books/**",
+    String[] PUBLIC_POST_ENDPOINTS = {"api/auth/token", "api/auth/introspect", "api/auth/refresh", "api/auth/logout", "api/users/create", "api/users/signup", "api/otp/**"};
+    String[] PUBLIC_GET_ENDPOINTS = {"api/users/id-by-email/**","api/users/availability","api/users/myInfo","api/users/is-active/**","api/authors/**", "api/books/**",
             "api/publishers/**", "api/sup-categories/**", "api/sub-categories/**", "api/cart/myCart", "api/payments/create", "api/payments/**",
-            "api/payments/vnpay-return/**", "api/reviews/**"};
+            "api/payments/vnpay-return/**", "api/reviews/**", "api/flash-sale/books"};
     String[] PUBLIC_PUT_ENDPOINTS = {"api/users/myInfo", "api/users/change-my-password"};
 
     String[] ADMIN_GET_ENDPOINTS = {"api/users/**"};
@@ -95,7 +105,9 @@ public class SecurityConfig {
 
         // Configure ability to use form login and basic authentication
         httpSecurity.oauth2ResourceServer(oauth2 ->
-                oauth2.jwt(jwtConfigurer -> jwtConfigurer.decoder(jwtDecoder()))
+                oauth2.jwt(jwtConfigurer -> jwtConfigurer.decoder(jwtDecoder())
+                        // principal carries the user id from the token, services skip the user table
+                        .jwtAuthenticationConverter(new UserJwtAuthenticationConverter()))
         );
 
         // Disable CSRF protection for simplicity in this example.
@@ -106,16 +118,23 @@ public class SecurityConfig {
 
     /**
      * Creates a JwtDecoder bean that uses a secret key to decode JWT tokens.
+     * Besides the default checks (expiry), a token must not be on the deny list.
      *
      * @return JwtDecoder configured with the secret key and HS512 algorithm.
      */
     @Bean
     JwtDecoder jwtDecoder() {
         SecretKeySpec secretKeySpec = new SecretKeySpec(SIGNER_KEY.getBytes(StandardCharsets.UTF_8), "HS512");
-        return NimbusJwtDecoder
+        NimbusJwtDecoder decoder = NimbusJwtDecoder
                 .withSecretKey(secretKeySpec)
                 .macAlgorithm(MacAlgorithm.HS512)
                 .build();
+        OAuth2TokenValidator<Jwt> notRevoked = jwt -> tokenDenyList.isRevoked(jwt.getId(),
+                jwt.getClaimAsString(UserJwtAuthenticationConverter.USER_ID_CLAIM), jwt.getIssuedAt())
+                ? OAuth2TokenValidatorResult.failure(new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN, "Token has been revoked", null))
+                : OAuth2TokenValidatorResult.success();
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(JwtValidators.createDefault(), notRevoked));
+        return decoder;
     }
 
     @Bean
@@ -0,0 +1,24 @@
+package com.swp391.bookverse.configuration;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+
+/**
+ * Turns a decoded JWT into an {@link AuthenticatedUserToken}. Authorities are the SCOPE_ ones, as before.
+ */
+public class UserJwtAuthenticationConverter implements Converter<Jwt, AbstractAuthenticationToken> {
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ACTIVE_CLAIM = "active";
+
+    private final JwtGrantedAuthoritiesConverter authoritiesConverter = new JwtGrantedAuthoritiesConverter();
+
+    @Override
+    public AbstractAuthenticationToken convert(Jwt jwt) {
+        Boolean active = jwt.getClaimAsBoolean(ACTIVE_CLAIM);
+        AuthenticatedUser user = new AuthenticatedUser(jwt.getClaimAsString(USER_ID_CLAIM), jwt.getSubject(),
+                jwt.getClaimAsString("scope"), active == null || active);
+        return new AuthenticatedUserToken(user, jwt, authoritiesConverter.convert(jwt));
+    }
+}
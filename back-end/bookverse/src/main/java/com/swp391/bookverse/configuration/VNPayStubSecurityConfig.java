@@ -0,0 +1,31 @@
+package com.swp391.bookverse.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+
+/**
+ * Opens the querydr stand-in of the VNPay stub to the reconciliation job, which calls it without a token like it
+ * calls VNPay. Registered only with the stub, so the path is never public in a production configuration.
+ */
+@Configuration
+@ConditionalOnProperty(name = "vnpay.stub.enabled", havingValue = "true")
+public class VNPayStubSecurityConfig {
+
+    /**
+     * Matched before the main chain of SecurityConfig, for POST /api/vnpay-stub/querydr only.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain vnPayStubFilterChain(HttpSecurity httpSecurity) throws Exception {
+        httpSecurity.securityMatcher(PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.POST, "/api/vnpay-stub/querydr"))
+                .authorizeHttpRequests(request -> request.anyRequest().permitAll())
+                .csrf(httpSecurityCsrfConfigurer -> httpSecurityCsrfConfigurer.disable());
+        return httpSecurity.build();
+    }
+}
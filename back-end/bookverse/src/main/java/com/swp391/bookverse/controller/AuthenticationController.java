@@ -3,9 +3,12 @@ package com.swp391.bookverse.controller;
 import com.swp391.bookverse.dto.APIResponse;
 import com.swp391.bookverse.dto.request.AuthenticationRequest;
 import com.swp391.bookverse.dto.request.IntrospectRequest;
+import com.swp391.bookverse.dto.request.LogoutRequest;
+import com.swp391.bookverse.dto.request.RefreshTokenRequest;
 import com.swp391.bookverse.dto.response.AuthenticationResponse;
 import com.swp391.bookverse.dto.response.IntrospectResponse;
 import com.swp391.bookverse.service.AuthenticationService;
+import com.swp391.bookverse.service.ratelimit.RateLimit;
 import com.nimbusds.jose.JOSEException;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -33,6 +36,7 @@ public class AuthenticationController {
      * @return APIResponse with AuthenticationResponse containing authentication status and JWT token.
      */
     @PostMapping("/token")
+    @RateLimit(name = "auth-token", capacity = 60, periodSeconds = 60)
     public APIResponse<AuthenticationResponse> authenticate(@RequestBody AuthenticationRequest request) {
 
         AuthenticationResponse response = authenticationService.authenticate(request);
@@ -43,10 +47,39 @@ public class AuthenticationController {
                 .result(AuthenticationResponse.builder()
                         .authenticated(response.isAuthenticated())
                         .token(response.getToken())
+                        .refreshToken(response.getRefreshToken())
+                        .expiresIn(response.getExpiresIn())
                         .build())
                 .build();
     }
 
+    /**
+     * Exchange a refresh token for a new access token and refresh token.
+     * @param request
+     * @return APIResponse with AuthenticationResponse containing the new tokens.
+     */
+    @PostMapping("/refresh")
+    @RateLimit(name = "auth-refresh", capacity = 60, periodSeconds = 60)
+    public APIResponse<AuthenticationResponse> refresh(@RequestBody RefreshTokenRequest request) {
+        APIResponse<AuthenticationResponse> response = new APIResponse<>();
+        response.setResult(authenticationService.refresh(request));
+        return response;
+    }
+
+    /**
+     * Revoke the given access token and refresh token.
+     * @param request
+     * @return APIResponse with no result
+     */
+    @PostMapping("/logout")
+    @RateLimit(name = "auth-logout", capacity = 60, periodSeconds = 60)
+    public APIResponse<Void> logout(@RequestBody LogoutRequest request) {
+        authenticationService.logout(request);
+        return APIResponse.<Void>builder()
+                .message("Logged out")
+                .build();
+    }
+
     /**
      * Introspect a JWT token to check its validity.
      * @param request
@@ -55,6 +88,7 @@ public class AuthenticationController {
      * @throws JOSEException
      */
     @PostMapping("/introspect")
+    @RateLimit(name = "auth-introspect", capacity = 600, periodSeconds = 60)
     public APIResponse<IntrospectResponse> introspect(@RequestBody IntrospectRequest request) throws ParseException, JOSEException {
 
         IntrospectResponse response = authenticationService.introspect(request);
@@ -0,0 +1,60 @@
+package com.swp391.bookverse.controller;
+
+import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.dto.request.CampaignCreationRequest;
+import com.swp391.bookverse.dto.response.CampaignResponse;
+import com.swp391.bookverse.service.mail.CampaignMailer;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/campaigns")
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class CampaignController {
+    CampaignMailer campaignMailer;
+
+    /**
+     * Email a promotion to every active customer (admin only).
+     * @param request promotion, optional subject and template
+     * @return APIResponse with the started campaign
+     */
+    @PostMapping
+    public APIResponse<CampaignResponse> createCampaign(@RequestBody CampaignCreationRequest request) {
+        APIResponse<CampaignResponse> response = new APIResponse<>();
+        response.setResult(campaignMailer.create(request));
+        return response;
+    }
+
+    /**
+     * Progress of a campaign (admin only).
+     */
+    @GetMapping("/{id}")
+    public APIResponse<CampaignResponse> getCampaign(@PathVariable("id") Long id) {
+        APIResponse<CampaignResponse> response = new APIResponse<>();
+        response.setResult(campaignMailer.get(id));
+        return response;
+    }
+
+    /**
+     * Stop a campaign after the page being sent (admin only).
+     */
+    @PostMapping("/{id}/pause")
+    public APIResponse<CampaignResponse> pauseCampaign(@PathVariable("id") Long id) {
+        APIResponse<CampaignResponse> response = new APIResponse<>();
+        response.setResult(campaignMailer.pause(id));
+        return response;
+    }
+
+    /**
+     * Continue a paused campaign from its checkpoint (admin only).
+     */
+    @PostMapping("/{id}/resume")
+    public APIResponse<CampaignResponse> resumeCampaign(@PathVariable("id") Long id) {
+        APIResponse<CampaignResponse> response = new APIResponse<>();
+        response.setResult(campaignMailer.resume(id));
+        return response;
+    }
+}
@@ -2,15 +2,19 @@ package com.swp391.bookverse.controller;
 
 import com.swp391.bookverse.dto.APIResponse;
 import com.swp391.bookverse.dto.request.AddToCartRequest;
+import com.swp391.bookverse.dto.request.CartBatchRequest;
 import com.swp391.bookverse.dto.request.CartItemUpdateRequest;
 import com.swp391.bookverse.dto.response.CartResponse;
+import com.swp391.bookverse.dto.response.CartSummaryResponse;
+import com.swp391.bookverse.dto.response.PageResponse;
 import com.swp391.bookverse.service.CartService;
+import com.swp391.bookverse.service.ratelimit.RateLimit;
+import com.swp391.bookverse.service.ratelimit.RateLimitKey;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 
 /**
  * @Author huangdat
@@ -23,10 +27,11 @@ public class CartController {
     CartService cartService;
 
     @GetMapping
-    public APIResponse<List<CartResponse>> getCarts() {
-        APIResponse<List<CartResponse>> response = new APIResponse<>();
-        List<CartResponse> cartResponses = cartService.getCarts();
-        response.setResult(cartResponses);
+    public APIResponse<PageResponse<CartSummaryResponse>> getCarts(
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        APIResponse<PageResponse<CartSummaryResponse>> response = new APIResponse<>();
+        response.setResult(cartService.getCarts(page, size));
         return response;
     }
 
@@ -46,6 +51,7 @@ public class CartController {
     }
 
     @PostMapping("/myCart/add-1-to-cart")
+    @RateLimit(name = "cart-write", key = RateLimitKey.USER, capacity = 60, periodSeconds = 60)
     public APIResponse<CartResponse> addToCart(@RequestBody AddToCartRequest request) {
         APIResponse<CartResponse> response = new APIResponse<>();
         CartResponse cartResponse = cartService.addOneToCart(request);
@@ -54,6 +60,7 @@ public class CartController {
     }
 
     @PostMapping("/myCart/add-multiple-to-cart")
+    @RateLimit(name = "cart-write", key = RateLimitKey.USER, capacity = 60, periodSeconds = 60)
     public APIResponse<CartResponse> addMultipleToCart(@RequestBody CartItemUpdateRequest request) {
         APIResponse<CartResponse> response = new APIResponse<>();
         CartResponse cartResponse = cartService.addMultipleToCart(request);
@@ -62,6 +69,7 @@ public class CartController {
     }
 
     @PostMapping("/myCart/remove-1-from-cart")
+    @RateLimit(name = "cart-write", key = RateLimitKey.USER, capacity = 60, periodSeconds = 60)
     public APIResponse<CartResponse> removeFromCart(@RequestBody AddToCartRequest request) {
         APIResponse<CartResponse> response = new APIResponse<>();
         CartResponse cartResponse = cartService.removeOneFromCart(request);
@@ -70,6 +78,7 @@ public class CartController {
     }
 
     @PostMapping("/myCart/clear-an-item")
+    @RateLimit(name = "cart-write", key = RateLimitKey.USER, capacity = 60, periodSeconds = 60)
     public APIResponse<CartResponse> clearAnItem(@RequestBody AddToCartRequest request) {
         APIResponse<CartResponse> response = new APIResponse<>();
         CartResponse cartResponse = cartService.clearAnItem(request);
@@ -78,6 +87,7 @@ public class CartController {
     }
 
     @PutMapping("myCart/update-item-quantity")
+    @RateLimit(name = "cart-write", key = RateLimitKey.USER, capacity = 60, periodSeconds = 60)
     public APIResponse<CartResponse> updateItemQuantity(@RequestBody CartItemUpdateRequest request) {
         APIResponse<CartResponse> response = new APIResponse<>();
         CartResponse cartResponse = cartService.updateItemQuantity(request);
@@ -85,4 +95,18 @@ public class CartController {
         return response;
     }
 
+    /**
+     * Apply several add / remove / set-quantity operations to current user's cart in one round trip.
+     * @param request ordered list of operations
+     * @return APIResponse with the final cart
+     */
+    @PostMapping("/myCart/batch")
+    @RateLimit(name = "cart-write", key = RateLimitKey.USER, capacity = 60, periodSeconds = 60)
+    public APIResponse<CartResponse> applyBatch(@RequestBody CartBatchRequest request) {
+        APIResponse<CartResponse> response = new APIResponse<>();
+        CartResponse cartResponse = cartService.applyBatch(request);
+        response.setResult(cartResponse);
+        return response;
+    }
+
 }
\ No newline at end of file
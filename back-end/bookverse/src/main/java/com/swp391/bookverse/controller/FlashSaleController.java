@@ -0,0 +1,44 @@
+package com.swp391.bookverse.controller;
+
+import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.dto.request.FlashSalePurchaseRequest;
+import com.swp391.bookverse.dto.response.FlashSalePurchaseResponse;
+import com.swp391.bookverse.service.flashsale.FlashSaleService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/flash-sale")
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class FlashSaleController {
+    FlashSaleService flashSaleService;
+
+    /**
+     * Ids of the books in a running flash sale.
+     * @return APIResponse with the book ids
+     */
+    @GetMapping("/books")
+    public APIResponse<List<Long>> getFlashSaleBooks() {
+        APIResponse<List<Long>> response = new APIResponse<>();
+        response.setResult(new ArrayList<>(flashSaleService.getFlashSaleBooks()));
+        return response;
+    }
+
+    /**
+     * Buy units of a flash-sale book, they are held for the current user until checkout.
+     * @param request
+     * @return APIResponse with the purchase result
+     */
+    @PostMapping("/purchase")
+    public APIResponse<FlashSalePurchaseResponse> purchase(@RequestBody FlashSalePurchaseRequest request) {
+        APIResponse<FlashSalePurchaseResponse> response = new APIResponse<>();
+        response.setResult(flashSaleService.purchase(request));
+        return response;
+    }
+}
@@ -0,0 +1,61 @@
+package com.swp391.bookverse.controller;
+
+import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.dto.response.EmbeddedSmtpResponse;
+import com.swp391.bookverse.dto.response.MailStatsResponse;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.service.mail.EmbeddedSmtpServer;
+import com.swp391.bookverse.service.mail.MailDispatcher;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/mail")
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class MailController {
+    MailDispatcher mailDispatcher;
+    ObjectProvider<EmbeddedSmtpServer> embeddedSmtpServer;
+
+    /**
+     * Backlog and delivery counters of the mail queue (admin only).
+     * @return APIResponse with the mail metrics
+     */
+    @GetMapping("/stats")
+    public APIResponse<MailStatsResponse> getStats() {
+        APIResponse<MailStatsResponse> response = new APIResponse<>();
+        response.setResult(mailDispatcher.getStats());
+        return response;
+    }
+
+    /**
+     * Messages received by the embedded SMTP server, when mail.embedded-smtp.enabled is true (admin only).
+     * @param clear empty the received list after reading it
+     * @return APIResponse with the received messages
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    @GetMapping("/embedded-smtp")
+    public APIResponse<EmbeddedSmtpResponse> getEmbeddedSmtpMessages(
+            @RequestParam(value = "clear", defaultValue = "false") boolean clear) {
+        EmbeddedSmtpServer server = embeddedSmtpServer.getIfAvailable();
+        if (server == null) {
+            throw new AppException(ErrorCode.NOT_FOUND);
+        }
+        EmbeddedSmtpResponse result = EmbeddedSmtpResponse.builder()
+                .receivedTotal(server.getReceivedTotal())
+                .connectionsTotal(server.getConnectionsTotal())
+                .messages(server.getMessages())
+                .build();
+        if (clear) {
+            server.clear();
+        }
+        APIResponse<EmbeddedSmtpResponse> response = new APIResponse<>();
+        response.setResult(result);
+        return response;
+    }
+}
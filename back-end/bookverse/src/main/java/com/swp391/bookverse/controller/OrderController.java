@@ -0,0 +1,71 @@
+package com.swp391.bookverse.controller;
+
+import com.swp391.bookverse.configuration.AuthenticatedUser;
+import com.swp391.bookverse.configuration.CurrentUser;
+import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.dto.request.CheckoutRequest;
+import com.swp391.bookverse.dto.response.CursorPageResponse;
+import com.swp391.bookverse.dto.response.OrderResponse;
+import com.swp391.bookverse.enums.OrderStatus;
+import com.swp391.bookverse.service.OrderService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/orders")
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class OrderController {
+    OrderService orderService;
+
+    /**
+     * Get the current user's orders, newest first, one keyset page at a time.
+     * @return APIResponse with the page and the cursor of the next one
+     */
+    @GetMapping("/myOrders")
+    public APIResponse<CursorPageResponse<OrderResponse>> getMyOrders(
+            @CurrentUser AuthenticatedUser user,
+            @RequestParam(value = "status", required = false) OrderStatus status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        APIResponse<CursorPageResponse<OrderResponse>> response = new APIResponse<>();
+        response.setResult(orderService.getMyOrders(user.id(), status, from, to, cursor, size));
+        return response;
+    }
+
+    /**
+     * Get all orders (admin and staff), newest first, one keyset page at a time.
+     * @return APIResponse with the page and the cursor of the next one
+     */
+    @GetMapping
+    public APIResponse<CursorPageResponse<OrderResponse>> getOrders(
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "status", required = false) OrderStatus status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        APIResponse<CursorPageResponse<OrderResponse>> response = new APIResponse<>();
+        response.setResult(orderService.getOrders(userId, status, from, to, cursor, size));
+        return response;
+    }
+
+    /**
+     * Place an order with the items of the current user's cart.
+     * @param request
+     * @return APIResponse with the created order
+     */
+    @PostMapping("/checkout")
+    public APIResponse<OrderResponse> checkout(@RequestBody CheckoutRequest request) {
+        APIResponse<OrderResponse> response = new APIResponse<>();
+        response.setResult(orderService.checkout(request));
+        return response;
+    }
+}
@@ -0,0 +1,30 @@
+package com.swp391.bookverse.controller;
+
+import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.dto.response.OutboxStatsResponse;
+import com.swp391.bookverse.service.outbox.OutboxDispatcher;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/outbox")
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class OutboxController {
+    OutboxDispatcher outboxDispatcher;
+
+    /**
+     * Lag and throughput of background event delivery (admin only).
+     * @return APIResponse with the outbox metrics
+     */
+    @GetMapping("/stats")
+    public APIResponse<OutboxStatsResponse> getStats() {
+        APIResponse<OutboxStatsResponse> response = new APIResponse<>();
+        response.setResult(outboxDispatcher.getStats());
+        return response;
+    }
+}
@@ -7,11 +7,17 @@ import com.swp391.bookverse.dto.APIResponse;
 import com.swp391.bookverse.dto.request.PaymentCreationRequest;
 import com.swp391.bookverse.dto.response.PaymentResponse;
 import com.swp391.bookverse.dto.response.TransactionStatusResponse;
+import com.swp391.bookverse.dto.response.VNPayIpnResponse;
+import com.swp391.bookverse.dto.response.ReconciliationResponse;
+import com.swp391.bookverse.service.payment.PaymentReconciler;
+import com.swp391.bookverse.service.payment.PaymentService;
+import com.swp391.bookverse.service.payment.VNPaySigner;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.UnsupportedEncodingException;
@@ -31,6 +37,12 @@ import static com.swp391.bookverse.configuration.VNPayConfig.*;
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 @RequestMapping("/api/payments")
 public class PaymentController {
+    // Gson is thread-safe, no need for one per response
+    static final Gson GSON = new Gson();
+
+    VNPaySigner vnPaySigner;
+    PaymentService paymentService;
+    PaymentReconciler paymentReconciler;
 
     @GetMapping("/create")
     public ResponseEntity<String> createPayment(@RequestBody PaymentCreationRequest request) throws UnsupportedEncodingException {
@@ -42,6 +54,16 @@ public class PaymentController {
         long amount = 10000*100; // Example amount
 
         String vnp_TxnRef = VNPayConfig.getRandomNumber(8);
+        long createdAt = System.currentTimeMillis();
+
+        // pay an order placed by checkout, IPN callbacks update its payment
+        if (request.getOrderId() != null) {
+            PaymentService.PendingTransaction transaction = paymentService.prepareTransaction(request.getOrderId());
+            amount = transaction.amount();
+            vnp_TxnRef = transaction.txnRef();
+            // the reconciliation job queries VNPay with the same create date
+            createdAt = transaction.createdAt();
+        }
         //String vnp_IpAddr = VNPayConfig.getIpAddress(req);
         String vnp_IpAddr = "171.246.74.195";
 
@@ -49,7 +71,7 @@ public class PaymentController {
 
         String vnp_TmnCode = VNPayConfig.vnp_TmnCode;
 
-        Map<String, String> vnp_Params = new HashMap<>();
+        Map<String, String> vnp_Params = new TreeMap<>();
         vnp_Params.put("vnp_Version", vnp_Version);
         vnp_Params.put("vnp_Command", vnp_Command);
         vnp_Params.put("vnp_TmnCode", vnp_TmnCode);
@@ -64,8 +86,10 @@ public class PaymentController {
         vnp_Params.put("vnp_ReturnUrl", vnp_ReturnUrl);
 
 
-        Calendar cld = Calendar.getInstance(TimeZone.getTimeZone("Etc/GMT+7"));
+        Calendar cld = Calendar.getInstance(TimeZone.getTimeZone(PaymentService.VNPAY_ZONE));
+        cld.setTimeInMillis(createdAt);
         SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
+        formatter.setTimeZone(cld.getTimeZone());
         String vnp_CreateDate = formatter.format(cld.getTime());
         vnp_Params.put("vnp_CreateDate", vnp_CreateDate);
 
@@ -73,32 +97,8 @@ public class PaymentController {
         String vnp_ExpireDate = formatter.format(cld.getTime());
         vnp_Params.put("vnp_ExpireDate", vnp_ExpireDate);
 
-        List fieldNames = new ArrayList(vnp_Params.keySet());
-        Collections.sort(fieldNames);
-        StringBuilder hashData = new StringBuilder();
-        StringBuilder query = new StringBuilder();
-        Iterator itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = (String) itr.next();
-            String fieldValue = (String) vnp_Params.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                //Build hash data
-                hashData.append(fieldName);
-                hashData.append('=');
-                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                //Build query
-                query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII.toString()));
-                query.append('=');
-                query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                if (itr.hasNext()) {
-                    query.append('&');
-                    hashData.append('&');
-                }
-            }
-        }
-        String queryUrl = query.toString();
-        String vnp_SecureHash = VNPayConfig.hmacSHA512(VNPayConfig.secretKey, hashData.toString());
-        queryUrl += "&vnp_SecureHash=" + vnp_SecureHash;
+        // sorted fields, encoded and signed in one pass
+        String queryUrl = vnPaySigner.buildSignedQuery(vnp_Params);
         String paymentUrl = VNPayConfig.vnp_PayUrl + "?" + queryUrl;
 
 //        com.google.gson.JsonObject job = new JsonObject();
@@ -122,7 +122,7 @@ public class PaymentController {
         response.setResult(paymentResponse);
 
         // convert Java object to JSON string
-        String json = new Gson().toJson(response);
+        String json = GSON.toJson(response);
 
         return ResponseEntity.ok()
                 .contentType(org.springframework.http.MediaType.APPLICATION_JSON)
@@ -137,11 +137,13 @@ public class PaymentController {
             @RequestParam(value = "vnp_PayDate") String payDate,
             @RequestParam(value = "vnp_OrderInfo") String orderInfo,
             @RequestParam(value = "vnp_ResponseCode") String responseCode,
-            @RequestParam(value = "vnp_TransactionNo") String transactionNo) {
+            @RequestParam(value = "vnp_TransactionNo") String transactionNo,
+            @RequestParam Map<String, String> allParams) {
 
         TransactionStatusResponse transactionStatusResponse = new TransactionStatusResponse();
 
-        if (responseCode.equals("00")) {
+        // the payment itself is confirmed by the IPN, the return URL only shows the result
+        if (responseCode.equals("00") && paymentService.verifyReturn(allParams)) {
             transactionStatusResponse.setStatus("OK");
             transactionStatusResponse.setMessage("Giao dịch thành công");
             transactionStatusResponse.setAmount(amount);
@@ -161,12 +163,32 @@ public class PaymentController {
         response.setResult(transactionStatusResponse);
 
         // Convert to JSON string
-        String json = new Gson().toJson(response);
+        String json = GSON.toJson(response);
 
         return ResponseEntity.ok()
                 .contentType(org.springframework.http.MediaType.APPLICATION_JSON)
                 .body(json);
     }
 
+    /**
+     * VNPay IPN (server to server) callback, confirms or fails the payment of an order.
+     * @param params vnp_ query parameters signed by VNPay
+     * @return RspCode and Message as VNPay expects them
+     */
+    @GetMapping("/vnpay-ipn")
+    public ResponseEntity<VNPayIpnResponse> ipn(@RequestParam Map<String, String> params) {
+        return ResponseEntity.ok(paymentService.handleIpn(params));
+    }
 
+    /**
+     * Run the reconciliation of stale PENDING payments against VNPay now instead of waiting for the schedule.
+     * @return APIResponse with the counts of the run
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    @PostMapping("/reconcile")
+    public APIResponse<ReconciliationResponse> reconcile() {
+        APIResponse<ReconciliationResponse> response = new APIResponse<>();
+        response.setResult(paymentReconciler.reconcile());
+        return response;
+    }
 }
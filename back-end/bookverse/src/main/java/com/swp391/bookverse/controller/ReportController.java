@@ -0,0 +1,77 @@
+package com.swp391.bookverse.controller;
+
+import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.dto.response.SalesCategoryResponse;
+import com.swp391.bookverse.dto.response.SalesDailyResponse;
+import com.swp391.bookverse.dto.response.SalesPaymentMethodResponse;
+import com.swp391.bookverse.service.report.SalesRollupService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/reports")
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class ReportController {
+    SalesRollupService salesRollupService;
+
+    /**
+     * Revenue, units and orders per day (admin, staff).
+     * @param from first day, ISO date
+     * @param to last day, ISO date, inclusive
+     * @return APIResponse with one row per day with sales
+     */
+    @GetMapping("/sales/daily")
+    public APIResponse<List<SalesDailyResponse>> getDailySales(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        APIResponse<List<SalesDailyResponse>> response = new APIResponse<>();
+        response.setResult(salesRollupService.getDailySales(from, to));
+        return response;
+    }
+
+    /**
+     * Sales per day, sub-category and publisher (admin, staff).
+     * @return APIResponse with one row per day, sub-category and publisher with sales
+     */
+    @GetMapping("/sales/by-category")
+    public APIResponse<List<SalesCategoryResponse>> getSalesByCategory(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        APIResponse<List<SalesCategoryResponse>> response = new APIResponse<>();
+        response.setResult(salesRollupService.getSalesByCategory(from, to));
+        return response;
+    }
+
+    /**
+     * Sales per day and payment method (admin, staff).
+     * @return APIResponse with one row per day and payment method with sales
+     */
+    @GetMapping("/sales/by-payment-method")
+    public APIResponse<List<SalesPaymentMethodResponse>> getSalesByPaymentMethod(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        APIResponse<List<SalesPaymentMethodResponse>> response = new APIResponse<>();
+        response.setResult(salesRollupService.getSalesByPaymentMethod(from, to));
+        return response;
+    }
+
+    /**
+     * Recompute the rollups of a range of days from the orders, e.g. to backfill history (admin only).
+     * @return APIResponse with the number of days rebuilt
+     */
+    @PostMapping("/sales/rebuild")
+    public APIResponse<Integer> rebuild(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        APIResponse<Integer> response = new APIResponse<>();
+        response.setResult(salesRollupService.rebuild(from, to));
+        return response;
+    }
+}
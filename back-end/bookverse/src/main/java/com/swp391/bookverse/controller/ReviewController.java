@@ -5,6 +5,8 @@ import com.swp391.bookverse.dto.APIResponse;
 import com.swp391.bookverse.dto.request.ReviewCreationRequest;
 import com.swp391.bookverse.dto.request.ReviewDeletionRequest;
 import com.swp391.bookverse.dto.request.ReviewUpdateRequest;
+import com.swp391.bookverse.dto.response.CursorPageResponse;
+import com.swp391.bookverse.dto.response.PageResponse;
 import com.swp391.bookverse.dto.response.ReviewOfBookResponse;
 import com.swp391.bookverse.dto.response.ReviewResponse;
 import com.swp391.bookverse.entity.Book;
@@ -15,7 +17,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 
 /**
  * @Author huangdat
@@ -42,17 +43,35 @@ public class ReviewController {
         return response;
     }
 
+    /**
+     * Reviewed books with their reviews, one page of books at a time.
+     * @param page zero-based page
+     * @param size books per page
+     * @return APIResponse with one page of books ordered by id
+     */
     @GetMapping
-    public APIResponse<List<ReviewOfBookResponse>> getAllReviews() {
-        APIResponse<List<ReviewOfBookResponse>> response = new APIResponse<>();
-        response.setResult(reviewService.getAllReviews());
+    public APIResponse<PageResponse<ReviewOfBookResponse>> getAllReviews(
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        APIResponse<PageResponse<ReviewOfBookResponse>> response = new APIResponse<>();
+        response.setResult(reviewService.getAllReviews(page, size));
         return response;
     }
 
+    /**
+     * Reviews of a book, newest first, one page at a time.
+     * @param bookId
+     * @param cursor nextCursor of the previous page, omit for the first page
+     * @param size page size
+     * @return APIResponse with one page of reviews
+     */
     @GetMapping("/{bookId}")
-    public APIResponse<List<ReviewResponse>> getReviewByBookId(@PathVariable Long bookId) {
-        APIResponse<List<ReviewResponse>> response = new APIResponse<>();
-        response.setResult(reviewService.getReviewsByBookId(bookId));
+    public APIResponse<CursorPageResponse<ReviewResponse>> getReviewByBookId(
+            @PathVariable Long bookId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        APIResponse<CursorPageResponse<ReviewResponse>> response = new APIResponse<>();
+        response.setResult(reviewService.getReviewsByBookId(bookId, cursor, size));
         return response;
     }
 
@@ -4,11 +4,14 @@ import com.swp391.bookverse.dto.APIResponse;
 import com.swp391.bookverse.dto.request.UserChangePassWordRequest;
 import com.swp391.bookverse.dto.request.UserCreationRequest;
 import com.swp391.bookverse.dto.request.UserUpdateRequest;
+import com.swp391.bookverse.dto.response.AvailabilityResponse;
+import com.swp391.bookverse.dto.response.CursorPageResponse;
 import com.swp391.bookverse.dto.response.UserResponse;
 import com.swp391.bookverse.entity.User;
 import com.swp391.bookverse.exception.AppException;
 import com.swp391.bookverse.exception.ErrorCode;
 import com.swp391.bookverse.service.UserService;
+import com.swp391.bookverse.service.ratelimit.RateLimit;
 import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -56,12 +59,29 @@ public class UserController {
     }
 
     @PostMapping("/signup")
+    @RateLimit(name = "signup", capacity = 10, periodSeconds = 600)
     public APIResponse<UserResponse> signupUser(@RequestBody @Valid UserCreationRequest request) {
         APIResponse<UserResponse> response = new APIResponse<>();
         response.setResult(userService.signupUser(request));
         return response;
     }
 
+    /**
+     * Live checks of the signup form, whether a username and/or email is still free.
+     * @param username username to check
+     * @param email email to check
+     * @return APIResponse with the availability of each given value
+     */
+    @GetMapping("/availability")
+    @RateLimit(name = "availability", capacity = 120, periodSeconds = 60)
+    public APIResponse<AvailabilityResponse> checkAvailability(
+            @RequestParam(value = "username", required = false) String username,
+            @RequestParam(value = "email", required = false) String email) {
+        APIResponse<AvailabilityResponse> response = new APIResponse<>();
+        response.setResult(userService.checkAvailability(username, email));
+        return response;
+    }
+
     @GetMapping("/{userId}")
     public UserResponse getUser(@PathVariable("userId") String userId) {
         return userService.getUserById(userId);
@@ -111,6 +131,26 @@ public class UserController {
         return userService.changeUserRole(userId);
     }
 
+    /**
+     * Paginated user directory for the admin screens.
+     * @param role CUSTOMER, STAFF or ADMIN, all roles when omitted
+     * @param active true or false, both when omitted
+     * @param q prefix of the username, email or name
+     * @param cursor nextCursor of the previous page, omitted for the first page
+     * @return APIResponse with one page of users ordered by username
+     */
+    @GetMapping("/directory")
+    public APIResponse<CursorPageResponse<UserResponse>> searchUsers(
+            @RequestParam(value = "role", required = false) String role,
+            @RequestParam(value = "active", required = false) Boolean active,
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        APIResponse<CursorPageResponse<UserResponse>> response = new APIResponse<>();
+        response.setResult(userService.searchUsers(role, active, q, cursor, size));
+        return response;
+    }
+
     @GetMapping("/customers")
     public APIResponse<List<UserResponse>> getCustomers(){
         APIResponse<List<UserResponse>> response = new APIResponse<>();
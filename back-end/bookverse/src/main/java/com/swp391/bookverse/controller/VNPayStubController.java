@@ -0,0 +1,53 @@
+package com.swp391.bookverse.controller;
+
+import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.dto.response.VNPayBurstResponse;
+import com.swp391.bookverse.service.payment.VNPayStub;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Local VNPay stand-in for integration and load tests, only available when vnpay.stub.enabled is true.
+ */
+@RestController
+@RequestMapping("/api/vnpay-stub")
+@ConditionalOnProperty(name = "vnpay.stub.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class VNPayStubController {
+    VNPayStub vnPayStub;
+
+    /**
+     * Send a burst of signed IPN callbacks for a transaction to this server.
+     * @return APIResponse with response code counts and latencies
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    @PostMapping("/ipn-burst")
+    public APIResponse<VNPayBurstResponse> ipnBurst(
+            @RequestParam("txnRef") String txnRef,
+            @RequestParam(value = "count", defaultValue = "1000") int count,
+            @RequestParam(value = "concurrency", defaultValue = "50") int concurrency,
+            @RequestParam(value = "responseCode", defaultValue = "00") String responseCode) {
+        APIResponse<VNPayBurstResponse> response = new APIResponse<>();
+        response.setResult(vnPayStub.burst(txnRef, count, concurrency, responseCode));
+        return response;
+    }
+
+    /**
+     * Stand-in for VNPay's querydr API (merchant_webapi/api/transaction), called by the reconciliation job.
+     * @return VNPay's response fields, or 503 when the stub simulates an outage
+     */
+    @PostMapping("/querydr")
+    public ResponseEntity<Map<String, String>> queryTransaction(@RequestBody Map<String, String> request) {
+        Map<String, String> response = vnPayStub.queryTransaction(request);
+        return response != null ? ResponseEntity.ok(response) : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+}
@@ -6,6 +6,8 @@ import com.swp391.bookverse.dto.request.auth.otp.SendByEmailRequest;
 import com.swp391.bookverse.dto.request.auth.otp.VerifyRequest;
 import com.swp391.bookverse.dto.request.auth.otp.VerifyResetPasswordRequest;
 import com.swp391.bookverse.service.auth.otp.OtpService;
+import com.swp391.bookverse.service.ratelimit.RateLimit;
+import com.swp391.bookverse.service.ratelimit.RateLimitKey;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -25,11 +27,15 @@ public class OtpController {
      * @return ResponseEntity
      */
     @PostMapping("/send-by-email")
+    @RateLimit(name = "otp-send", key = RateLimitKey.BODY_FIELD, field = "email", capacity = 1, periodSeconds = 45)
+    @RateLimit(name = "otp-send-ip", capacity = 10, periodSeconds = 600)
     public APIResponse<?> sendByEmail(@RequestBody SendByEmailRequest req) {
         return svc.sendOtpByEmail(req);
     }
 
     @PostMapping("/send-by-email-reset-password")
+    @RateLimit(name = "otp-send", key = RateLimitKey.BODY_FIELD, field = "email", capacity = 1, periodSeconds = 45)
+    @RateLimit(name = "otp-send-ip", capacity = 10, periodSeconds = 600)
     public APIResponse<?> sendByEmailResetPassword(@RequestBody SendByEmailRequest req) {
         return svc.sendOtpByEmailResetPassword(req);
     }
@@ -51,11 +57,15 @@ public class OtpController {
      * @return ResponseEntity
      */
     @PostMapping("/verify")
+    @RateLimit(name = "otp-verify", key = RateLimitKey.BODY_FIELD, field = "email", capacity = 5, periodSeconds = 300)
+    @RateLimit(name = "otp-verify-ip", capacity = 30, periodSeconds = 300)
     public ResponseEntity<?> verify(@RequestBody VerifyRequest req) {
         return ResponseEntity.ok(svc.verify(req));
     }
 
     @PostMapping("/verify-reset-password")
+    @RateLimit(name = "otp-verify", key = RateLimitKey.BODY_FIELD, field = "email", capacity = 5, periodSeconds = 300)
+    @RateLimit(name = "otp-verify-ip", capacity = 30, periodSeconds = 300)
     public ResponseEntity<?> verifyResetPassword(@RequestBody VerifyResetPasswordRequest req) {
         return ResponseEntity.ok(svc.verifyResetPassword(req));
     }
@@ -0,0 +1,32 @@
+package com.swp391.bookverse.dto;
+
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a keyset page ordered by (created_at, id), sent to clients as an opaque string.
+ */
+public record KeysetCursor(LocalDateTime createdAt, long id) {
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor nextCursor of a previous page
+     * @param invalid error thrown when the cursor cannot be read
+     */
+    public static KeysetCursor decode(String cursor, ErrorCode invalid) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new AppException(invalid);
+        }
+    }
+}
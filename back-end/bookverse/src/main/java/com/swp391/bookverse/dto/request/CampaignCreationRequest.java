@@ -0,0 +1,17 @@
+package com.swp391.bookverse.dto.request;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CampaignCreationRequest {
+    Long promotionId;
+    // defaults to a generic promotion subject
+    String subject;
+    // placeholders: {{name}}, {{email}}, {{promotion}}, {{percentage}}, {{day}}; defaults to a generic text
+    String template;
+}
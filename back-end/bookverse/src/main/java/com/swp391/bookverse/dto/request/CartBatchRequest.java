@@ -0,0 +1,20 @@
+package com.swp391.bookverse.dto.request;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered list of cart operations applied in a single transaction.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE) // Set default access level for fields to private
+public class CartBatchRequest {
+    @Builder.Default
+    List<CartOperationRequest> operations = new ArrayList<>();
+}
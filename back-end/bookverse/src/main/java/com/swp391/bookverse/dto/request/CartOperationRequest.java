@@ -0,0 +1,20 @@
+package com.swp391.bookverse.dto.request;
+
+import com.swp391.bookverse.enums.CartOperationType;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * One operation of a batch cart request.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE) // Set default access level for fields to private
+public class CartOperationRequest {
+    CartOperationType type;
+    Long bookId;
+    // optional for ADD / REMOVE (default 1), required for SET_QUANTITY
+    Integer quantity;
+}
@@ -0,0 +1,17 @@
+package com.swp391.bookverse.dto.request;
+
+import com.swp391.bookverse.enums.PaymentMethod;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE) // Set default access level for fields to private
+public class CheckoutRequest {
+    // shipping address, defaults to the user's address
+    String address;
+    // defaults to COD
+    PaymentMethod paymentMethod;
+}
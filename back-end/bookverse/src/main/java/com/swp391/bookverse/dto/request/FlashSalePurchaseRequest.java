@@ -0,0 +1,15 @@
+package com.swp391.bookverse.dto.request;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE) // Set default access level for fields to private
+public class FlashSalePurchaseRequest {
+    Long bookId;
+    // default 1
+    Integer quantity;
+}
@@ -0,0 +1,14 @@
+package com.swp391.bookverse.dto.request;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class LogoutRequest {
+    String token;
+    String refreshToken;
+}
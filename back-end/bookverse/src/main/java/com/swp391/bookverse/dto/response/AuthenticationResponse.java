@@ -14,5 +14,7 @@ import lombok.experimental.FieldDefaults;
 @FieldDefaults(level = AccessLevel.PRIVATE) // Set default access level for fields to private
 public class AuthenticationResponse {
     String token; // JWT token for authentication
+    String refreshToken; // exchanged at /api/auth/refresh for a new pair once the token expires
+    long expiresIn; // lifetime of the token in seconds
     boolean authenticated;
 }
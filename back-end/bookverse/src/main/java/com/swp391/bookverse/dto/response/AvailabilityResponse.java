@@ -0,0 +1,17 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AvailabilityResponse {
+    // null when the value was not asked for
+    String username;
+    Boolean usernameAvailable;
+    String email;
+    Boolean emailAvailable;
+}
@@ -23,6 +23,8 @@ public class BookResponse {
     Long publisherId;
     Long categoryId;
     Integer stockQuantity;
+    Integer soldCount;
+    Integer reviewCount;
     LocalDate publishedDate;
     String image;
     Boolean active;
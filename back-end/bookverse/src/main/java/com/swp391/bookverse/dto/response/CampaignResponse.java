@@ -0,0 +1,24 @@
+package com.swp391.bookverse.dto.response;
+
+import com.swp391.bookverse.enums.CampaignStatus;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CampaignResponse {
+    Long id;
+    Long promotionId;
+    String subject;
+    CampaignStatus status;
+    long sentCount;
+    long deferredCount;
+    Instant createdAt;
+    Instant updatedAt;
+    Instant finishedAt;
+}
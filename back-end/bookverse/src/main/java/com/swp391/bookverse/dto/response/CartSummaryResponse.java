@@ -0,0 +1,22 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * One row of the admin cart listing, aggregated by the database instead of loading items and books.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CartSummaryResponse {
+    Long cartId;
+    String userId;
+    String username;
+    Boolean active;
+    Long itemCount;
+    Long totalQuantity;
+    Double totalPrice;
+}
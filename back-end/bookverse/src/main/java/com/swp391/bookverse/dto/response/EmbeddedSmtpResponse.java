@@ -0,0 +1,19 @@
+package com.swp391.bookverse.dto.response;
+
+import com.swp391.bookverse.service.mail.EmbeddedSmtpServer;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class EmbeddedSmtpResponse {
+    long receivedTotal;
+    long connectionsTotal;
+    // latest messages, oldest first
+    List<EmbeddedSmtpServer.ReceivedMail> messages;
+}
@@ -0,0 +1,20 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FlashSalePurchaseResponse {
+    Long bookId;
+    Integer quantity;
+    // total units of the book held for the user until checkout
+    Integer heldQuantity;
+    Integer remainingStock;
+    Instant holdExpiresAt;
+}
@@ -0,0 +1,28 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MailStatsResponse {
+    // messages waiting to be sent
+    long backlog;
+    // age of the oldest unsent message
+    long oldestPendingAgeMs;
+    // counters since startup of this instance
+    long sentTotal;
+    long retriedTotal;
+    long failedTotal;
+    // messages that replaced a pending one for the same recipient instead of being queued
+    long dedupedTotal;
+    // SMTP sessions opened and average messages sent per session
+    long batchesTotal;
+    double averageBatchSize;
+    double averageSendMs;
+    // messages given up after max attempts, all instances
+    long failedInTable;
+}
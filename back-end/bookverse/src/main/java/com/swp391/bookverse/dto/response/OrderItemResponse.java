@@ -0,0 +1,18 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OrderItemResponse {
+    Long bookId;
+    String bookTitle;
+    // price of the book when the order was placed
+    Double price;
+    Integer quantity;
+    Double subtotal;
+}
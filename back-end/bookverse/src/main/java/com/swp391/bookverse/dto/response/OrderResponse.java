@@ -0,0 +1,30 @@
+package com.swp391.bookverse.dto.response;
+
+import com.swp391.bookverse.enums.OrderStatus;
+import com.swp391.bookverse.enums.PaymentMethod;
+import com.swp391.bookverse.enums.PaymentStatus;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OrderResponse {
+    Long id;
+    String userId;
+    OrderStatus status;
+    Double totalAmount;
+    String address;
+    LocalDateTime createdAt;
+    @Builder.Default
+    List<OrderItemResponse> orderItems = new ArrayList<>();
+    Long paymentId;
+    PaymentMethod paymentMethod;
+    PaymentStatus paymentStatus;
+}
@@ -0,0 +1,27 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OutboxStatsResponse {
+    // events waiting for delivery
+    long backlog;
+    // age of the oldest undelivered event
+    long oldestPendingAgeMs;
+    // time between the commit and the delivery of the last delivered event
+    long lastDeliveryLagMs;
+    // counters since startup of this instance
+    long deliveredTotal;
+    long retriedTotal;
+    long failedTotal;
+    // events given up after max attempts, all instances
+    long failedInTable;
+    // deliveries per second over the last minute
+    double throughputPerSecond;
+    double averageHandlingMs;
+}
@@ -0,0 +1,29 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Outcome of one payment reconciliation run.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReconciliationResponse {
+    // stale PENDING payments read
+    int scanned;
+    // querydr calls answered by VNPay
+    int queried;
+    int markedPaid;
+    int markedFailed;
+    // still pending at VNPay or not found there
+    int unchanged;
+    // timeouts, transport errors, bad signatures
+    int errors;
+    // not queried because the circuit breaker was open
+    int skipped;
+    String breakerState;
+    long durationMs;
+}
@@ -0,0 +1,23 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SalesCategoryResponse {
+    LocalDate day;
+    Long subCategoryId;
+    String subCategoryName;
+    Long publisherId;
+    String publisherName;
+    double revenue;
+    long units;
+    // orders with at least one line in this sub-category and publisher
+    long orders;
+}
@@ -0,0 +1,18 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SalesPaymentMethodResponse {
+    LocalDate day;
+    String method;
+    double revenue;
+    long orders;
+}
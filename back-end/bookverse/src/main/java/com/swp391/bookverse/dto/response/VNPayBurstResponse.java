@@ -0,0 +1,24 @@
+package com.swp391.bookverse.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+/**
+ * Result of a burst of simulated VNPay IPN callbacks.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class VNPayBurstResponse {
+    int sent;
+    // RspCode returned by the IPN endpoint -> count, "ERROR" for failed calls
+    Map<String, Long> responseCodes;
+    long totalMs;
+    long p50Ms;
+    long p99Ms;
+    long maxMs;
+}
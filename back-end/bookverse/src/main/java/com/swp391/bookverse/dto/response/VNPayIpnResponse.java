@@ -0,0 +1,21 @@
+package com.swp391.bookverse.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Body VNPay expects from the IPN URL.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class VNPayIpnResponse {
+    @JsonProperty("RspCode")
+    String rspCode;
+
+    @JsonProperty("Message")
+    String message;
+}
@@ -43,6 +43,12 @@ public class Book {
     SubCategory category;
 
     Integer stockQuantity;
+    // maintained from placed orders by the outbox, never written back from a loaded entity
+    @Column(updatable = false)
+    Integer soldCount;
+    // maintained by ReviewService with SQL increments, never written back from a loaded entity
+    @Column(updatable = false)
+    Integer reviewCount;
     LocalDate publishedDate;
     String image;
     Boolean active;
@@ -18,7 +18,7 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@Table(name = "cart")
+@Table(name = "cart", indexes = @Index(columnList = "user_id,active"))
 public class Cart {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
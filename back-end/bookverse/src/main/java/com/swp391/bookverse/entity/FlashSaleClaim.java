@@ -0,0 +1,38 @@
+package com.swp391.bookverse.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Flash-sale units held for a user until checkout. Their stock is already taken out of book.stock_quantity,
+ * an expired claim gives it back.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "flash_sale_claim",
+        uniqueConstraints = @UniqueConstraint(name = "uk_flash_sale_claim_user_book", columnNames = {"user_id", "book_id"}),
+        indexes = @Index(columnList = "expires_at"))
+public class FlashSaleClaim {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "user_id", nullable = false, length = 36)
+    String userId;
+
+    @Column(name = "book_id", nullable = false)
+    Long bookId;
+
+    @Column(nullable = false)
+    int quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    Instant expiresAt;
+}
@@ -0,0 +1,46 @@
+package com.swp391.bookverse.entity;
+
+import com.swp391.bookverse.enums.IdempotencyStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Response stored for an Idempotency-Key, replayed when a client retries the same request.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "idempotency_key", indexes = @Index(columnList = "expires_at"))
+public class IdempotencyRecord {
+    // sha-256 of user, method, path and the client key
+    @Id
+    @Column(name = "key_hash", length = 64)
+    String keyHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    IdempotencyStatus status;
+
+    @Column(name = "response_status")
+    Integer responseStatus;
+
+    @Column(name = "content_type")
+    String contentType;
+
+    @Lob
+    @Column(columnDefinition = "MEDIUMBLOB")
+    byte[] body;
+
+    @Column(name = "created_at", nullable = false)
+    Instant createdAt;
+
+    // end of the lock while IN_PROGRESS, end of the replay window once COMPLETED
+    @Column(name = "expires_at", nullable = false)
+    Instant expiresAt;
+}
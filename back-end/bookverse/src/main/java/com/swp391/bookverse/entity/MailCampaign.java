@@ -0,0 +1,68 @@
+package com.swp391.bookverse.entity;
+
+import com.swp391.bookverse.enums.CampaignStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Promotion email sent to every active customer, with its progress.
+ * Recipients are processed in user id order, last_user_id is the checkpoint a resumed run continues after.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "mail_campaign", indexes = @Index(columnList = "status,locked_until"))
+public class MailCampaign {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    // one campaign per promotion
+    @Column(name = "promotion_id", nullable = false, unique = true)
+    Long promotionId;
+
+    @Column(nullable = false)
+    String subject;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    String template;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    CampaignStatus status;
+
+    // id of the last recipient whose page has been sent
+    @Column(name = "last_user_id", length = 36)
+    String lastUserId;
+
+    @Column(name = "sent_count", nullable = false)
+    long sentCount;
+
+    // rejected by the SMTP server in the campaign run, handed to the mail queue for retries
+    @Column(name = "deferred_count", nullable = false)
+    long deferredCount;
+
+    // a RUNNING campaign is being sent by an instance until then, renewed at every checkpoint
+    @Column(name = "locked_until", nullable = false)
+    Instant lockedUntil;
+
+    // written by each claim, progress updates of a run whose lease was taken over match no row
+    @Column(name = "run_token", length = 36)
+    String runToken;
+
+    @Column(name = "created_at", nullable = false)
+    Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    Instant updatedAt;
+
+    @Column(name = "finished_at")
+    Instant finishedAt;
+}
@@ -0,0 +1,58 @@
+package com.swp391.bookverse.entity;
+
+import com.swp391.bookverse.enums.MailStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * A plain text email waiting to be sent, or already sent, by the MailDispatcher.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "mail_message", indexes = @Index(columnList = "status,available_at"))
+public class MailMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(nullable = false)
+    String recipient;
+
+    @Column(nullable = false)
+    String subject;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    String body;
+
+    // "otp:alice@example.com"..., set only while PENDING: a newer message with the same key replaces the unsent one
+    @Column(name = "dedupe_key", unique = true, length = 320)
+    String dedupeKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    MailStatus status;
+
+    @Column(nullable = false)
+    int attempts;
+
+    // next attempt while PENDING, end of the claim while SENDING
+    @Column(name = "available_at", nullable = false)
+    Instant availableAt;
+
+    @Column(name = "created_at", nullable = false)
+    Instant createdAt;
+
+    @Column(name = "sent_at")
+    Instant sentAt;
+
+    @Column(name = "last_error", length = 500)
+    String lastError;
+}
@@ -10,7 +10,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "`order`")
+@Table(name = "`order`", indexes = {
+        @Index(columnList = "user_id,created_at"),
+        @Index(columnList = "status,created_at"),
+        @Index(columnList = "created_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
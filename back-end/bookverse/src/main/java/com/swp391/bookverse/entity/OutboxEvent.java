@@ -0,0 +1,62 @@
+package com.swp391.bookverse.entity;
+
+import com.swp391.bookverse.enums.OutboxEventType;
+import com.swp391.bookverse.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * One event for one handler, written in the transaction of the business change and delivered later by the dispatcher.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "outbox_event", indexes = @Index(columnList = "status,available_at"))
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    OutboxEventType eventType;
+
+    // name of the handler the event is delivered to
+    @Column(nullable = false, length = 50)
+    String handler;
+
+    // id of the order, user... the event is about
+    @Column(name = "aggregate_id", length = 64)
+    String aggregateId;
+
+    // JSON
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    OutboxStatus status;
+
+    @Column(nullable = false)
+    int attempts;
+
+    // next delivery attempt while PENDING, end of the claim while PROCESSING
+    @Column(name = "available_at", nullable = false)
+    Instant availableAt;
+
+    @Column(name = "created_at", nullable = false)
+    Instant createdAt;
+
+    @Column(name = "processed_at")
+    Instant processedAt;
+
+    @Column(name = "last_error", length = 500)
+    String lastError;
+}
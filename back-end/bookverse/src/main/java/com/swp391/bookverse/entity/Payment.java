@@ -9,7 +9,7 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payment")
+@Table(name = "payment", indexes = @Index(columnList = "status,id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -39,6 +39,14 @@ public class Payment {
     @Column(name = "paid_at")
     private LocalDateTime paidAt;
 
+    // vnp_TxnRef sent to VNPay, IPN callbacks find the payment by it
+    @Column(name = "txn_ref", unique = true, length = 32)
+    private String txnRef;
+
+    // vnp_TransactionNo returned by VNPay
+    @Column(name = "transaction_no", length = 32)
+    private String transactionNo;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,31 @@
+package com.swp391.bookverse.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Marks an outbox event as applied by a handler whose effect is not idempotent, so a redelivery is skipped.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@IdClass(ProcessedOutboxEventId.class)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "processed_outbox_event", indexes = @Index(columnList = "processed_at"))
+public class ProcessedOutboxEvent {
+    @Id
+    @Column(length = 64)
+    String handler;
+
+    @Id
+    @Column(name = "event_id")
+    Long eventId;
+
+    @Column(name = "processed_at", nullable = false)
+    Instant processedAt;
+}
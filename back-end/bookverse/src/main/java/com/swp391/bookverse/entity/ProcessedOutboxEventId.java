@@ -0,0 +1,15 @@
+package com.swp391.bookverse.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProcessedOutboxEventId implements Serializable {
+    String handler;
+    Long eventId;
+}
@@ -5,6 +5,8 @@ import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * @Author huangdat
@@ -30,4 +32,14 @@ public class Promotion {
     String type;
     @Column(nullable = false)
     LocalDate promotionDay;
+
+    // Books sold in this promotion (flash sale books when type is FLASH_SALE)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @JoinTable(name = "promotion_book",
+            joinColumns = @JoinColumn(name = "promotion_id"),
+            inverseJoinColumns = @JoinColumn(name = "book_id"))
+    @Builder.Default
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    Set<Book> books = new HashSet<>();
 }
\ No newline at end of file
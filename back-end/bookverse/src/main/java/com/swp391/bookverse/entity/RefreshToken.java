@@ -0,0 +1,35 @@
+package com.swp391.bookverse.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Refresh token, stored by the SHA-256 of its value. Each use replaces it with a new one.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "refresh_token", indexes = @Index(columnList = "user_id"))
+public class RefreshToken {
+    @Id
+    @Column(name = "token_hash", length = 64)
+    String tokenHash;
+
+    @Column(name = "user_id", nullable = false)
+    String userId;
+
+    @Column(name = "created_at", nullable = false)
+    Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    Instant expiresAt;
+
+    @Builder.Default
+    boolean revoked = false;
+}
@@ -8,7 +8,10 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "review")
+// one review per user and book; the keyset pages of a book's reviews, also the distinct reviewed book ids
+@Table(name = "review",
+        uniqueConstraints = @UniqueConstraint(name = "uk_review_book_user", columnNames = {"book_id", "user_id"}),
+        indexes = @Index(name = "idx_review_book_created", columnList = "book_id,created_at,id"))
 @Data
 @Builder
 @NoArgsConstructor
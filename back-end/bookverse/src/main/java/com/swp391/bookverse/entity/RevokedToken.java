@@ -0,0 +1,35 @@
+package com.swp391.bookverse.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.Instant;
+
+/**
+ * Deny list entry: a revoked access token (by JWT id) or a user whose access tokens issued so far are revoked.
+ * Kept until every token it covers has expired.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+// revoked_at is what other instances poll by
+@Table(name = "revoked_token", indexes = {@Index(columnList = "expires_at"), @Index(columnList = "revoked_at")})
+public class RevokedToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    // "jti:<jwt id>" or "user:<user id>"
+    @Column(name = "token_key", nullable = false, unique = true, length = 80)
+    String tokenKey;
+
+    @Column(name = "revoked_at", nullable = false)
+    Instant revokedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    Instant expiresAt;
+}
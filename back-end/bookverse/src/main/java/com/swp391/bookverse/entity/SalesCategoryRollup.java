@@ -0,0 +1,42 @@
+package com.swp391.bookverse.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+
+/**
+ * Sales of one day for one sub-category and publisher, maintained by SalesRollupService.
+ * Books without a sub-category or publisher are counted under id 0.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@IdClass(SalesCategoryRollupId.class)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "sales_rollup_category")
+public class SalesCategoryRollup {
+    @Id
+    LocalDate day;
+
+    @Id
+    @Column(name = "sub_category_id")
+    Long subCategoryId;
+
+    @Id
+    @Column(name = "publisher_id")
+    Long publisherId;
+
+    @Column(nullable = false)
+    Double revenue;
+
+    @Column(nullable = false)
+    Long units;
+
+    // orders with at least one line in this group
+    @Column(name = "order_count", nullable = false)
+    Long orderCount;
+}
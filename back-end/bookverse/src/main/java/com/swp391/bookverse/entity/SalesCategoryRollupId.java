@@ -0,0 +1,17 @@
+package com.swp391.bookverse.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesCategoryRollupId implements Serializable {
+    LocalDate day;
+    Long subCategoryId;
+    Long publisherId;
+}
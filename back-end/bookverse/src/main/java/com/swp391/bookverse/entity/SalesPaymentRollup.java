@@ -0,0 +1,33 @@
+package com.swp391.bookverse.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+
+/**
+ * Sales of one day for one payment method, maintained by SalesRollupService.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@IdClass(SalesPaymentRollupId.class)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "sales_rollup_payment")
+public class SalesPaymentRollup {
+    @Id
+    LocalDate day;
+
+    @Id
+    @Column(length = 16)
+    String method;
+
+    @Column(nullable = false)
+    Double revenue;
+
+    @Column(name = "order_count", nullable = false)
+    Long orderCount;
+}
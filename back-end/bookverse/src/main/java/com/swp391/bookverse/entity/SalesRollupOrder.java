@@ -0,0 +1,26 @@
+package com.swp391.bookverse.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+
+/**
+ * Marks an order as counted in the sales rollups, so an order is never added twice.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "sales_rollup_order", indexes = @Index(columnList = "day"))
+public class SalesRollupOrder {
+    @Id
+    @Column(name = "order_id")
+    Long orderId;
+
+    @Column(nullable = false)
+    LocalDate day;
+}
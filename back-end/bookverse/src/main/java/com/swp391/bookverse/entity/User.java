@@ -4,7 +4,10 @@ import com.swp391.bookverse.converter.BooleanConverter;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.CreationTimestamp;
 
+import java.time.Instant;
 import java.util.Set;
 
 /**
@@ -13,7 +16,18 @@ import java.util.Set;
 
 @Data
 @Entity
-@Table(name = "user")
+@Table(name = "user",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_user_username", columnNames = "username"),
+                @UniqueConstraint(name = "uk_user_email", columnNames = "email")
+        },
+        // prefix search of the admin user directory
+        indexes = {
+                @Index(name = "idx_user_fullname", columnList = "fullname"),
+                @Index(name = "idx_user_active_username", columnList = "active,username"),
+                // new users polled by the signup availability filters
+                @Index(name = "idx_user_created_at", columnList = "created_at")
+        })
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -33,11 +47,19 @@ public class User {
     @Column(columnDefinition = "TINYINT(1)")
     @Convert(converter = BooleanConverter.class)
     boolean active;
+    // loaded for up to 100 users of a page in one query
     @ElementCollection
-    @CollectionTable(name = "user_role", joinColumns = @JoinColumn(name = "user_id"))
+    @BatchSize(size = 100)
+    @CollectionTable(name = "user_role", joinColumns = @JoinColumn(name = "user_id"),
+            indexes = @Index(name = "idx_user_role_role", columnList = "role,user_id"))
     @Column(name = "role")
     Set<String> roles;
 
+    // null for users created before the column was added
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    Instant createdAt;
+
     public boolean getIsActive() {
         return active;
     }
@@ -6,15 +6,17 @@ import lombok.experimental.FieldDefaults;
 
 import java.time.Instant;
 
-
+/**
+ * Audit row of an issued OTP code, written in the background by the OtpAuditLog. Live codes are kept in the OtpStore.
+ */
 @Data
 @Entity
 @Table(
         name = "otp_token",
         indexes = {
-                @Index(columnList = "email"),
-                @Index(columnList = "email,used,expiresAt"),
-                @Index(columnList = "userId,used,expiresAt")
+                // uses are recorded by email and creation time, the purge and the startup reload go by expiry
+                @Index(columnList = "email,createdAt"),
+                @Index(columnList = "expiresAt")
         }
 )
 @Builder
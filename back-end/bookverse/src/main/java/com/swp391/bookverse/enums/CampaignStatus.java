@@ -0,0 +1,7 @@
+package com.swp391.bookverse.enums;
+
+public enum CampaignStatus {
+    RUNNING,
+    PAUSED,
+    COMPLETED,
+}
@@ -0,0 +1,10 @@
+package com.swp391.bookverse.enums;
+
+/**
+ * Kind of change applied by one entry of a batch cart request.
+ */
+public enum CartOperationType {
+    ADD,          // add quantity (default 1) of a book
+    REMOVE,       // remove quantity (default 1) of a book, the item is dropped when it reaches 0
+    SET_QUANTITY, // set the exact quantity of a book, 0 drops the item
+}
@@ -0,0 +1,6 @@
+package com.swp391.bookverse.enums;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED,
+}
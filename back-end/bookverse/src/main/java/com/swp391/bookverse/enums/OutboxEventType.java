@@ -0,0 +1,9 @@
+package com.swp391.bookverse.enums;
+
+/**
+ * Events written to the outbox together with the change that caused them.
+ */
+public enum OutboxEventType {
+    MAIL,
+    ORDER_PLACED,
+}
@@ -23,6 +23,7 @@ public enum ErrorCode {
     NO_USERS_STORED(1003, "No users stored in database"),
     EMAIL_ALREADY_EXISTS(1010, "Email already exists"),
     SAME_OLD_NEW_PASSWORD(1012, "New password must be different from old password"),
+    USER_CURSOR_INVALID(1013, "Invalid user page cursor"),
 
     // Validation error codes for user entity
     USERNAME_INVALID(1004, "Username must be at least 3 characters long"),
@@ -70,10 +71,12 @@ public enum ErrorCode {
     EXCEED_STOCK(8004, "Requested quantity exceeds available stock"),
     PRODUCT_OUT_OF_STOCK(8005, "Product is out of stock"),
     QUANTITY_INVALID(8006, "Quantity must be at least 1"),
+    CART_OPERATION_INVALID(8007, "Invalid cart operation"),
 
     // custom error codes for review entity
     REVIEW_ALREADY_EXISTS(9001, "Review already exists for this user and book"),
     REVIEW_NOT_FOUND(9002, "Review not found"),
+    REVIEW_CURSOR_INVALID(9003, "Invalid review page cursor"),
 
     // custom error codes for file upload
     INVALID_FILE_TYPE(10001, "File must be an image"),
@@ -81,6 +84,43 @@ public enum ErrorCode {
     INVALID_FILE_NAME(10003, "Invalid file name"),
     FILE_UPLOAD_FAILED(10004, "File upload failed"),
 
+    // custom error codes for flash sale
+    BOOK_NOT_IN_FLASH_SALE(11001, "Book is not in a running flash sale"),
+    FLASH_SALE_BUSY(11002, "Flash sale is overloaded, please try again"),
+
+    // custom error codes for order entity
+    CART_EMPTY(12001, "Cart is empty"),
+    CHECKOUT_IN_PROGRESS(12002, "Cart is already being checked out"),
+    ORDER_CURSOR_INVALID(12003, "Invalid order page cursor"),
+
+    // custom error codes for idempotency keys
+    IDEMPOTENCY_KEY_IN_PROGRESS(13001, "A request with the same Idempotency-Key is still being processed"),
+    IDEMPOTENCY_KEY_INVALID(13002, "Idempotency-Key must be 1-255 characters long"),
+
+    // custom error codes for payment entity
+    PAYMENT_NOT_FOUND(14001, "Payment not found"),
+    PAYMENT_NOT_PENDING(14002, "Payment is not waiting for a transaction"),
+    RECONCILIATION_IN_PROGRESS(14003, "Payment reconciliation is already running"),
+
+    // custom error codes for reports
+    REPORT_RANGE_INVALID(15001, "Report range must be from <= to and at most 366 days"),
+
+    // custom error codes for load shedding, answered with HTTP 429
+    AUTH_RATE_LIMITED(16001, "Too many attempts, please try again later"),
+    PASSWORD_HASHING_BUSY(16002, "Server is busy, please try again in a moment"),
+    RATE_LIMITED(16003, "Too many requests, please slow down"),
+    REQUEST_TOO_LARGE(16004, "Request body is too large"),
+
+    // custom error codes for token refresh and revocation
+    REFRESH_TOKEN_INVALID(17001, "Refresh token is invalid, expired or already used"),
+    USER_INACTIVE(17002, "User is not active"),
+
+    // custom error codes for mail campaigns
+    CAMPAIGN_NOT_FOUND(18001, "Campaign not found"),
+    CAMPAIGN_EXISTS(18002, "A campaign already exists for this promotion"),
+    PROMOTION_NOT_FOUND(18003, "Promotion not found"),
+    CAMPAIGN_TEMPLATE_INVALID(18004, "Template has an unclosed or unknown placeholder"),
+
     INVALID_KEY(99999, "Invalid message key provided")
     ;
 
@@ -1,6 +1,8 @@
 package com.swp391.bookverse.exception;
 
 import com.swp391.bookverse.dto.APIResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -57,6 +59,14 @@ public class GlobalExeptionHandle {
         APIResponse response = new APIResponse();
         response.setCode(errorCode.getCode());
         response.setMessage(errorCode.getMessage());
+        // a rate limit knows when its bucket has a token again, the hashing pool is only busy for a moment
+        if (e instanceof RateLimitedException limited) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(limited.getRetryAfterSeconds())).body(response);
+        }
+        if (errorCode == ErrorCode.PASSWORD_HASHING_BUSY) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").body(response);
+        }
         return ResponseEntity.badRequest().body(response);
     }
 
@@ -0,0 +1,24 @@
+package com.swp391.bookverse.exception;
+
+/**
+ * AppException of a request rejected by a rate limit, with the time until it would be admitted.
+ */
+public class RateLimitedException extends AppException {
+    private final long waitMs;
+
+    public RateLimitedException(ErrorCode errorCode, long waitMs) {
+        super(errorCode);
+        this.waitMs = waitMs;
+    }
+
+    public long getWaitMs() {
+        return waitMs;
+    }
+
+    /**
+     * Whole seconds for the Retry-After header, at least 1.
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max((waitMs + 999) / 1000, 1);
+    }
+}
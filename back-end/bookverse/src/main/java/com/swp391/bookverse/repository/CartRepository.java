@@ -1,6 +1,9 @@
 package com.swp391.bookverse.repository;
 
+import com.swp391.bookverse.dto.response.CartSummaryResponse;
 import com.swp391.bookverse.entity.Cart;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,9 +14,19 @@ import java.util.Optional;
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
 
-    @Query("SELECT c FROM Cart c WHERE c.user.id = :userId AND c.active = true")
+    // items and their books are fetched in the same query, uses index (user_id, active)
+    @Query("SELECT DISTINCT c FROM Cart c LEFT JOIN FETCH c.cartItems ci LEFT JOIN FETCH ci.book " +
+            "WHERE c.user.id = :userId AND c.active = true")
     Optional<Cart> findByUserIdAndActive(@Param("userId") String userId);
 
     @Query("SELECT c FROM Cart c WHERE c.user.id = :userId")
     Optional<Cart> findByUserId(@Param("userId") String userId);
+
+    @Query(value = "SELECT new com.swp391.bookverse.dto.response.CartSummaryResponse(" +
+            "c.id, u.id, u.username, c.active, COUNT(ci.id), COALESCE(SUM(ci.quantity), 0L), " +
+            "COALESCE(SUM(ci.quantity * b.price), 0.0)) " +
+            "FROM Cart c JOIN c.user u LEFT JOIN c.cartItems ci LEFT JOIN ci.book b " +
+            "GROUP BY c.id, u.id, u.username, c.active",
+            countQuery = "SELECT COUNT(c) FROM Cart c")
+    Page<CartSummaryResponse> findCartSummaries(Pageable pageable);
 }
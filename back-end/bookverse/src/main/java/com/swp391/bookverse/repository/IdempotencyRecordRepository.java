@@ -0,0 +1,49 @@
+package com.swp391.bookverse.repository;
+
+import com.swp391.bookverse.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // 1 if the key was free and is now locked by the caller
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO idempotency_key (key_hash, status, created_at, expires_at) " +
+            "VALUES (:keyHash, 'IN_PROGRESS', :now, :lockedUntil)", nativeQuery = true)
+    int claim(@Param("keyHash") String keyHash, @Param("now") Instant now, @Param("lockedUntil") Instant lockedUntil);
+
+    // take over a key whose lock or replay window expired
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE idempotency_key SET status = 'IN_PROGRESS', response_status = NULL, content_type = NULL, " +
+            "body = NULL, created_at = :now, expires_at = :lockedUntil WHERE key_hash = :keyHash AND expires_at < :now",
+            nativeQuery = true)
+    int takeOver(@Param("keyHash") String keyHash, @Param("now") Instant now, @Param("lockedUntil") Instant lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE idempotency_key SET status = 'COMPLETED', response_status = :responseStatus, " +
+            "content_type = :contentType, body = :body, expires_at = :expiresAt " +
+            "WHERE key_hash = :keyHash AND status = 'IN_PROGRESS'", nativeQuery = true)
+    int complete(@Param("keyHash") String keyHash, @Param("responseStatus") int responseStatus,
+                 @Param("contentType") String contentType, @Param("body") byte[] body,
+                 @Param("expiresAt") Instant expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_key WHERE key_hash = :keyHash AND status = 'IN_PROGRESS'", nativeQuery = true)
+    int release(@Param("keyHash") String keyHash);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_key WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+    int purgeExpired(@Param("now") Instant now, @Param("limit") int limit);
+}
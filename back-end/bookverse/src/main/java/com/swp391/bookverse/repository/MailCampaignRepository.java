@@ -0,0 +1,10 @@
+package com.swp391.bookverse.repository;
+
+import com.swp391.bookverse.entity.MailCampaign;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MailCampaignRepository extends JpaRepository<MailCampaign, Long> {
+    boolean existsByPromotionId(Long promotionId);
+}
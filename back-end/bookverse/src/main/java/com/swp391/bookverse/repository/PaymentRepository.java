@@ -0,0 +1,9 @@
+package com.swp391.bookverse.repository;
+
+import com.swp391.bookverse.entity.Payment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PaymentRepository extends JpaRepository<Payment, Long> {
+}
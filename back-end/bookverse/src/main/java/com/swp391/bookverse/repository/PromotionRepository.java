@@ -2,10 +2,19 @@ package com.swp391.bookverse.repository;
 
 import com.swp391.bookverse.entity.Promotion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
 
 /**
  * @Author huangdat
  */
 
 public interface PromotionRepository extends JpaRepository<Promotion, Long> {
+
+    // ids of the books attached to promotions of a type running on a given day
+    @Query("SELECT DISTINCT b.id FROM Promotion p JOIN p.books b WHERE p.promotionDay = :day AND p.type = :type")
+    List<Long> findBookIdsByPromotionDayAndType(@Param("day") LocalDate day, @Param("type") String type);
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long> {
@@ -13,5 +14,8 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
 
     boolean existsByUserIdAndBookId(String id, Long id1);
 
+    // served by the unique (book_id, user_id) index
     boolean existsByBookIdAndUserId(Long bookId, String userId);
+
+    Optional<Review> findByBookIdAndUserId(Long bookId, String userId);
 }
@@ -3,6 +3,8 @@ package com.swp391.bookverse.repository;
 import com.swp391.bookverse.entity.User;
 import jakarta.validation.constraints.Email;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,7 +18,15 @@ public interface UserRepository extends JpaRepository<User, String> {
     boolean existsByUsername(String username);
     Optional<User> findByUsername(String username);
 
-    List<User> findByRolesContaining(String role);
+    // roles fetched in the same query, the role filter is a subquery so the other roles are kept
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE :role MEMBER OF u.roles")
+    List<User> findByRolesContaining(@Param("role") String role);
+
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles")
+    List<User> findAllWithRoles();
+
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.active = :active")
+    List<User> findByActiveWithRoles(@Param("active") boolean active);
 
     boolean existsByEmail(@Email(message = "EMAIL_INVALID") String email);
 
@@ -1,26 +1,35 @@
 package com.swp391.bookverse.service;
 
 
+import com.swp391.bookverse.configuration.UserJwtAuthenticationConverter;
 import com.swp391.bookverse.dto.request.AuthenticationRequest;
 import com.swp391.bookverse.dto.request.IntrospectRequest;
+import com.swp391.bookverse.dto.request.LogoutRequest;
+import com.swp391.bookverse.dto.request.RefreshTokenRequest;
 import com.swp391.bookverse.dto.response.AuthenticationResponse;
 import com.swp391.bookverse.dto.response.IntrospectResponse;
+import com.swp391.bookverse.entity.User;
 import com.swp391.bookverse.exception.AppException;
 import com.swp391.bookverse.exception.ErrorCode;
 import com.swp391.bookverse.repository.UserRepository;
+import com.swp391.bookverse.service.auth.LoginAdmissionService;
+import com.swp391.bookverse.service.auth.PasswordHashingService;
+import com.swp391.bookverse.service.auth.RefreshTokenService;
+import com.swp391.bookverse.service.auth.TokenDenyList;
+import com.swp391.bookverse.service.auth.UserStatusCache;
+import com.swp391.bookverse.service.auth.VerifiedTokenCache;
 import com.nimbusds.jose.*;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import jakarta.annotation.PostConstruct;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.NonFinal;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.text.ParseException;
@@ -28,63 +37,143 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.Set;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor // Generates a constructor with required arguments for final fields.
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true) // Set default access level for fields to private
 public class AuthenticationService {
     UserRepository userRepository;
+    VerifiedTokenCache verifiedTokenCache;
+    UserStatusCache userStatusCache;
+    PasswordHashingService passwordHashingService;
+    LoginAdmissionService loginAdmissionService;
+    RefreshTokenService refreshTokenService;
+    TokenDenyList tokenDenyList;
 
     @NonFinal
     @Value("${jwt.signerKey}")
     protected String SIGNER_KEY;
 
+    // access tokens are short-lived, clients renew them with their refresh token
+    @NonFinal
+    @Value("${jwt.access-ttl-seconds:3600}")
+    long accessTtlSeconds;
+
+    // thread-safe once created, no need to derive the key on every call
+    @NonFinal
+    JWSSigner signer;
+
+    @NonFinal
+    JWSVerifier verifier;
+
+    @PostConstruct
+    void initKeys() throws JOSEException {
+        signer = new MACSigner(SIGNER_KEY.getBytes());
+        verifier = new MACVerifier(SIGNER_KEY.getBytes());
+    }
+
     /**
      * Authenticate a user with username and password.
      * @param request
      * @return AuthenticationResponse containing authentication status and JWT token.
      */
     public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        // per-IP and per-username budget, checked before any lookup or hashing
+        loginAdmissionService.admit(request.getUsername());
+
         var user = userRepository.findByUsername(request.getUsername())
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
-        PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(10);
 
-        // Check if the provided password matches the stored password
-        boolean authenticated = passwordEncoder.matches(request.getPassword(), user.getPassword());
+        // Check if the provided password matches the stored password, on the bounded hashing pool
+        boolean authenticated = passwordHashingService.matches(request.getPassword(), user.getPassword());
 
         // Consider authentication result to generate a JWT token or handle further logic
         if (!authenticated) {
             throw new AppException(ErrorCode.UNAUTHORIZED);
         }
 
-        // Build the response object with authentication status and token
-        String token = generateToken(user.getUsername());
-        AuthenticationResponse response = AuthenticationResponse.builder()
-                .authenticated(authenticated) // always true if pass the exception check
-                .token(token) // Include the generated token in the resp
+        // Build the response object with authentication status and tokens
+        return issueTokens(user);
+    }
+
+    /**
+     * Exchange a refresh token for a new access token and refresh token. The old refresh token is used up.
+     * @param request
+     * @return AuthenticationResponse with the new pair
+     */
+    public AuthenticationResponse refresh(RefreshTokenRequest request) {
+        String userId = refreshTokenService.consume(request.getRefreshToken());
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new AppException(ErrorCode.REFRESH_TOKEN_INVALID));
+        if (!user.isActive()) {
+            throw new AppException(ErrorCode.USER_INACTIVE);
+        }
+        return issueTokens(user);
+    }
+
+    /**
+     * Revoke the access token until it expires and the refresh token for good.
+     * A token that does not verify is ignored, there is nothing to revoke.
+     * @param request
+     */
+    public void logout(LogoutRequest request) {
+        refreshTokenService.revoke(request.getRefreshToken());
+        if (request.getToken() == null) {
+            return;
+        }
+        try {
+            SignedJWT signedJWT = SignedJWT.parse(request.getToken());
+            if (signedJWT.verify(verifier)) {
+                JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+                tokenDenyList.revokeToken(claims.getJWTID(),
+                        claims.getExpirationTime() != null ? claims.getExpirationTime().toInstant() : null);
+            }
+        } catch (ParseException | JOSEException e) {
+            // not a token of ours
+        }
+    }
+
+    /**
+     * Revoke every access and refresh token of a user, e.g. when the user is deactivated.
+     */
+    public void revokeAllTokens(String userId) {
+        refreshTokenService.revokeAll(userId);
+        tokenDenyList.revokeUser(userId);
+    }
+
+    private AuthenticationResponse issueTokens(User user) {
+        return AuthenticationResponse.builder()
+                .authenticated(true) // always true if pass the exception check
+                .token(generateToken(user)) // Include the generated token in the resp
+                .refreshToken(refreshTokenService.issue(user.getId()))
+                .expiresIn(accessTtlSeconds)
                 .build();
-        return response;
     }
 
     /**
      * Generate a JWT token for the authenticated user.
-     * @param username
+     * @param user
      * @return JWT token as a string.
      */
-    private String generateToken(String username) {
+    private String generateToken(User user) {
         // Create a JWSHeader with the desired algorithm
         JWSHeader header = new JWSHeader(JWSAlgorithm.HS512);
 
         // define the claims for the JWT
-        Set<String> roles = userRepository.findByUsername(username).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND)).getRoles();
+        Set<String> roles = user.getRoles();
         JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
-                .subject(username)
+                .subject(user.getUsername())
                 .issuer("http://localhost:8080/bookverse")
+                .jwtID(UUID.randomUUID().toString()) // key of the token in the deny list
                 .issueTime(new Date())
                 .expirationTime(new Date(
-                        Instant.now().plus(1, ChronoUnit.HOURS).toEpochMilli()
+                        Instant.now().plus(accessTtlSeconds, ChronoUnit.SECONDS).toEpochMilli()
                 ))
                 .claim("scope", String.join(" ", roles))
+                // lets requests identify the user without reading the user table
+                .claim(UserJwtAuthenticationConverter.USER_ID_CLAIM, user.getId())
+                .claim(UserJwtAuthenticationConverter.ACTIVE_CLAIM, user.isActive())
                 .build();
 
         // Create a payload with the claims
@@ -94,7 +183,7 @@ public class AuthenticationService {
         JWSObject jwsObject = new JWSObject(header, payload);
 
         try {
-            jwsObject.sign(new MACSigner(SIGNER_KEY.getBytes()));
+            jwsObject.sign(signer);
             return jwsObject.serialize(); // Serialize the JWS object to a compact string representation
         } catch (JOSEException e) {
             // announce the error
@@ -104,28 +193,46 @@ public class AuthenticationService {
 
     }
 
+    /**
+     * Check a token for the frontend. A token seen before is answered from memory: its verified claims are
+     * cached until it expires, and the user's id and active flag come from a short-lived cache.
+     * Revocation is checked on every call, cached or not.
+     * @param request
+     * @return IntrospectResponse
+     */
     public IntrospectResponse introspect(IntrospectRequest request)
             throws JOSEException, ParseException {
         var token = request.getToken();
 
-        JWSVerifier verifier = new MACVerifier(SIGNER_KEY.getBytes());
-
-        SignedJWT signedJWT = SignedJWT.parse(token);
-
-        Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-
-        var verified = signedJWT.verify(verifier);
+        VerifiedTokenCache.VerifiedToken verifiedToken = verifiedTokenCache.get(token);
+        boolean valid = verifiedToken != null;
+        if (!valid) {
+            SignedJWT signedJWT = SignedJWT.parse(token);
+            JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+            Date expiryTime = claims.getExpirationTime();
+            valid = signedJWT.verify(verifier) && expiryTime != null && expiryTime.after(new Date());
+            Date issueTime = claims.getIssueTime();
+            verifiedToken = new VerifiedTokenCache.VerifiedToken(claims.getSubject(), claims.getStringClaim("scope"),
+                    expiryTime != null ? expiryTime.getTime() : 0, claims.getJWTID(),
+                    claims.getStringClaim(UserJwtAuthenticationConverter.USER_ID_CLAIM),
+                    issueTime != null ? issueTime.getTime() / 1000 : 0);
+            if (valid) {
+                verifiedTokenCache.put(token, verifiedToken);
+            }
+        }
+        if (valid && tokenDenyList.isRevoked(verifiedToken.jti(), verifiedToken.userId(),
+                Instant.ofEpochSecond(verifiedToken.issuedAt()))) {
+            valid = false;
+        }
 
-        boolean active = userRepository.findByUsername(signedJWT.getJWTClaimsSet().getSubject())
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND)).getIsActive();
+        UserStatusCache.UserStatus status = userStatusCache.get(verifiedToken.subject());
 
         return IntrospectResponse.builder()
-                .valid(verified && expiryTime.after(new Date()))
-                .username(signedJWT.getJWTClaimsSet().getSubject())
-                .id(userRepository.findByUsername(signedJWT.getJWTClaimsSet().getSubject())
-                        .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND)).getId().toString())
-                .role(signedJWT.getJWTClaimsSet().getStringClaim("scope"))
-                .active(active)
+                .valid(valid)
+                .username(verifiedToken.subject())
+                .id(status.id())
+                .role(verifiedToken.scope())
+                .active(status.active())
                 .build();
     }
 }
@@ -313,6 +313,8 @@ public class AuthorService {
                     .active(book.getActive())
                     .image(book.getImage())
                     .stockQuantity(book.getStockQuantity())
+                    .soldCount(book.getSoldCount())
+                    .reviewCount(book.getReviewCount())
                     .authorId(book.getAuthor() != null ? book.getAuthor().getId() : null)
                     .publisherId(book.getPublisher() != null ? book.getPublisher().getId() : null)
                     .categoryId(book.getCategory() != null ? book.getCategory().getId() : null)
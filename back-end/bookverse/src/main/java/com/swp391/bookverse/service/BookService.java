@@ -89,6 +89,7 @@ public class BookService {
         book.setPublishedDate(LocalDate.parse(publishedDate));
         book.setImage(imagePath);
         book.setActive(active);
+        book.setReviewCount(0);
 
         // Set relationships
         if (authorId != null) {
@@ -502,6 +503,7 @@ public class BookService {
                 .publishedDate(request.getPublishedDate())
                 .image(request.getImage())
                 .active(request.getActive())
+                .reviewCount(0)
                 .build();
     }
 
@@ -520,6 +522,8 @@ public class BookService {
                 .publisherId(book.getPublisher().getId())
                 .categoryId(book.getCategory().getId())
                 .stockQuantity(book.getStockQuantity())
+                .soldCount(book.getSoldCount())
+                .reviewCount(book.getReviewCount())
                 .publishedDate(book.getPublishedDate())
                 .image(book.getImage())
                 .active(book.getActive())
@@ -4,7 +4,6 @@ import com.swp391.bookverse.dto.request.CartItemUpdateRequest;
 import com.swp391.bookverse.dto.response.CartResponse;
 import com.swp391.bookverse.entity.Cart;
 import com.swp391.bookverse.entity.CartItem;
-import com.swp391.bookverse.entity.User;
 import com.swp391.bookverse.entity.Book;
 import com.swp391.bookverse.exception.AppException;
 import com.swp391.bookverse.exception.ErrorCode;
@@ -12,49 +11,77 @@ import com.swp391.bookverse.repository.BookRepository;
 import com.swp391.bookverse.repository.CartRepository;
 import com.swp391.bookverse.mapper.CartMapper;
 import com.swp391.bookverse.repository.UserRepository;
+import com.swp391.bookverse.service.auth.CurrentUserService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.swp391.bookverse.dto.request.AddToCartRequest;
-
-
+import com.swp391.bookverse.dto.request.CartBatchRequest;
+import com.swp391.bookverse.dto.request.CartOperationRequest;
+import com.swp391.bookverse.dto.response.CartItemResponse;
+import com.swp391.bookverse.dto.response.CartSummaryResponse;
+import com.swp391.bookverse.dto.response.PageResponse;
+import com.swp391.bookverse.enums.CartOperationType;
+import com.swp391.bookverse.service.cart.CartWriteBehindStore;
+import com.swp391.bookverse.service.inventory.StockReservationService;
+
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class CartService {
+    static final int MAX_PAGE_SIZE = 100;
+
     CartRepository cartRepository;
     CartMapper cartMapper;
     UserRepository userRepository;
+    CurrentUserService currentUserService;
     BookRepository bookRepository;
+    CartWriteBehindStore cartStore;
+    StockReservationService stockReservationService;
 
     /**
-     * Get all carts (admin only)
-     * @return
+     * Get one page of carts (admin only), aggregated per cart without loading items and books
+     * @param page
+     * @param size
+     * @return PageResponse<CartSummaryResponse>
      */
     @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
     @Transactional(readOnly = true)
-    public List<CartResponse> getCarts() {
-        return cartRepository.findAll().stream()
-                .map(cartMapper::toCartResponse)
-                .toList();
+    public PageResponse<CartSummaryResponse> getCarts(int page, int size) {
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE), Sort.by("id"));
+        return PageResponse.of(cartRepository.findCartSummaries(pageable));
     }
 
+    /**
+     * Get the active cart of a user
+     * @param userId
+     * @return CartResponse, or null if the user has no active cart
+     */
+    @Transactional(readOnly = true)
     public CartResponse getCartByUserId(String userId) {
-        List<CartResponse> carts = cartRepository.findAll().stream()
-                .map(cartMapper::toCartResponse)
-                .toList();
-        for (CartResponse cart : carts) {
-            if (cart.getUserId().equals(userId)) {
-                return cart;
-            }
+        if (cartStore.isEnabled()) {
+            return toCartResponse(userId, cartStore.read(userId));
         }
-        return null;
+        return cartRepository.findByUserIdAndActive(userId)
+                .map(cartMapper::toCartResponse)
+                .orElse(null);
     }
 
     /**
@@ -62,21 +89,18 @@ public class CartService {
      * @return CartResponse
      */
     public CartResponse getMyCart() {
-        String currentUserId = "current-user-id"; // Placeholder for current user ID
-
-        // find current user id base on jwt token
-        var context = SecurityContextHolder.getContext();
-        String contextName = context.getAuthentication().getName();
-
-        User user = userRepository.findByUsername(contextName)
-                .orElseThrow(() -> new RuntimeException("User not found: " + contextName));
-        currentUserId = user.getId().toString();
-
-        Cart cart = cartRepository.findByUserIdAndActive(currentUserId)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        // current user id from the jwt token
+        String currentUserId = currentUserService.getId();
 
+        if (cartStore.isEnabled()) {
+            return toCartResponse(currentUserId, cartStore.read(currentUserId));
+        }
 
-        return cartMapper.toCartResponse(cart);
+        // no active cart yet (new user, or right after a checkout)
+        String userId = currentUserId;
+        return cartRepository.findByUserIdAndActive(currentUserId)
+                .map(cartMapper::toCartResponse)
+                .orElseGet(() -> CartResponse.builder().userId(userId).active(true).build());
     }
 
     /**
@@ -86,18 +110,19 @@ public class CartService {
      */
     @Transactional
     public CartResponse addOneToCart(AddToCartRequest request) {
-        // Get current user from security context
-        var context = SecurityContextHolder.getContext();
-        String username = context.getAuthentication().getName();
+        // Get current user id from the jwt token
+        String userId = currentUserService.getId();
 
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        // In write-behind mode the cart lives in memory and is persisted in batches
+        if (cartStore.isEnabled()) {
+            return applyToCachedCart(userId, List.of(operation(CartOperationType.ADD, request.getBookId(), 1)), false);
+        }
 
         // Find or create active cart for user
-        Cart cart = cartRepository.findByUserIdAndActive(user.getId())
+        Cart cart = cartRepository.findByUserIdAndActive(userId)
                 .orElseGet(() -> {
                     Cart newCart = Cart.builder()
-                            .user(user)
+                            .user(userRepository.getReferenceById(userId))
                             .active(true)
                             .build();
                     return cartRepository.save(newCart);
@@ -116,9 +141,7 @@ public class CartService {
         int existingQty = existingItem != null ? existingItem.getQuantity() : 0;
         int desiredTotal = existingQty + 1; // since we are adding 1 to cart
 
-        if (book.getStockQuantity() < desiredTotal) {
-            throw new AppException(ErrorCode.EXCEED_STOCK);
-        }
+        reserveStock(userId, Map.of(book.getId(), desiredTotal), Map.of(book.getId(), book));
 
         if (existingItem != null) {
             // Update quantity if book already in cart
@@ -145,15 +168,16 @@ public class CartService {
      */
     @Transactional
     public CartResponse removeOneFromCart(AddToCartRequest request) {
-        // Get current user from security context
-        var context = SecurityContextHolder.getContext();
-        String username = context.getAuthentication().getName();
+        // Get current user id from the jwt token
+        String userId = currentUserService.getId();
 
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        // In write-behind mode the cart lives in memory and is persisted in batches
+        if (cartStore.isEnabled()) {
+            return applyToCachedCart(userId, List.of(operation(CartOperationType.REMOVE, request.getBookId(), 1)), false);
+        }
 
         // Find active cart for user
-        Cart cart = cartRepository.findByUserIdAndActive(user.getId())
+        Cart cart = cartRepository.findByUserIdAndActive(userId)
                 .orElseThrow(() -> new AppException(ErrorCode.CART_NOT_FOUND));
 
         // Find the cart item
@@ -162,6 +186,9 @@ public class CartService {
                 .findFirst()
                 .orElseThrow(() -> new AppException(ErrorCode.CART_ITEM_NOT_FOUND));
 
+        // Give back the reserved unit
+        releaseStock(userId, request.getBookId(), existingItem.getQuantity() - 1);
+
         // Decrease quantity or remove item
         if (existingItem.getQuantity() > 1) {
             existingItem.setQuantity(existingItem.getQuantity() - 1);
@@ -180,15 +207,16 @@ public class CartService {
      * @return CartResponse
      */
     public CartResponse clearAnItem(AddToCartRequest request) {
-        // Get current user from security context
-        var context = SecurityContextHolder.getContext();
-        String username = context.getAuthentication().getName();
+        // Get current user id from the jwt token
+        String userId = currentUserService.getId();
 
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        // In write-behind mode the cart lives in memory and is persisted in batches
+        if (cartStore.isEnabled()) {
+            return applyToCachedCart(userId, List.of(operation(CartOperationType.SET_QUANTITY, request.getBookId(), 0)), true);
+        }
 
         // Find active cart for user
-        Cart cart = cartRepository.findByUserIdAndActive(user.getId())
+        Cart cart = cartRepository.findByUserIdAndActive(userId)
                 .orElseThrow(() -> new AppException(ErrorCode.CART_NOT_FOUND));
 
         // Find the cart item
@@ -197,7 +225,8 @@ public class CartService {
                 .findFirst()
                 .orElseThrow(() -> new AppException(ErrorCode.CART_ITEM_NOT_FOUND));
 
-        // Remove item
+        // Release the reserved stock and remove item
+        releaseStock(userId, request.getBookId(), 0);
         cart.removeCartItem(existingItem);
 
         Cart savedCart = cartRepository.save(cart);
@@ -210,15 +239,16 @@ public class CartService {
      * @return CartResponse
      */
     public CartResponse updateItemQuantity(CartItemUpdateRequest request) {
-        // Get current user from security context
-        var context = SecurityContextHolder.getContext();
-        String username = context.getAuthentication().getName();
+        // Get current user id from the jwt token
+        String userId = currentUserService.getId();
 
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        // In write-behind mode the cart lives in memory and is persisted in batches
+        if (cartStore.isEnabled()) {
+            return applyToCachedCart(userId, List.of(operation(CartOperationType.SET_QUANTITY, request.getBookId(), request.getQuantity())), true);
+        }
 
         // Find active cart for user
-        Cart cart = cartRepository.findByUserIdAndActive(user.getId())
+        Cart cart = cartRepository.findByUserIdAndActive(userId)
                 .orElseThrow(() -> new AppException(ErrorCode.CART_NOT_FOUND));
 
         // Find the cart item
@@ -230,9 +260,7 @@ public class CartService {
         // check if desired quantity exceed book stock
         Book book = bookRepository.findById(request.getBookId())
                 .orElseThrow(() -> new AppException(ErrorCode.BOOK_NOT_FOUND));
-        if (book.getStockQuantity() < request.getQuantity()) {
-            throw new AppException(ErrorCode.EXCEED_STOCK);
-        }
+        reserveStock(userId, Map.of(book.getId(), request.getQuantity()), Map.of(book.getId(), book));
         // Update quantity
         existingItem.setQuantity(request.getQuantity());
         Cart savedCart = cartRepository.save(cart);
@@ -245,15 +273,16 @@ public class CartService {
             throw new AppException(ErrorCode.QUANTITY_INVALID);
         }
 
-        // Get current user from security context
-        var context = SecurityContextHolder.getContext();
-        String username = context.getAuthentication().getName();
+        // Get current user id from the jwt token
+        String userId = currentUserService.getId();
 
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        // In write-behind mode the cart lives in memory and is persisted in batches
+        if (cartStore.isEnabled()) {
+            return applyToCachedCart(userId, List.of(operation(CartOperationType.ADD, request.getBookId(), request.getQuantity())), true);
+        }
 
         // Find active cart for user
-        Cart cart = cartRepository.findByUserIdAndActive(user.getId())
+        Cart cart = cartRepository.findByUserIdAndActive(userId)
                 .orElseThrow(() -> new AppException(ErrorCode.CART_NOT_FOUND));
 
         // Find the cart item
@@ -266,12 +295,246 @@ public class CartService {
         Book book = bookRepository.findById(request.getBookId())
                 .orElseThrow(() -> new AppException(ErrorCode.BOOK_NOT_FOUND));
         int desiredTotal = existingItem.getQuantity() + request.getQuantity();
-        if (book.getStockQuantity() < desiredTotal) {
-            throw new AppException(ErrorCode.EXCEED_STOCK);
-        }
+        reserveStock(userId, Map.of(book.getId(), desiredTotal), Map.of(book.getId(), book));
         // Update quantity
         existingItem.setQuantity(desiredTotal);
         Cart savedCart = cartRepository.save(cart);
         return cartMapper.toCartResponse(savedCart);
     }
+
+    /**
+     * Apply an ordered list of add / remove / set-quantity operations to current user's cart
+     * in a single transaction. Stock of every affected book is validated with one query.
+     * @param request
+     * @return CartResponse
+     */
+    @Transactional
+    public CartResponse applyBatch(CartBatchRequest request) {
+        if (request.getOperations() == null || request.getOperations().isEmpty()) {
+            throw new AppException(ErrorCode.CART_OPERATION_INVALID);
+        }
+
+        // Get current user id from the jwt token
+        String userId = currentUserService.getId();
+
+        if (cartStore.isEnabled()) {
+            return applyToCachedCart(userId, request.getOperations(), false);
+        }
+
+        // Find or create active cart for user
+        Cart cart = cartRepository.findByUserIdAndActive(userId)
+                .orElseGet(() -> {
+                    Cart newCart = Cart.builder()
+                            .user(userRepository.getReferenceById(userId))
+                            .active(true)
+                            .build();
+                    return cartRepository.save(newCart);
+                });
+
+        // Current quantities of the cart, keyed by book id
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem item : cart.getCartItems()) {
+            quantities.put(item.getBook().getId(), item.getQuantity());
+        }
+
+        Map<Long, Integer> previous = new HashMap<>(quantities);
+        Set<Long> touchedBookIds = replayOperations(quantities, request.getOperations());
+        Map<Long, Book> books = findBooks(touchedBookIds);
+        checkStock(userId, previous, quantities, touchedBookIds, books);
+
+        // Write the final quantities back to the cart entity
+        Map<Long, CartItem> existingItems = cart.getCartItems().stream()
+                .collect(Collectors.toMap(item -> item.getBook().getId(), Function.identity()));
+        for (Long bookId : touchedBookIds) {
+            int desired = quantities.get(bookId);
+            CartItem existingItem = existingItems.get(bookId);
+            if (existingItem != null && desired == 0) {
+                cart.removeCartItem(existingItem);
+            } else if (existingItem != null) {
+                existingItem.setQuantity(desired);
+            } else if (desired > 0) {
+                cart.addCartItem(CartItem.builder()
+                        .book(books.get(bookId))
+                        .quantity(desired)
+                        .build());
+            }
+        }
+
+        Cart savedCart = cartRepository.save(cart);
+        return cartMapper.toCartResponse(savedCart);
+    }
+
+    /**
+     * Apply operations to the in-memory cart of a user (write-behind mode).
+     * @param userId
+     * @param operations ordered operations
+     * @param requireExisting whether every operation must target a book that is already in the cart
+     * @return CartResponse
+     */
+    private CartResponse applyToCachedCart(String userId, List<CartOperationRequest> operations, boolean requireExisting) {
+        // Load the books outside of the cart lock, the mutation only validates against them
+        Set<Long> bookIds = new HashSet<>();
+        for (CartOperationRequest operation : operations) {
+            if (operation.getBookId() != null) {
+                bookIds.add(operation.getBookId());
+            }
+        }
+        Map<Long, Book> books = findBooks(bookIds);
+
+        Map<Long, Integer> items = cartStore.update(userId, quantities -> {
+            if (requireExisting) {
+                for (CartOperationRequest operation : operations) {
+                    if (!quantities.containsKey(operation.getBookId())) {
+                        throw new AppException(ErrorCode.CART_ITEM_NOT_FOUND);
+                    }
+                }
+            }
+            Map<Long, Integer> previous = new HashMap<>(quantities);
+            Set<Long> touchedBookIds = replayOperations(quantities, operations);
+            checkStock(userId, previous, quantities, touchedBookIds, books);
+        });
+        return toCartResponse(userId, items);
+    }
+
+    /**
+     * Replay operations in order on a book id -> quantity map.
+     * @return ids of the books touched by the operations
+     */
+    private Set<Long> replayOperations(Map<Long, Integer> quantities, List<CartOperationRequest> operations) {
+        Set<Long> touchedBookIds = new HashSet<>();
+        for (CartOperationRequest operation : operations) {
+            if (operation.getType() == null || operation.getBookId() == null) {
+                throw new AppException(ErrorCode.CART_OPERATION_INVALID);
+            }
+            Long bookId = operation.getBookId();
+            int current = quantities.getOrDefault(bookId, 0);
+            int amount = operation.getQuantity() != null ? operation.getQuantity() : 1;
+
+            int next = switch (operation.getType()) {
+                case ADD -> {
+                    if (amount <= 0) {
+                        throw new AppException(ErrorCode.QUANTITY_INVALID);
+                    }
+                    yield current + amount;
+                }
+                case REMOVE -> {
+                    if (amount <= 0) {
+                        throw new AppException(ErrorCode.QUANTITY_INVALID);
+                    }
+                    if (current == 0) {
+                        throw new AppException(ErrorCode.CART_ITEM_NOT_FOUND);
+                    }
+                    yield Math.max(current - amount, 0);
+                }
+                case SET_QUANTITY -> {
+                    if (operation.getQuantity() == null || operation.getQuantity() < 0) {
+                        throw new AppException(ErrorCode.QUANTITY_INVALID);
+                    }
+                    yield operation.getQuantity();
+                }
+            };
+            quantities.put(bookId, next);
+            touchedBookIds.add(bookId);
+        }
+        return touchedBookIds;
+    }
+
+    /**
+     * Load every given book with a single query.
+     */
+    private Map<Long, Book> findBooks(Collection<Long> bookIds) {
+        return bookRepository.findAllById(bookIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+    }
+
+    /**
+     * Validate the final quantities of the touched books against their stock.
+     * Books whose quantity did not grow only give back stock.
+     */
+    private void checkStock(String userId, Map<Long, Integer> previous, Map<Long, Integer> quantities,
+                            Set<Long> touchedBookIds, Map<Long, Book> books) {
+        Map<Long, Integer> desired = new HashMap<>();
+        for (Long bookId : touchedBookIds) {
+            if (!books.containsKey(bookId)) {
+                throw new AppException(ErrorCode.BOOK_NOT_FOUND);
+            }
+            int quantity = quantities.get(bookId);
+            if (quantity > previous.getOrDefault(bookId, 0)) {
+                desired.put(bookId, quantity);
+            }
+        }
+        reserveStock(userId, desired, books);
+        for (Long bookId : touchedBookIds) {
+            if (!desired.containsKey(bookId)) {
+                releaseStock(userId, bookId, quantities.get(bookId));
+            }
+        }
+    }
+
+    /**
+     * Make sure the user can hold the desired quantities of the given books.
+     * With stock reservations enabled the quantities are reserved for the user (contention-free, no oversell),
+     * otherwise they are compared to the current stock.
+     * @param userId
+     * @param desired book id -> quantity the user wants in the cart (0 releases)
+     * @param books book id -> book
+     */
+    private void reserveStock(String userId, Map<Long, Integer> desired, Map<Long, Book> books) {
+        if (desired.isEmpty()) {
+            return;
+        }
+        if (stockReservationService.isEnabled()) {
+            Map<Long, Integer> stockHints = new HashMap<>();
+            books.forEach((bookId, book) -> stockHints.put(bookId, book.getStockQuantity()));
+            stockReservationService.reserveAll(userId, desired, stockHints);
+            return;
+        }
+        desired.forEach((bookId, quantity) -> {
+            if (quantity > 0 && books.get(bookId).getStockQuantity() < quantity) {
+                throw new AppException(ErrorCode.EXCEED_STOCK);
+            }
+        });
+    }
+
+    /**
+     * Give back reserved stock when a cart item is decreased or removed.
+     */
+    private void releaseStock(String userId, Long bookId, int remainingQuantity) {
+        if (stockReservationService.isEnabled()) {
+            stockReservationService.releaseTo(userId, bookId, remainingQuantity);
+        }
+    }
+
+    /**
+     * Build the response of an in-memory cart, book details are loaded with a single query.
+     */
+    private CartResponse toCartResponse(String userId, Map<Long, Integer> items) {
+        Map<Long, Book> books = findBooks(items.keySet());
+        List<CartItemResponse> cartItems = items.entrySet().stream()
+                .filter(entry -> books.containsKey(entry.getKey()))
+                .map(entry -> {
+                    Book book = books.get(entry.getKey());
+                    return CartItemResponse.builder()
+                            .bookId(book.getId())
+                            .bookTitle(book.getTitle())
+                            .price(book.getPrice())
+                            .quantity(entry.getValue())
+                            .subtotal(entry.getValue() * book.getPrice())
+                            .build();
+                })
+                .toList();
+        return CartResponse.builder()
+                .userId(userId)
+                .cartItems(cartItems)
+                .active(true)
+                .build();
+    }
+
+    private static CartOperationRequest operation(CartOperationType type, Long bookId, Integer quantity) {
+        return CartOperationRequest.builder()
+                .type(type)
+                .bookId(bookId)
+                .quantity(quantity)
+                .build();
+    }
 }
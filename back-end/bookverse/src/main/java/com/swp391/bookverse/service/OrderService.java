@@ -0,0 +1,333 @@
+package com.swp391.bookverse.service;
+
+import com.swp391.bookverse.dto.KeysetCursor;
+import com.swp391.bookverse.dto.request.CheckoutRequest;
+import com.swp391.bookverse.dto.response.CursorPageResponse;
+import com.swp391.bookverse.dto.response.OrderItemResponse;
+import com.swp391.bookverse.dto.response.OrderResponse;
+import com.swp391.bookverse.entity.Cart;
+import com.swp391.bookverse.entity.CartItem;
+import com.swp391.bookverse.entity.Order;
+import com.swp391.bookverse.entity.Payment;
+import com.swp391.bookverse.entity.User;
+import com.swp391.bookverse.enums.OrderStatus;
+import com.swp391.bookverse.enums.OutboxEventType;
+import com.swp391.bookverse.enums.PaymentMethod;
+import com.swp391.bookverse.enums.PaymentStatus;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.repository.CartRepository;
+import com.swp391.bookverse.repository.OrderRepository;
+import com.swp391.bookverse.repository.PaymentRepository;
+import com.swp391.bookverse.service.cart.CartWriteBehindStore;
+import com.swp391.bookverse.service.flashsale.FlashSaleService;
+import com.swp391.bookverse.service.inventory.StockReservationService;
+import com.swp391.bookverse.service.outbox.OutboxPayloads;
+import com.swp391.bookverse.service.outbox.OutboxService;
+import com.swp391.bookverse.service.auth.CurrentUserService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OrderService {
+    static final int MAX_PAGE_SIZE = 100;
+
+    OrderRepository orderRepository;
+    PaymentRepository paymentRepository;
+    CartRepository cartRepository;
+    CurrentUserService currentUserService;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+    CartWriteBehindStore cartStore;
+    StockReservationService stockReservationService;
+    FlashSaleService flashSaleService;
+    OutboxService outboxService;
+
+    /**
+     * Turn the current user's active cart into an order.
+     * <p>
+     * Runs in one transaction with a bounded number of statements whatever the cart size: the cart is
+     * claimed with a conditional UPDATE (a concurrent checkout of the same cart gets 0 rows), stock is
+     * taken with one batch of conditional decrements, order items are inserted in one batch, then the
+     * order and its payment row. Units already taken by a flash-sale purchase are not decremented again.
+     * In write-behind mode the cart is flushed first, in its own transaction: a checkout that rolls back
+     * must not take the cart rows with it, and the order transaction must see them.
+     * @param request
+     * @return OrderResponse
+     */
+    public OrderResponse checkout(CheckoutRequest request) {
+        if (cartStore.isEnabled()) {
+            cartStore.flushUser(currentUserService.getId());
+        }
+        return transactionTemplate.execute(status -> placeOrder(request));
+    }
+
+    private OrderResponse placeOrder(CheckoutRequest request) {
+        // address and email are needed, load the profile by primary key
+        User user = currentUserService.load();
+        String userId = user.getId();
+
+        Cart cart = cartRepository.findByUserIdAndActive(userId)
+                .orElseThrow(() -> new AppException(ErrorCode.CART_EMPTY));
+        if (cart.getCartItems().isEmpty()) {
+            throw new AppException(ErrorCode.CART_EMPTY);
+        }
+
+        // claim the cart, the loser of two concurrent checkouts stops here
+        if (jdbcTemplate.update("UPDATE cart SET active = 0 WHERE id = ? AND active = 1", cart.getId()) == 0) {
+            throw new AppException(ErrorCode.CHECKOUT_IN_PROGRESS);
+        }
+
+        // freeze prices and merge duplicate lines of the same book
+        Map<Long, OrderItemResponse> items = new LinkedHashMap<>();
+        for (CartItem cartItem : cart.getCartItems()) {
+            Long bookId = cartItem.getBook().getId();
+            OrderItemResponse item = items.computeIfAbsent(bookId, id -> OrderItemResponse.builder()
+                    .bookId(id)
+                    .bookTitle(cartItem.getBook().getTitle())
+                    .price(cartItem.getBook().getPrice())
+                    .quantity(0)
+                    .build());
+            item.setQuantity(item.getQuantity() + cartItem.getQuantity());
+        }
+
+        takeStock(userId, items);
+
+        double totalAmount = 0;
+        for (OrderItemResponse item : items.values()) {
+            item.setSubtotal(item.getPrice() * item.getQuantity());
+            totalAmount += item.getSubtotal();
+        }
+
+        Order order = orderRepository.save(Order.builder()
+                .user(user)
+                .status(OrderStatus.PENDING)
+                .totalAmount(totalAmount)
+                .address(request.getAddress() != null ? request.getAddress() : user.getAddress())
+                .active(true)
+                .build());
+
+        List<Object[]> orderItemRows = new ArrayList<>(items.size());
+        for (OrderItemResponse item : items.values()) {
+            orderItemRows.add(new Object[]{order.getId(), item.getBookId(), item.getQuantity(), item.getPrice()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO order_item (order_id, book_id, quantity, price) VALUES (?, ?, ?, ?)", orderItemRows);
+
+        Payment payment = paymentRepository.save(Payment.builder()
+                .order(order)
+                .method(request.getPaymentMethod() != null ? request.getPaymentMethod() : PaymentMethod.COD)
+                .status(PaymentStatus.PENDING)
+                .amount(totalAmount)
+                .build());
+
+        // confirmation email and sales counters are delivered after commit
+        outboxService.publish(OutboxEventType.ORDER_PLACED, order.getId().toString(), new OutboxPayloads.OrderPlaced(
+                order.getId(), userId, user.getEmail(), totalAmount,
+                items.values().stream()
+                        .map(item -> new OutboxPayloads.OrderLine(item.getBookId(), item.getBookTitle(), item.getQuantity(), item.getPrice()))
+                        .toList()));
+
+        // in-memory state follows the database only once the order is committed
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (cartStore.isEnabled()) {
+                    cartStore.evict(userId);
+                }
+                if (stockReservationService.isEnabled()) {
+                    items.keySet().forEach(bookId -> stockReservationService.commit(userId, bookId));
+                }
+            }
+        });
+
+        return OrderResponse.builder()
+                .id(order.getId())
+                .userId(userId)
+                .status(order.getStatus())
+                .totalAmount(totalAmount)
+                .address(order.getAddress())
+                .createdAt(order.getCreatedAt())
+                .orderItems(new ArrayList<>(items.values()))
+                .paymentId(payment.getId())
+                .paymentMethod(payment.getMethod())
+                .paymentStatus(payment.getStatus())
+                .build();
+    }
+
+    /**
+     * Get one page of the current user's orders, newest first
+     * @param userId id of the current user, from its token
+     * @param status optional status filter
+     * @param from optional first day (inclusive)
+     * @param to optional last day (inclusive)
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param size page size
+     * @return CursorPageResponse<OrderResponse>
+     */
+    public CursorPageResponse<OrderResponse> getMyOrders(String userId, OrderStatus status, LocalDate from, LocalDate to, String cursor, int size) {
+        return findOrders(userId, status, from, to, cursor, size);
+    }
+
+    /**
+     * Get one page of all orders, newest first (admin and staff)
+     * @param userId optional customer filter
+     * @param status optional status filter
+     * @param from optional first day (inclusive)
+     * @param to optional last day (inclusive)
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param size page size
+     * @return CursorPageResponse<OrderResponse>
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN') or hasAuthority('SCOPE_STAFF')")
+    public CursorPageResponse<OrderResponse> getOrders(String userId, OrderStatus status, LocalDate from, LocalDate to, String cursor, int size) {
+        return findOrders(userId, status, from, to, cursor, size);
+    }
+
+    /**
+     * Keyset page on (created_at, id) descending, served by the (user_id, created_at) or (status, created_at) index.
+     * Two queries per page: the orders with their payment, then the items of all of them.
+     */
+    private CursorPageResponse<OrderResponse> findOrders(String userId, OrderStatus status, LocalDate from, LocalDate to,
+                                                         String cursor, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        StringBuilder sql = new StringBuilder("SELECT o.id, o.user_id, o.status, o.total_amount, o.address, o.created_at, " +
+                "p.id, p.method, p.status FROM `order` o LEFT JOIN payment p ON p.order_id = o.id WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (userId != null) {
+            sql.append(" AND o.user_id = ?");
+            params.add(userId);
+        }
+        if (status != null) {
+            sql.append(" AND o.status = ?");
+            params.add(status.name());
+        }
+        if (from != null) {
+            sql.append(" AND o.created_at >= ?");
+            params.add(from.atStartOfDay());
+        }
+        if (to != null) {
+            sql.append(" AND o.created_at < ?");
+            params.add(to.plusDays(1).atStartOfDay());
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            KeysetCursor after = KeysetCursor.decode(cursor, ErrorCode.ORDER_CURSOR_INVALID);
+            sql.append(" AND (o.created_at < ? OR (o.created_at = ? AND o.id < ?))");
+            params.add(after.createdAt());
+            params.add(after.createdAt());
+            params.add(after.id());
+        }
+        sql.append(" ORDER BY o.created_at DESC, o.id DESC LIMIT ?");
+        // one extra row tells whether there is a next page
+        params.add(limit + 1);
+
+        List<OrderResponse> orders = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            Timestamp createdAt = rs.getTimestamp(6);
+            long paymentIdValue = rs.getLong(7);
+            Long paymentId = rs.wasNull() ? null : paymentIdValue;
+            return OrderResponse.builder()
+                    .id(rs.getLong(1))
+                    .userId(rs.getString(2))
+                    .status(OrderStatus.valueOf(rs.getString(3)))
+                    .totalAmount(rs.getDouble(4))
+                    .address(rs.getString(5))
+                    .createdAt(createdAt != null ? createdAt.toLocalDateTime() : null)
+                    .paymentId(paymentId)
+                    .paymentMethod(rs.getString(8) != null ? PaymentMethod.valueOf(rs.getString(8)) : null)
+                    .paymentStatus(rs.getString(9) != null ? PaymentStatus.valueOf(rs.getString(9)) : null)
+                    .build();
+        }, params.toArray());
+
+        boolean hasNext = orders.size() > limit;
+        if (hasNext) {
+            orders = new ArrayList<>(orders.subList(0, limit));
+        }
+        loadItems(orders);
+
+        OrderResponse last = orders.isEmpty() ? null : orders.get(orders.size() - 1);
+        return CursorPageResponse.<OrderResponse>builder()
+                .content(orders)
+                .size(limit)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? new KeysetCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .build();
+    }
+
+    /**
+     * Fill the items of a page of orders with one query.
+     */
+    private void loadItems(List<OrderResponse> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        Map<Long, OrderResponse> byId = new LinkedHashMap<>();
+        orders.forEach(order -> byId.put(order.getId(), order));
+        String placeholders = String.join(",", Collections.nCopies(byId.size(), "?"));
+        jdbcTemplate.query("SELECT oi.order_id, oi.book_id, b.title, oi.quantity, oi.price FROM order_item oi " +
+                        "JOIN book b ON b.id = oi.book_id WHERE oi.order_id IN (" + placeholders + ") ORDER BY oi.id",
+                rs -> {
+                    int quantity = rs.getInt(4);
+                    double price = rs.getDouble(5);
+                    byId.get(rs.getLong(1)).getOrderItems().add(OrderItemResponse.builder()
+                            .bookId(rs.getLong(2))
+                            .bookTitle(rs.getString(3))
+                            .quantity(quantity)
+                            .price(price)
+                            .subtotal(price * quantity)
+                            .build());
+                },
+                byId.keySet().toArray());
+    }
+
+    /**
+     * Decrement the stock of every ordered book with one batch of conditional updates, in book id order.
+     * Fails with EXCEED_STOCK (rolling back the whole checkout) if one of them does not have enough stock.
+     */
+    private void takeStock(String userId, Map<Long, OrderItemResponse> items) {
+        Map<Long, Integer> ordered = new TreeMap<>();
+        items.values().forEach(item -> ordered.put(item.getBookId(), item.getQuantity()));
+        // stock of flash-sale units was already taken by the flash-sale writer, the claims come back on rollback
+        Map<Long, Integer> claimed = flashSaleService.consumeClaims(userId, ordered);
+
+        List<Object[]> decrements = new ArrayList<>(items.size());
+        List<Long> decrementedBooks = new ArrayList<>(items.size());
+        for (Map.Entry<Long, Integer> item : ordered.entrySet()) {
+            int quantity = item.getValue() - claimed.getOrDefault(item.getKey(), 0);
+            if (quantity > 0) {
+                decrements.add(new Object[]{quantity, item.getKey(), quantity});
+                decrementedBooks.add(item.getKey());
+            }
+        }
+
+        if (decrements.isEmpty()) {
+            return;
+        }
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE book SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?", decrements);
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                log.info("Checkout of user {} rejected, not enough stock for book {}", userId, decrementedBooks.get(i));
+                throw new AppException(ErrorCode.EXCEED_STOCK);
+            }
+        }
+    }
+}
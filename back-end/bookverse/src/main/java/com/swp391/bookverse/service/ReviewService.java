@@ -1,141 +1,234 @@
 package com.swp391.bookverse.service;
 
 import com.swp391.bookverse.dto.APIResponse;
+import com.swp391.bookverse.dto.KeysetCursor;
 import com.swp391.bookverse.dto.request.ReviewCreationRequest;
 import com.swp391.bookverse.dto.request.ReviewDeletionRequest;
 import com.swp391.bookverse.dto.request.ReviewUpdateRequest;
+import com.swp391.bookverse.dto.response.CursorPageResponse;
+import com.swp391.bookverse.dto.response.PageResponse;
 import com.swp391.bookverse.dto.response.ReviewOfBookResponse;
 import com.swp391.bookverse.dto.response.ReviewResponse;
-import com.swp391.bookverse.entity.Book;
 import com.swp391.bookverse.entity.Review;
-import com.swp391.bookverse.entity.User;
 import com.swp391.bookverse.exception.AppException;
 import com.swp391.bookverse.exception.ErrorCode;
 import com.swp391.bookverse.mapper.ReviewMapper;
 import com.swp391.bookverse.repository.BookRepository;
 import com.swp391.bookverse.repository.ReviewRepository;
-import com.swp391.bookverse.repository.UserRepository;
+import com.swp391.bookverse.service.auth.CurrentUserService;
+import jakarta.annotation.PostConstruct;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * @Author huangdat
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class ReviewService {
+    static final int MAX_PAGE_SIZE = 100;
+
     ReviewMapper reviewMapper;
     ReviewRepository reviewRepository;
     BookRepository bookRepository;
-    UserRepository userRepository;
+    CurrentUserService currentUserService;
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Fill review_count of books that have none yet, e.g. right after the column was added.
+     */
+    @PostConstruct
+    void backfillReviewCounts() {
+        int updated = jdbcTemplate.update("UPDATE book b SET review_count = " +
+                "(SELECT COUNT(*) FROM review r WHERE r.book_id = b.id) WHERE b.review_count IS NULL");
+        if (updated > 0) {
+            log.info("Review counts backfilled for {} books", updated);
+        }
+    }
 
     /**
      * Create a new review of current user for a specific book.
      * @param request
      * @return ReviewResponse
      */
+    @Transactional
     @PreAuthorize("hasAuthority('SCOPE_CUSTOMER')")
     public ReviewResponse createReview(ReviewCreationRequest request) {
         // Get current authenticated user
-        User user = userRepository.findByUsername(
-                SecurityContextHolder.getContext().getAuthentication().getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        String userId = currentUserService.getId();
 
-        // Find the book by ID (use bookId from path parameter, not request body)
-        Book book = bookRepository.findById(request.getBookId())
-                .orElseThrow(() -> new AppException(ErrorCode.BOOK_NOT_FOUND));
+        // Check the book exists (use bookId from path parameter, not request body)
+        if (!bookRepository.existsById(request.getBookId())) {
+            throw new AppException(ErrorCode.BOOK_NOT_FOUND);
+        }
 
         // check if the user has already reviewed this book
-        if (reviewRepository.existsByUserIdAndBookId(user.getId(), book.getId())) {
+        if (reviewRepository.existsByBookIdAndUserId(request.getBookId(), userId)) {
             throw new AppException(ErrorCode.REVIEW_ALREADY_EXISTS);
         }
 
         // Create review entity
         Review review = Review.builder()
-                .userId(user.getId())
+                .userId(userId)
                 .bookId(request.getBookId())
                 .comment(request.getComment())
                 .build();
 
-        // Save the review
-        Review savedReview = reviewRepository.save(review);
+        // Save the review, the unique (book_id, user_id) constraint rejects a concurrent duplicate
+        Review savedReview;
+        try {
+            savedReview = reviewRepository.saveAndFlush(review);
+        } catch (DataIntegrityViolationException e) {
+            throw new AppException(ErrorCode.REVIEW_ALREADY_EXISTS);
+        }
+        jdbcTemplate.update("UPDATE book SET review_count = COALESCE(review_count, 0) + 1 WHERE id = ?", request.getBookId());
 
         // Map and return response
         return reviewMapper.toReviewResponse(savedReview);
     }
 
     /**
-     * Get all reviews for a specific book by book ID.
+     * Get one page of the reviews of a book, newest first.
+     * <p>
+     * Keyset page on (created_at, id) descending within the book, served by the (book_id, created_at, id) index,
+     * so a page costs the same however many reviews the book has.
      * @param bookId
-     * @return List of ReviewResponse
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param size page size
+     * @return CursorPageResponse of ReviewResponse
      */
-    public List<ReviewResponse> getReviewsByBookId(Long bookId) {
+    public CursorPageResponse<ReviewResponse> getReviewsByBookId(Long bookId, String cursor, int size) {
         // Verify the book exists
         if (!bookRepository.existsById(bookId)) {
             throw new AppException(ErrorCode.BOOK_NOT_FOUND);
         }
 
-        // Retrieve reviews for the book
-        List<Review> reviews = reviewRepository.findByBookId(bookId);
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        StringBuilder sql = new StringBuilder("SELECT id, user_id, comment, created_at FROM review WHERE book_id = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(bookId);
+        if (cursor != null && !cursor.isBlank()) {
+            KeysetCursor after = KeysetCursor.decode(cursor, ErrorCode.REVIEW_CURSOR_INVALID);
+            sql.append(" AND (created_at < ? OR (created_at = ? AND id < ?))");
+            params.add(after.createdAt());
+            params.add(after.createdAt());
+            params.add(after.id());
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        // one extra row tells whether there is a next page
+        params.add(limit + 1);
+
+        List<ReviewResponse> reviews = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            Timestamp createdAt = rs.getTimestamp(4);
+            return ReviewResponse.builder()
+                    .id(rs.getLong(1))
+                    .userId(rs.getString(2))
+                    .bookId(bookId)
+                    .comment(rs.getString(3))
+                    .createdAt(createdAt != null ? createdAt.toLocalDateTime() : null)
+                    .build();
+        }, params.toArray());
 
-        // Map and return responses
-        return reviewMapper.toReviewResponseList(reviews);
+        boolean hasNext = reviews.size() > limit;
+        if (hasNext) {
+            reviews = new ArrayList<>(reviews.subList(0, limit));
+        }
+        ReviewResponse last = reviews.isEmpty() ? null : reviews.get(reviews.size() - 1);
+        return CursorPageResponse.<ReviewResponse>builder()
+                .content(reviews)
+                .size(limit)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? new KeysetCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .build();
     }
 
     /**
-     * Get all reviews in the system.
-     * @return List of ReviewOfBookResponse
+     * Get one page of the reviewed books with their reviews, for the review moderation page.
+     * <p>
+     * Books without reviews are skipped. One query pages the reviewed book ids, joins their title and reviews and
+     * is grouped per book while the rows stream in, ordered by book_id; a second one counts the reviewed books.
+     * @param page zero-based page of books
+     * @param size books per page
+     * @return PageResponse of ReviewOfBookResponse ordered by book id
      */
-    public List<ReviewOfBookResponse> getAllReviews() {
-        List<Book> books = bookRepository.findAll();
-        return books.stream().map(book -> {
-            List<Review> reviews = reviewRepository.findByBookId(book.getId());
-            List<ReviewResponse> reviewResponses = reviewMapper.toReviewResponseList(reviews);
-            return ReviewOfBookResponse.builder()
-                    .bookId(book.getId())
-                    .bookTitle(book.getTitle())
-                    .reviews(reviewResponses)
-                    .build();
-        }).toList();
+    public PageResponse<ReviewOfBookResponse> getAllReviews(int page, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        int offset = Math.max(page, 0) * limit;
+
+        List<ReviewOfBookResponse> books = new ArrayList<>();
+        jdbcTemplate.query("SELECT r.book_id, b.title, r.id, r.user_id, r.comment, r.created_at " +
+                        "FROM (SELECT DISTINCT book_id FROM review ORDER BY book_id LIMIT ? OFFSET ?) p " +
+                        "JOIN book b ON b.id = p.book_id JOIN review r ON r.book_id = p.book_id " +
+                        "ORDER BY r.book_id, r.created_at, r.id",
+                rs -> {
+                    long bookId = rs.getLong(1);
+                    ReviewOfBookResponse current = books.isEmpty() ? null : books.get(books.size() - 1);
+                    if (current == null || current.getBookId() != bookId) {
+                        current = ReviewOfBookResponse.builder()
+                                .bookId(bookId)
+                                .bookTitle(rs.getString(2))
+                                .reviews(new ArrayList<>())
+                                .build();
+                        books.add(current);
+                    }
+                    Timestamp createdAt = rs.getTimestamp(6);
+                    current.getReviews().add(ReviewResponse.builder()
+                            .id(rs.getLong(3))
+                            .userId(rs.getString(4))
+                            .bookId(bookId)
+                            .comment(rs.getString(5))
+                            .createdAt(createdAt != null ? createdAt.toLocalDateTime() : null)
+                            .build());
+                },
+                limit, offset);
+
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT book_id) FROM review", Long.class);
+        return PageResponse.of(new PageImpl<>(books, PageRequest.of(Math.max(page, 0), limit), total != null ? total : 0));
     }
 
+    @Transactional
     public Boolean deleteReview(Long bookId) {
         // Get current authenticated user
-        User user = userRepository.findByUsername(
-                SecurityContextHolder.getContext().getAuthentication().getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        String userId = currentUserService.getId();
 
-        // Find the review by user ID and book ID
-        Review review = reviewRepository.findByUserId(user.getId()).stream()
-                .filter(r -> r.getBookId().equals(bookId))
-                .findFirst()
-                .orElseThrow(() -> new AppException(ErrorCode.REVIEW_NOT_FOUND));
-
-        // Delete the review
-        reviewRepository.delete(review);
+        // Delete the review of the user for the book
+        deleteReview(bookId, userId);
         return true;
     }
 
+    @Transactional
     @PreAuthorize("hasAuthority('SCOPE_ADMIN') or hasAuthority('SCOPE_STAFF')")
     public Boolean deleteReviewByAdminStaff(ReviewDeletionRequest request, Long bookId) {
-        // Find the review by user ID and book ID
-        Review review = reviewRepository.findByUserId(request.getUserId()).stream()
-                .filter(r -> r.getBookId().equals(bookId))
-                .findFirst()
-                .orElseThrow(() -> new AppException(ErrorCode.REVIEW_NOT_FOUND));
-
-        // Delete the review
-        reviewRepository.delete(review);
+        // Delete the review of the requested user for the book
+        deleteReview(bookId, request.getUserId());
         return true;
     }
 
+    /**
+     * Delete one review by its unique (book_id, user_id) and decrement the review count of the book.
+     */
+    private void deleteReview(Long bookId, String userId) {
+        if (jdbcTemplate.update("DELETE FROM review WHERE book_id = ? AND user_id = ?", bookId, userId) == 0) {
+            throw new AppException(ErrorCode.REVIEW_NOT_FOUND);
+        }
+        jdbcTemplate.update("UPDATE book SET review_count = GREATEST(COALESCE(review_count, 0) - 1, 0) WHERE id = ?", bookId);
+    }
+
     /**
      * Update an existing review of current user for a specific book.
      * @param request
@@ -143,14 +236,10 @@ public class ReviewService {
      */
     public ReviewResponse updateReview(ReviewUpdateRequest request) {
         // Get current authenticated user
-        User user = userRepository.findByUsername(
-                SecurityContextHolder.getContext().getAuthentication().getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        String userId = currentUserService.getId();
 
         // Find the review by user ID and book ID
-        Review review = reviewRepository.findByUserId(user.getId()).stream()
-                .filter(r -> r.getBookId().equals(request.getBookId()))
-                .findFirst()
+        Review review = reviewRepository.findByBookIdAndUserId(request.getBookId(), userId)
                 .orElseThrow(() -> new AppException(ErrorCode.REVIEW_NOT_FOUND));
 
         // Update the review comment
@@ -72,6 +72,8 @@ public class SubCategoryService {
                         .publisherId(book.getPublisher() != null ? book.getPublisher().getId() : null)
                         .categoryId(book.getCategory() != null ? book.getCategory().getId() : null)
                         .stockQuantity(book.getStockQuantity())
+                        .soldCount(book.getSoldCount())
+                        .reviewCount(book.getReviewCount())
                         .publishedDate(book.getPublishedDate())
                         .image(book.getImage())
                         .active(book.getActive())
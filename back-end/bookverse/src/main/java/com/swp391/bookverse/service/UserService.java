@@ -3,6 +3,8 @@ package com.swp391.bookverse.service;
 import com.swp391.bookverse.dto.request.UserChangePassWordRequest;
 import com.swp391.bookverse.dto.request.UserCreationRequest;
 import com.swp391.bookverse.dto.request.UserUpdateRequest;
+import com.swp391.bookverse.dto.response.AvailabilityResponse;
+import com.swp391.bookverse.dto.response.CursorPageResponse;
 import com.swp391.bookverse.dto.response.UserResponse;
 import com.swp391.bookverse.entity.User;
 import com.swp391.bookverse.enums.Role;
@@ -10,26 +12,35 @@ import com.swp391.bookverse.exception.AppException;
 import com.swp391.bookverse.exception.ErrorCode;
 import com.swp391.bookverse.mapper.UserMapper;
 import com.swp391.bookverse.repository.UserRepository;
+import com.swp391.bookverse.service.auth.CurrentUserService;
+import com.swp391.bookverse.service.auth.LoginAdmissionService;
+import com.swp391.bookverse.service.auth.PasswordHashingService;
+import com.swp391.bookverse.service.auth.UserAvailabilityIndex;
+import com.swp391.bookverse.service.auth.UserStatusCache;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @Author huangdat
@@ -38,9 +49,18 @@ import java.util.List;
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class UserService {
+    static final int MAX_PAGE_SIZE = 100;
+
     UserRepository userRepository;
+    JdbcTemplate jdbcTemplate;
     UserMapper userMapper;
-    PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(10);
+    UserStatusCache userStatusCache;
+    CurrentUserService currentUserService;
+    // BCrypt runs on a bounded pool, not on the request thread
+    PasswordHashingService passwordHashingService;
+    LoginAdmissionService loginAdmissionService;
+    UserAvailabilityIndex userAvailabilityIndex;
+    AuthenticationService authenticationService;
 
     /**
      * Creates a new user in the system.
@@ -49,15 +69,9 @@ public class UserService {
      */
     @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
     public User createUser(UserCreationRequest request) {
-
-        // make sure the username of request object is not already taken. Stop the process if it is.
-        if(userRepository.existsByUsername(request.getUsername())) {
-            throw new AppException(ErrorCode.USER_EXISTS);
-        }
-
         // Create a new User entity with encoded password
         User user = userMapper.toUser(request);
-        user.setPassword(passwordEncoder.encode((request.getPassword())));
+        user.setPassword(passwordHashingService.encode((request.getPassword())));
 
 
         // Set default role USER
@@ -66,7 +80,7 @@ public class UserService {
         user.setRoles(roles);
 
         // Save the user to the repository and return the saved entity
-        return userRepository.save(user);
+        return insertUser(user);
     }
 
     /**
@@ -80,8 +94,8 @@ public class UserService {
             throw new AppException(ErrorCode.NO_USERS_STORED);
         }
 
-        // transfer list of User to list of UserResponse
-        List<User> users = userRepository.findAll();
+        // transfer list of User to list of UserResponse, roles fetched in the same query
+        List<User> users = userRepository.findAllWithRoles();
         List<UserResponse> usersResponses = new ArrayList<>(users.size());
         for (int i = 0; i < users.size(); i++) {
             usersResponses.add(userMapper.toUserResponse(users.get(i)));
@@ -91,27 +105,66 @@ public class UserService {
         return usersResponses;
     }
 
+    /**
+     * Register a customer, inactive until the OTP is verified.
+     * <p>
+     * One insert, no existence checks first: the unique constraints on username and email reject duplicates,
+     * also between two concurrent signups, and the violation is reported as USER_EXISTS or EMAIL_ALREADY_EXISTS.
+     * @param request the request object containing user details
+     * @return the created user
+     */
     public UserResponse signupUser(UserCreationRequest request) {
-
-        // make sure the username of request object is not already taken. Stop the process if it is.
-        if(userRepository.existsByUsername(request.getUsername())) {
-            throw new AppException(ErrorCode.USER_EXISTS);
-        }
-        // check if email is already taken
-        if(userRepository.existsByEmail(request.getEmail())) {
-            throw new AppException(ErrorCode.EMAIL_ALREADY_EXISTS);
-        }
+        // per-IP budget, checked before any lookup or hashing
+        loginAdmissionService.admit(null);
 
         // Create a new User entity with encoded password
         User user = userMapper.toUser(request);
-        user.setPassword(passwordEncoder.encode((request.getPassword())));
+        user.setPassword(passwordHashingService.encode((request.getPassword())));
         // Set default role USER
         HashSet<String> roles = new HashSet<>();
         roles.add(Role.CUSTOMER.name());
         user.setRoles(roles);
         user.setActive(false); // New users are inactive by default (OTP verification pending)
-        // Save the user to the repository and return the saved entity
-        return userMapper.toUserResponse(userRepository.save(user));
+        return userMapper.toUserResponse(insertUser(user));
+    }
+
+    /**
+     * Live username/email checks of the signup form, answered from memory without a database query.
+     * @param username username to check, may be null
+     * @param email email to check, may be null
+     * @return availability of the given values
+     */
+    public AvailabilityResponse checkAvailability(String username, String email) {
+        boolean hasUsername = username != null && !username.isBlank();
+        boolean hasEmail = email != null && !email.isBlank();
+        return AvailabilityResponse.builder()
+                .username(hasUsername ? username : null)
+                .usernameAvailable(hasUsername ? userAvailabilityIndex.isUsernameAvailable(username) : null)
+                .email(hasEmail ? email : null)
+                .emailAvailable(hasEmail ? userAvailabilityIndex.isEmailAvailable(email) : null)
+                .build();
+    }
+
+    /**
+     * Insert a new user, duplicate usernames and emails are rejected by the unique constraints.
+     * Any other integrity violation is not a duplicate and is rethrown as is.
+     */
+    private User insertUser(User user) {
+        User saved;
+        try {
+            saved = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            String message = String.valueOf(e.getMostSpecificCause().getMessage());
+            if (message.contains("uk_user_email")) {
+                throw new AppException(ErrorCode.EMAIL_ALREADY_EXISTS);
+            }
+            if (message.contains("uk_user_username")) {
+                throw new AppException(ErrorCode.USER_EXISTS);
+            }
+            throw e;
+        }
+        userAvailabilityIndex.record(saved.getUsername(), saved.getEmail());
+        return saved;
     }
 
     /**
@@ -131,25 +184,19 @@ public class UserService {
      * @return User the user entity of the currently authenticated user
      */
     public UserResponse getMyInfo() {
-        // Get the username of the currently authenticated user
-        var context = SecurityContextHolder.getContext();
-        String contextName = context.getAuthentication().getName();
-        // Fetch a user by username from the repository
-        User user = userRepository.findByUsername(contextName).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        // Fetch the currently authenticated user by the id in its token
+        User user = currentUserService.load();
         return userMapper.toUserResponse(user);
     }
 
     public UserResponse updateMyInfo(UserUpdateRequest request) {
-        // Get the username of the currently authenticated user
-        var context = SecurityContextHolder.getContext();
-        String contextName = context.getAuthentication().getName();
-        // Fetch a user by username from the repository
-        User existingUser = userRepository.findByUsername(contextName).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        // Fetch the currently authenticated user by the id in its token
+        User existingUser = currentUserService.load();
 
         userMapper.updateUser(request, existingUser);
 
 //        // encoding password
-//        existingUser.setPassword(passwordEncoder.encode(existingUser.getPassword()));
+//        existingUser.setPassword(passwordHashingService.encode(existingUser.getPassword()));
 
         return userMapper.toUserResponse(userRepository.save(existingUser));
     }
@@ -168,7 +215,7 @@ public class UserService {
         userMapper.updateUser(request, existingUser);
 
         // encoding password
-        existingUser.setPassword(passwordEncoder.encode(existingUser.getPassword()));
+        existingUser.setPassword(passwordHashingService.encode(existingUser.getPassword()));
 
         return userMapper.toUserResponse(userRepository.save(existingUser));
     }
@@ -189,6 +236,95 @@ public class UserService {
         return userMapper.toUserResponse(userRepository.save(existingUser));
     }
 
+    /**
+     * One keyset page of users for the admin screens, ordered by username.
+     * <p>
+     * The SQL only carries the filters that were given, so MySQL plans each shape on its own: without a query the
+     * page is a range of idx_user_active_username (active given) or uk_user_username. A query is a UNION of three
+     * range scans, on uk_user_username, uk_user_email and idx_user_fullname, each cut at the page size. No COUNT
+     * is run, the page only tells whether there is a next one.
+     * @param role CUSTOMER, STAFF, ADMIN or null for any
+     * @param active null for both
+     * @param query prefix of the username, email or name, null or blank for all
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @return CursorPageResponse of UserResponse
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    @Transactional(readOnly = true)
+    public CursorPageResponse<UserResponse> searchUsers(String role, Boolean active, String query, String cursor, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        StringBuilder filters = new StringBuilder();
+        List<Object> filterParams = new ArrayList<>();
+        if (active != null) {
+            filters.append(" AND u.active = ?");
+            filterParams.add(active ? 1 : 0);
+        }
+        if (role != null && !role.isBlank()) {
+            filters.append(" AND EXISTS (SELECT 1 FROM user_role r WHERE r.user_id = u.id AND r.role = ?)");
+            filterParams.add(role.toUpperCase());
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            filters.append(" AND u.username > ?");
+            filterParams.add(decodeUserCursor(cursor));
+        }
+
+        String sql;
+        List<Object> params = new ArrayList<>();
+        if (query == null || query.isBlank()) {
+            sql = "SELECT u.id, u.username FROM `user` u WHERE 1 = 1" + filters + " ORDER BY u.username LIMIT ?";
+            params.addAll(filterParams);
+        } else {
+            // LIKE wildcards in the input are matched literally
+            String prefix = query.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            List<String> branches = new ArrayList<>();
+            for (String column : List.of("username", "email", "fullname")) {
+                branches.add("(SELECT u.id, u.username FROM `user` u WHERE u." + column + " LIKE ?" + filters
+                        + " ORDER BY u.username LIMIT ?)");
+                params.add(prefix);
+                params.addAll(filterParams);
+                params.add(limit + 1);
+            }
+            sql = "SELECT m.id, m.username FROM (" + String.join(" UNION ", branches) + ") m ORDER BY m.username LIMIT ?";
+        }
+        // one extra row tells whether there is a next page
+        params.add(limit + 1);
+
+        List<String[]> rows = jdbcTemplate.query(sql, (rs, rowNum) -> new String[]{rs.getString(1), rs.getString(2)}, params.toArray());
+        boolean hasNext = rows.size() > limit;
+        if (hasNext) {
+            rows = rows.subList(0, limit);
+        }
+
+        // entities by primary key, roles batch loaded, in the order of the page
+        Map<String, User> users = new HashMap<>();
+        userRepository.findAllById(rows.stream().map(row -> row[0]).toList()).forEach(user -> users.put(user.getId(), user));
+        List<UserResponse> content = new ArrayList<>(rows.size());
+        rows.forEach(row -> {
+            User user = users.get(row[0]);
+            if (user != null) {
+                content.add(userMapper.toUserResponse(user));
+            }
+        });
+        return CursorPageResponse.<UserResponse>builder()
+                .content(content)
+                .size(limit)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? encodeUserCursor(rows.get(rows.size() - 1)[1]) : null)
+                .build();
+    }
+
+    private static String encodeUserCursor(String username) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(username.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeUserCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.USER_CURSOR_INVALID);
+        }
+    }
+
     @PreAuthorize("hasAuthority('SCOPE_ADMIN') or hasAuthority('SCOPE_STAFF')")
     public List<UserResponse> getCustomers(){
         // throw exception if there are no user entity store in DB
@@ -234,7 +370,7 @@ public class UserService {
         }
 
         // Fetch users who are active
-        List<User> activeUsers = userRepository.findAll().stream().filter(User::isActive).toList();
+        List<User> activeUsers = userRepository.findByActiveWithRoles(true);
         List<UserResponse> activeUserResponses = new ArrayList<>(activeUsers.size());
         for (User activeUser : activeUsers) {
             activeUserResponses.add(userMapper.toUserResponse(activeUser));
@@ -250,7 +386,7 @@ public class UserService {
         }
 
         // Fetch users who are inactive
-        List<User> inactiveUsers = userRepository.findAll().stream().filter(user -> !user.isActive()).toList();
+        List<User> inactiveUsers = userRepository.findByActiveWithRoles(false);
         List<UserResponse> inactiveUserResponses = new ArrayList<>(inactiveUsers.size());
         for (User inactiveUser : inactiveUsers) {
             inactiveUserResponses.add(userMapper.toUserResponse(inactiveUser));
@@ -264,8 +400,14 @@ public class UserService {
         User existingUser = userRepository.findById(id).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
         existingUser.setActive(active);
-
-        return userMapper.toUserResponse(userRepository.save(existingUser));
+        UserResponse response = userMapper.toUserResponse(userRepository.save(existingUser));
+        // introspection must see the new status right away
+        userStatusCache.invalidate(existingUser.getUsername());
+        if (!active) {
+            // tokens already issued would otherwise stay valid until they expire
+            authenticationService.revokeAllTokens(id);
+        }
+        return response;
     }
 
     public String getUserIdByEmail(String email) {
@@ -276,33 +418,34 @@ public class UserService {
     }
 
     public UserResponse changePassword(String userId, String newPassword) {
+        loginAdmissionService.admit(userId);
         // Fetch the existing user by ID
         User existingUser = userRepository.findById(userId).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
         // Encode the new password
-        existingUser.setPassword(passwordEncoder.encode(newPassword));
+        existingUser.setPassword(passwordHashingService.encode(newPassword));
 
         return userMapper.toUserResponse(userRepository.save(existingUser));
     }
 
     public Boolean changeMyPassword(UserChangePassWordRequest request) {
-        // Get the username of the currently authenticated user
-        var context = SecurityContextHolder.getContext();
-        String contextName = context.getAuthentication().getName();
-        // Fetch a user by username from the repository
-        User existingUser = userRepository.findByUsername(contextName).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        // per-IP and per-account budget, guesses of the old password are rate limited too
+        loginAdmissionService.admit(currentUserService.getId());
+
+        // Fetch the currently authenticated user by the id in its token
+        User existingUser = currentUserService.load();
 
         // Check if the old password matches
-        if (!passwordEncoder.matches(request.getOldPassword(), existingUser.getPassword())) {
+        if (!passwordHashingService.matches(request.getOldPassword(), existingUser.getPassword())) {
             throw new AppException(ErrorCode.INVALID_OLD_PASSWORD);
         }
 
         // check if the old password is the same as the new password
-        if (passwordEncoder.matches(request.getNewPassword(), existingUser.getPassword())) {
+        if (passwordHashingService.matches(request.getNewPassword(), existingUser.getPassword())) {
             throw new AppException(ErrorCode.SAME_OLD_NEW_PASSWORD);
         }
         // Encode the new password and update
-        existingUser.setPassword(passwordEncoder.encode(request.getNewPassword()));
+        existingUser.setPassword(passwordHashingService.encode(request.getNewPassword()));
         userRepository.save(existingUser);
         return true;
     }
@@ -382,7 +525,7 @@ public class UserService {
                           String name, String phone, String address,
                           MultipartFile imageFile, String imageUrl, boolean active, List<String> roles) {
         
-        // Check if username already exists
+        // Checked before the image upload so a duplicate leaves no orphaned file, the insert still relies on the constraints
         if(userRepository.existsByUsername(username)) {
             throw new AppException(ErrorCode.USER_EXISTS);
         }
@@ -407,7 +550,7 @@ public class UserService {
         // Create new user
         User user = new User();
         user.setUsername(username);
-        user.setPassword(passwordEncoder.encode(password));
+        user.setPassword(passwordHashingService.encode(password));
         user.setEmail(email);
         user.setName(name);
         user.setPhone(phone);
@@ -424,7 +567,7 @@ public class UserService {
         }
         user.setRoles(userRoles);
 
-        return userRepository.save(user);
+        return insertUser(user);
     }
 
     /**
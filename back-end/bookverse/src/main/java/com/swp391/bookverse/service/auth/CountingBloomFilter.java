@@ -0,0 +1,90 @@
+package com.swp391.bookverse.service.auth;
+
+/**
+ * Bloom filter with 8-bit counters instead of bits, so keys can be removed again when their entry expires.
+ * <p>
+ * Writers must be serialized by the caller; readers need no lock. Every write ends with a volatile write that
+ * every read starts with, so a read sees all counters of the writes before it.
+ */
+public class CountingBloomFilter {
+    private final byte[] counters;
+    private final int mask;
+    private final int hashes;
+
+    private volatile int writes;
+
+    /**
+     * @param size number of counters, rounded down to a power of two
+     * @param hashes counters per key
+     */
+    public CountingBloomFilter(int size, int hashes) {
+        this.counters = new byte[Integer.highestOneBit(Math.max(size, 64))];
+        this.mask = counters.length - 1;
+        this.hashes = Math.max(hashes, 1);
+    }
+
+    /**
+     * @return false when the key was certainly never added (or has been removed), true when it may have been
+     */
+    public boolean mightContain(String key) {
+        if (writes == 0) {
+            return false;
+        }
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            if (counters[(h1 + i * h2) & mask] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int index = (h1 + i * h2) & mask;
+            // saturated counters stay at 255 for good, a false positive is only a wasted exact lookup
+            if (counters[index] != (byte) 0xFF) {
+                counters[index]++;
+            }
+        }
+        writes++;
+    }
+
+    /**
+     * Remove a key that was added before.
+     */
+    public void remove(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int index = (h1 + i * h2) & mask;
+            if (counters[index] != 0 && counters[index] != (byte) 0xFF) {
+                counters[index]--;
+            }
+        }
+        writes++;
+    }
+
+    /**
+     * FNV-1a over the chars, then the murmur3 finalizer to spread the bits over both halves.
+     */
+    private static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,62 @@
+package com.swp391.bookverse.service.auth;
+
+import com.swp391.bookverse.configuration.AuthenticatedUser;
+import com.swp391.bookverse.entity.User;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.repository.UserRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+/**
+ * The user behind the current request, taken from the JWT claims instead of the user table.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CurrentUserService {
+    UserRepository userRepository;
+    UserStatusCache userStatusCache;
+
+    /**
+     * @return the authenticated user, with its id
+     * @throws AppException UNAUTHORIZED when the request is not authenticated
+     */
+    public AuthenticatedUser get() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new AppException(ErrorCode.UNAUTHORIZED);
+        }
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user && user.id() != null) {
+            return user;
+        }
+        // tokens issued before the uid claim, resolved once per user through the status cache
+        UserStatusCache.UserStatus status = userStatusCache.get(authentication.getName());
+        return new AuthenticatedUser(status.id(), authentication.getName(), null, status.active());
+    }
+
+    /**
+     * @return id of the authenticated user
+     */
+    public String getId() {
+        return get().id();
+    }
+
+    /**
+     * Reference to the authenticated user for associations, loaded only if one of its fields is read.
+     */
+    public User getReference() {
+        return userRepository.getReferenceById(getId());
+    }
+
+    /**
+     * Profile of the authenticated user, loaded by primary key.
+     */
+    public User load() {
+        return userRepository.findById(getId()).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+    }
+}
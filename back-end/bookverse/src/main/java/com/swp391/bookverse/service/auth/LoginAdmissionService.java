@@ -0,0 +1,75 @@
+package com.swp391.bookverse.service.auth;
+
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.exception.RateLimitedException;
+import com.swp391.bookverse.service.ratelimit.RateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Per-IP and per-username budgets in front of password hashing (login, signup, password changes).
+ * <p>
+ * A client or a targeted account that exceeds its budget is rejected with AUTH_RATE_LIMITED (HTTP 429) before
+ * any database lookup or BCrypt work is done. The buckets live in the shared {@link RateLimiter}.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class LoginAdmissionService {
+    RateLimiter rateLimiter;
+
+    @NonFinal
+    @Value("${auth.admission.enabled:true}")
+    boolean enabled;
+
+    @NonFinal
+    @Value("${auth.admission.ip-capacity:20}")
+    int ipCapacity;
+
+    @NonFinal
+    @Value("${auth.admission.ip-period-seconds:40}")
+    long ipPeriodSeconds;
+
+    @NonFinal
+    @Value("${auth.admission.username-capacity:5}")
+    int usernameCapacity;
+
+    @NonFinal
+    @Value("${auth.admission.username-period-seconds:50}")
+    long usernamePeriodSeconds;
+
+    /**
+     * Admit a password operation of the current request's client, and of an account when one is known.
+     * @param username targeted account, null when there is none yet (signup)
+     * @throws RateLimitedException AUTH_RATE_LIMITED when a budget is exhausted, with the wait of that budget
+     */
+    public void admit(String username) {
+        if (!enabled) {
+            return;
+        }
+        String ip = clientIp();
+        long waitMs = ip != null ? rateLimiter.tryAcquire("auth-ip:" + ip, ipCapacity, ipPeriodSeconds) : 0;
+        if (waitMs > 0) {
+            throw new RateLimitedException(ErrorCode.AUTH_RATE_LIMITED, waitMs);
+        }
+        waitMs = username != null ? rateLimiter.tryAcquire("auth-user:" + username.toLowerCase(), usernameCapacity, usernamePeriodSeconds) : 0;
+        if (waitMs > 0) {
+            throw new RateLimitedException(ErrorCode.AUTH_RATE_LIMITED, waitMs);
+        }
+    }
+
+    private static String clientIp() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            return request.getRemoteAddr();
+        }
+        return null;
+    }
+}
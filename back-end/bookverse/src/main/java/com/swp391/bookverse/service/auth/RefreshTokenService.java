@@ -0,0 +1,116 @@
+package com.swp391.bookverse.service.auth;
+
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Opaque, single-use refresh tokens. Only their SHA-256 is stored.
+ * <p>
+ * Using a token revokes it, and the caller gets a new one. A revoked token presented again means it was copied,
+ * so all refresh tokens of its user are revoked and the user has to log in again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RefreshTokenService {
+    JdbcTemplate jdbcTemplate;
+    SecureRandom random = new SecureRandom();
+
+    @NonFinal
+    @Value("${jwt.refresh-ttl-days:14}")
+    long refreshTtlDays;
+
+    /**
+     * @return the new token, to be handed to the client once
+     */
+    public String issue(String userId) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Instant now = Instant.now();
+        jdbcTemplate.update("INSERT INTO refresh_token (token_hash, user_id, created_at, expires_at, revoked) VALUES (?, ?, ?, ?, 0)",
+                hash(token), userId, Timestamp.from(now), Timestamp.from(now.plus(refreshTtlDays, ChronoUnit.DAYS)));
+        return token;
+    }
+
+    /**
+     * Use up a refresh token.
+     * @return id of the user it was issued to
+     * @throws AppException REFRESH_TOKEN_INVALID when it is unknown, expired or already used
+     */
+    @Transactional(noRollbackFor = AppException.class)
+    public String consume(String token) {
+        if (token == null || token.isBlank()) {
+            throw new AppException(ErrorCode.REFRESH_TOKEN_INVALID);
+        }
+        String tokenHash = hash(token);
+        List<String> userIds = jdbcTemplate.queryForList("SELECT user_id FROM refresh_token WHERE token_hash = ?", String.class, tokenHash);
+        if (userIds.isEmpty()) {
+            throw new AppException(ErrorCode.REFRESH_TOKEN_INVALID);
+        }
+        // conditional update, of two concurrent uses only one succeeds
+        int used = jdbcTemplate.update("UPDATE refresh_token SET revoked = 1 WHERE token_hash = ? AND revoked = 0 AND expires_at > ?",
+                tokenHash, Timestamp.from(Instant.now()));
+        if (used == 0) {
+            Boolean revoked = jdbcTemplate.queryForObject("SELECT revoked FROM refresh_token WHERE token_hash = ?", Boolean.class, tokenHash);
+            if (Boolean.TRUE.equals(revoked)) {
+                log.warn("Reused refresh token of user {}, revoking all of its refresh tokens", userIds.get(0));
+                revokeAll(userIds.get(0));
+            }
+            throw new AppException(ErrorCode.REFRESH_TOKEN_INVALID);
+        }
+        return userIds.get(0);
+    }
+
+    public void revoke(String token) {
+        if (token != null && !token.isBlank()) {
+            jdbcTemplate.update("UPDATE refresh_token SET revoked = 1 WHERE token_hash = ?", hash(token));
+        }
+    }
+
+    public void revokeAll(String userId) {
+        jdbcTemplate.update("UPDATE refresh_token SET revoked = 1 WHERE user_id = ? AND revoked = 0", userId);
+    }
+
+    /**
+     * Delete expired tokens in chunks. Used ones are kept until then, to detect reuse.
+     */
+    @Scheduled(fixedDelayString = "${jwt.refresh-purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        Timestamp now = Timestamp.from(Instant.now());
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM refresh_token WHERE expires_at <= ? LIMIT 1000", now);
+        } while (deleted == 1000);
+    }
+
+    private static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.swp391.bookverse.service.auth;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revoked access tokens, checked on every authenticated request by the JwtDecoder.
+ * <p>
+ * Entries are keyed by JWT id ("jti:...") or by user ("user:...", revoking every token issued to the user up to
+ * that moment). A counting Bloom filter answers "certainly not revoked" for almost every token without a hash map
+ * lookup; only a possible hit goes to the exact map. Both are loaded from the revoked_token table at startup and
+ * kept in step with rows written by other instances. An entry is dropped, from the filter too, once every token
+ * it covers has expired, so the list stays as small as the revocations of one access token lifetime.
+ */
+@Slf4j
+@Service
+// revoked_token is created by Hibernate, it must exist before the initial load
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TokenDenyList {
+    static final String JTI_PREFIX = "jti:";
+    static final String USER_PREFIX = "user:";
+
+    JdbcTemplate jdbcTemplate;
+
+    Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @NonFinal
+    CountingBloomFilter filter;
+
+    // start of the last sync, null before the initial load
+    @NonFinal
+    Instant lastSync;
+
+    @NonFinal
+    @Value("${jwt.deny-list.sync-margin-seconds:60}")
+    long syncMarginSeconds;
+
+    @NonFinal
+    @Value("${jwt.deny-list.bloom-counters:1048576}")
+    int bloomCounters;
+
+    @NonFinal
+    @Value("${jwt.deny-list.bloom-hashes:7}")
+    int bloomHashes;
+
+    @NonFinal
+    @Value("${jwt.access-ttl-seconds:3600}")
+    long accessTtlSeconds;
+
+    /**
+     * @param revokedAt epoch seconds, for user entries tokens issued at or before it are revoked
+     * @param expiresAt epoch millis after which the entry covers no valid token
+     */
+    record Entry(long revokedAt, long expiresAt) {
+    }
+
+    @PostConstruct
+    void load() {
+        filter = new CountingBloomFilter(bloomCounters, bloomHashes);
+        sync();
+        log.info("Token deny list loaded with {} entries", entries.size());
+    }
+
+    /**
+     * @param jti JWT id, may be null for tokens issued before ids were added
+     * @param userId uid claim, may be null
+     * @param issuedAt iat claim, may be null
+     * @return true when the token or all tokens of its user issued by then have been revoked
+     */
+    public boolean isRevoked(String jti, String userId, Instant issuedAt) {
+        if (jti != null && lookup(JTI_PREFIX + jti) != null) {
+            return true;
+        }
+        if (userId != null) {
+            Entry entry = lookup(USER_PREFIX + userId);
+            return entry != null && (issuedAt == null || issuedAt.getEpochSecond() <= entry.revokedAt());
+        }
+        return false;
+    }
+
+    /**
+     * Revoke one access token until it expires.
+     */
+    public void revokeToken(String jti, Instant expiresAt) {
+        if (jti != null && expiresAt != null && expiresAt.isAfter(Instant.now())) {
+            persist(JTI_PREFIX + jti, Instant.now(), expiresAt);
+        }
+    }
+
+    /**
+     * Revoke every access token issued to a user so far, e.g. when the user is deactivated.
+     */
+    public void revokeUser(String userId) {
+        Instant now = Instant.now();
+        persist(USER_PREFIX + userId, now, now.plusSeconds(accessTtlSeconds));
+    }
+
+    /**
+     * Load rows written since the last sync, by this or another instance.
+     * <p>
+     * Polled by revoked_at rather than by id: ids are assigned at insert but rows become visible at commit, so a
+     * lower id can show up after a higher one was read. Every sync reads the margin before the previous one again,
+     * which covers slow commits and clock skew between instances; rows read twice just overwrite their entry.
+     */
+    @Scheduled(fixedDelayString = "${jwt.deny-list.sync-interval-ms:5000}")
+    public synchronized void sync() {
+        Instant startedAt = Instant.now();
+        Instant since = lastSync != null ? lastSync.minusSeconds(syncMarginSeconds) : Instant.EPOCH;
+        jdbcTemplate.query("SELECT token_key, revoked_at, expires_at FROM revoked_token WHERE revoked_at > ? AND expires_at > ?",
+                rs -> {
+                    put(rs.getString(1), new Entry(rs.getTimestamp(2).toInstant().getEpochSecond(), rs.getTimestamp(3).getTime()));
+                }, Timestamp.from(since), Timestamp.from(startedAt));
+        lastSync = startedAt;
+    }
+
+    /**
+     * Drop expired entries from memory and the table.
+     */
+    @Scheduled(fixedDelayString = "${jwt.deny-list.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            entries.forEach((key, entry) -> {
+                if (entry.expiresAt() <= now && entries.remove(key, entry)) {
+                    filter.remove(key);
+                }
+            });
+        }
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM revoked_token WHERE expires_at <= ? LIMIT 1000", new Timestamp(now));
+        } while (deleted == 1000);
+    }
+
+    private Entry lookup(String key) {
+        if (!filter.mightContain(key)) {
+            return null;
+        }
+        return entries.get(key);
+    }
+
+    private void persist(String key, Instant revokedAt, Instant expiresAt) {
+        // REPLACE rewrites revoked_at of a user revoked again, so other instances pick the later revocation up
+        jdbcTemplate.update("REPLACE INTO revoked_token (token_key, revoked_at, expires_at) VALUES (?, ?, ?)",
+                key, Timestamp.from(revokedAt), Timestamp.from(expiresAt));
+        synchronized (this) {
+            put(key, new Entry(revokedAt.getEpochSecond(), expiresAt.toEpochMilli()));
+        }
+    }
+
+    /**
+     * Guarded by this.
+     */
+    private void put(String key, Entry entry) {
+        Entry previous = entries.get(key);
+        if (previous == null) {
+            entries.put(key, entry);
+            filter.add(key);
+        } else if (entry.revokedAt() >= previous.revokedAt()) {
+            // a row read again, or read before this instance's newer revocation committed, never rolls it back
+            entries.put(key, entry);
+        }
+    }
+}
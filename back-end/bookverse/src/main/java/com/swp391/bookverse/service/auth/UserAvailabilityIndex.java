@@ -0,0 +1,180 @@
+package com.swp391.bookverse.service.auth;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Taken usernames and emails, for the live checks of the signup form.
+ * <p>
+ * A Bloom filter per column answers every probe from memory, no keystroke reaches the database. A name not in
+ * the filter is certainly free; a hit is reported as taken, which for a free name happens at the false positive
+ * rate of the filter (well under 1% at counters-per-user 10 and room to double).
+ * The filters are sized from the user count at about counters-per-user counters per user, with room to double;
+ * users created since are added incrementally, on insert here and by polling created_at for other instances, and
+ * the filters are rebuilt at twice the size once they hold more users than they were sized for. The answer is a
+ * hint: signup itself relies on the unique constraints.
+ */
+@Slf4j
+@Service
+// user is created by Hibernate, it must exist before the initial load
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class UserAvailabilityIndex {
+    static final int MAX_COUNTERS = 1 << 30;
+
+    JdbcTemplate jdbcTemplate;
+
+    @NonFinal
+    volatile CountingBloomFilter usernames;
+
+    @NonFinal
+    volatile CountingBloomFilter emails;
+
+    // users the filters were sized for, and users added so far; guarded by this
+    @NonFinal
+    long capacity;
+
+    @NonFinal
+    long users;
+
+    // start of the last poll, guarded by this
+    @NonFinal
+    Instant lastSync;
+
+    @NonFinal
+    @Value("${user-availability.min-counters:1048576}")
+    int minCounters;
+
+    @NonFinal
+    @Value("${user-availability.counters-per-user:10}")
+    int countersPerUser;
+
+    @NonFinal
+    @Value("${user-availability.bloom-hashes:7}")
+    int bloomHashes;
+
+    @NonFinal
+    @Value("${user-availability.sync-margin-seconds:60}")
+    long syncMarginSeconds;
+
+    @PostConstruct
+    void load() {
+        rebuild();
+    }
+
+    /**
+     * @return true when no user has this username, false when one may have it
+     */
+    public boolean isUsernameAvailable(String username) {
+        return !usernames.mightContain(normalize(username));
+    }
+
+    /**
+     * @return true when no user has this email, false when one may have it
+     */
+    public boolean isEmailAvailable(String email) {
+        return !emails.mightContain(normalize(email));
+    }
+
+    /**
+     * Mark the username and email of a user created on this instance as taken.
+     */
+    public synchronized void record(String username, String email) {
+        add(username, email);
+    }
+
+    /**
+     * Add users created since the previous poll, by this or another instance, and grow the filters once they are
+     * full. Every poll reads the margin before the previous one again, for late commits and clock skew.
+     */
+    @Scheduled(fixedDelayString = "${user-availability.sync-interval-ms:10000}")
+    public synchronized void sync() {
+        Instant startedAt = Instant.now();
+        jdbcTemplate.query("SELECT username, email FROM `user` WHERE created_at > ?",
+                rs -> {
+                    add(rs.getString(1), rs.getString(2));
+                }, Timestamp.from(lastSync.minusSeconds(syncMarginSeconds)));
+        lastSync = startedAt;
+        if (users > capacity) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Load both filters from the user table, sized for twice the current number of users.
+     */
+    synchronized void rebuild() {
+        Instant startedAt = Instant.now();
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM `user`", Long.class);
+        int size = counters(2 * Math.max(count != null ? count : 0, users));
+        CountingBloomFilter newUsernames = new CountingBloomFilter(size, bloomHashes);
+        CountingBloomFilter newEmails = new CountingBloomFilter(size, bloomHashes);
+        long[] loaded = {0};
+        jdbcTemplate.query("SELECT username, email FROM `user`", rs -> {
+            String username = rs.getString(1);
+            String email = rs.getString(2);
+            if (username != null) {
+                newUsernames.add(normalize(username));
+            }
+            if (email != null) {
+                newEmails.add(normalize(email));
+            }
+            loaded[0]++;
+        });
+        usernames = newUsernames;
+        emails = newEmails;
+        users = loaded[0];
+        capacity = size / countersPerUser;
+        lastSync = startedAt;
+        log.info("User availability filters sized {} counters for {} users", size, loaded[0]);
+    }
+
+    /**
+     * Guarded by this. A key that may already be in its filter is not added again, a user read twice by
+     * overlapping polls does not inflate the counters; at worst a new name shares the counters of a false positive
+     * and is reported taken with it.
+     */
+    private void add(String username, String email) {
+        boolean added = false;
+        if (username != null && !usernames.mightContain(normalize(username))) {
+            usernames.add(normalize(username));
+            added = true;
+        }
+        if (email != null && !emails.mightContain(normalize(email))) {
+            emails.add(normalize(email));
+            added = true;
+        }
+        if (added) {
+            users++;
+        }
+    }
+
+    /**
+     * Power of two of at least counters-per-user counters per user.
+     */
+    private int counters(long expectedUsers) {
+        long needed = Math.max(expectedUsers * countersPerUser, minCounters);
+        return needed >= MAX_COUNTERS ? MAX_COUNTERS : Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    /**
+     * The columns use a case-insensitive collation, "Alice" is taken when "alice" is.
+     */
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
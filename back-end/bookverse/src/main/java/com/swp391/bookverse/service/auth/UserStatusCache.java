@@ -0,0 +1,86 @@
+package com.swp391.bookverse.service.auth;
+
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Id and active flag of users by username, for token introspection.
+ * <p>
+ * Entries live for ttl-seconds, and are dropped right away (and again after commit) when the active flag
+ * changes, so a deactivated user is seen as inactive on the next introspection.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class UserStatusCache {
+    JdbcTemplate jdbcTemplate;
+
+    Map<String, UserStatus> statuses = new ConcurrentHashMap<>();
+
+    @NonFinal
+    @Value("${auth.user-status-cache.ttl-seconds:60}")
+    long ttlSeconds;
+
+    @NonFinal
+    @Value("${auth.user-status-cache.max-entries:10000}")
+    int maxEntries;
+
+    public record UserStatus(String id, boolean active, long loadedAt) {
+    }
+
+    /**
+     * @param username
+     * @return cached or freshly loaded status
+     * @throws AppException USER_NOT_FOUND when no user has this username
+     */
+    public UserStatus get(String username) {
+        long now = System.currentTimeMillis();
+        UserStatus status = statuses.get(username);
+        if (status != null && now - status.loadedAt() < ttlSeconds * 1000) {
+            return status;
+        }
+        List<UserStatus> loaded = jdbcTemplate.query("SELECT id, active FROM `user` WHERE username = ?",
+                (rs, rowNum) -> new UserStatus(rs.getString(1), rs.getBoolean(2), now), username);
+        if (loaded.isEmpty()) {
+            statuses.remove(username);
+            throw new AppException(ErrorCode.USER_NOT_FOUND);
+        }
+        if (statuses.size() >= maxEntries) {
+            statuses.values().removeIf(cached -> now - cached.loadedAt() >= ttlSeconds * 1000);
+            if (statuses.size() >= maxEntries) {
+                statuses.clear();
+            }
+        }
+        statuses.put(username, loaded.get(0));
+        return loaded.get(0);
+    }
+
+    /**
+     * Forget a user's status, now and once the current transaction (if any) has committed.
+     * @param username
+     */
+    public void invalidate(String username) {
+        statuses.remove(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    statuses.remove(username);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.swp391.bookverse.service.auth;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Claims of JWTs whose signature has already been verified, keyed by the SHA-256 of the token.
+ * <p>
+ * An entry never outlives the token's expiry, so the cache holds at most the tokens issued in the last token
+ * lifetime. Only valid tokens are stored, an invalid token is verified again every time.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VerifiedTokenCache {
+    Map<String, VerifiedToken> tokens = new ConcurrentHashMap<>();
+
+    @NonFinal
+    @Value("${auth.token-cache.max-entries:50000}")
+    int maxEntries;
+
+    // jti, userId and issuedAt (epoch seconds) are what the deny list is checked with
+    public record VerifiedToken(String subject, String scope, long expiresAt, String jti, String userId, long issuedAt) {
+    }
+
+    /**
+     * @param token compact serialized JWT
+     * @return the verified claims, or null when the token is not cached or has expired
+     */
+    public VerifiedToken get(String token) {
+        String key = keyOf(token);
+        VerifiedToken verified = tokens.get(key);
+        if (verified == null) {
+            return null;
+        }
+        if (verified.expiresAt() <= System.currentTimeMillis()) {
+            tokens.remove(key, verified);
+            return null;
+        }
+        return verified;
+    }
+
+    /**
+     * Remember a token whose signature and expiry have been checked.
+     */
+    public void put(String token, VerifiedToken verified) {
+        if (tokens.size() >= maxEntries) {
+            purgeExpired();
+            if (tokens.size() >= maxEntries) {
+                return;
+            }
+        }
+        tokens.put(keyOf(token), verified);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.token-cache.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        tokens.values().removeIf(verified -> verified.expiresAt() <= now);
+    }
+
+    private static String keyOf(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.swp391.bookverse.service.auth.otp;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel: scheduling is an O(1) append to the bucket of the deadline's tick, and one thread runs
+ * the due tasks of each bucket as the wheel turns. Meant for many short timeouts that rarely need precision
+ * better than a tick, such as OTP expiry; a task runs no earlier than its deadline and at most one tick late.
+ */
+@Slf4j
+public class HashedWheelTimer implements AutoCloseable {
+    private final long tickMs;
+    private final Queue<Timeout>[] wheel;
+    private final int mask;
+    private final LongSupplier clock;
+    // null when the owner turns the wheel itself
+    private final Thread worker;
+
+    // last tick whose bucket has been processed
+    private volatile long processedTick;
+
+    private record Timeout(long deadline, Runnable task) {
+    }
+
+    /**
+     * @param name name of the worker thread
+     * @param tickMs duration of a tick
+     * @param buckets number of buckets, rounded up to a power of two; a turn lasts tickMs * buckets
+     */
+    public HashedWheelTimer(String name, long tickMs, int buckets) {
+        this(name, tickMs, buckets, System::currentTimeMillis);
+    }
+
+    /**
+     * Timer without a worker thread, turned by calling {@link #advance()}.
+     * @param clock current time in millis
+     */
+    HashedWheelTimer(long tickMs, int buckets, LongSupplier clock) {
+        this(null, tickMs, buckets, clock);
+    }
+
+    @SuppressWarnings("unchecked")
+    private HashedWheelTimer(String name, long tickMs, int buckets, LongSupplier clock) {
+        this.tickMs = tickMs;
+        int size = Integer.highestOneBit(Math.max(buckets, 2) * 2 - 1);
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.clock = clock;
+        this.processedTick = clock.getAsLong() / tickMs;
+        this.worker = name != null ? Thread.ofPlatform().name(name).daemon().start(this::run) : null;
+    }
+
+    /**
+     * Run a task once the delay has passed. Deadlines beyond one turn wait in their bucket for later turns.
+     */
+    public void schedule(Runnable task, long delayMs) {
+        long deadline = clock.getAsLong() + Math.max(delayMs, 0);
+        // first tick starting at or after the deadline, so the task is due when its bucket comes up;
+        // never into a bucket already passed in this turn
+        long tick = Math.max((deadline + tickMs - 1) / tickMs, processedTick + 1);
+        wheel[(int) (tick & mask)].add(new Timeout(deadline, task));
+    }
+
+    @Override
+    public void close() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Run the due tasks of every tick up to the current one. Called by the worker thread after each tick.
+     */
+    void advance() {
+        long now = clock.getAsLong();
+        long currentTick = now / tickMs;
+        // catch up on ticks missed during a long pause, at most one full turn
+        for (long tick = Math.max(processedTick + 1, currentTick - mask); tick <= currentTick; tick++) {
+            expire(wheel[(int) (tick & mask)], now);
+            processedTick = tick;
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(tickMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            advance();
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket, long now) {
+        Iterator<Timeout> timeouts = bucket.iterator();
+        while (timeouts.hasNext()) {
+            Timeout timeout = timeouts.next();
+            if (timeout.deadline() <= now) {
+                timeouts.remove();
+                try {
+                    timeout.task().run();
+                } catch (RuntimeException e) {
+                    log.error("Timer task failed", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.swp391.bookverse.service.auth.otp;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The otp_token table as an audit trail of issued and used codes, written in the background.
+ * <p>
+ * Request threads only append to a bounded queue; a scheduled flush writes the queued rows with one batched
+ * insert and one batched update. When the queue is full the audit row is dropped, the live code is unaffected.
+ * The rows also let the OtpStore recover unexpired codes after a restart. Rows are deleted in bounded chunks
+ * once they are past the retention, so the table holds about one retention period of codes.
+ */
+@Slf4j
+@Service
+// otp_token is created by Hibernate, it must exist before the OtpStore reloads from it
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OtpAuditLog {
+    static final int PURGE_CHUNK = 1000;
+
+    JdbcTemplate jdbcTemplate;
+
+    @NonFinal
+    BlockingQueue<Object[]> issued;
+
+    @NonFinal
+    BlockingQueue<Object[]> used;
+
+    @NonFinal
+    @Value("${otp.audit.queue-capacity:100000}")
+    int queueCapacity;
+
+    @NonFinal
+    @Value("${otp.audit.batch-size:500}")
+    int batchSize;
+
+    @NonFinal
+    @Value("${otp.audit.retention-hours:24}")
+    long retentionHours;
+
+    /**
+     * An unexpired code, as reloaded at startup.
+     */
+    record StoredOtp(String email, String userId, String code, String tokenType, Instant createdAt, Instant expiresAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        issued = new ArrayBlockingQueue<>(queueCapacity);
+        used = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    void recordIssued(String email, String userId, String code, String tokenType, Instant createdAt, Instant expiresAt) {
+        if (!issued.offer(new Object[]{email, userId, code, tokenType, Timestamp.from(createdAt), Timestamp.from(expiresAt)})) {
+            log.warn("OTP audit queue full, issue of a code for {} not recorded", email);
+        }
+    }
+
+    void recordUsed(String email, Instant createdAt) {
+        if (!used.offer(new Object[]{email, Timestamp.from(createdAt)})) {
+            log.warn("OTP audit queue full, use of a code for {} not recorded", email);
+        }
+    }
+
+    /**
+     * Codes that are neither used nor expired, oldest first.
+     */
+    List<StoredOtp> loadLive() {
+        return jdbcTemplate.query("SELECT email, user_id, code, token_type, created_at, expires_at FROM otp_token " +
+                        "WHERE expires_at > ? AND used = 0 ORDER BY created_at",
+                (rs, rowNum) -> new StoredOtp(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                        rs.getTimestamp(5).toInstant(), rs.getTimestamp(6).toInstant()),
+                Timestamp.from(Instant.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${otp.audit.flush-interval-ms:1000}")
+    public void flush() {
+        List<Object[]> rows = new ArrayList<>(batchSize);
+        // inserts first, a use may refer to a code issued in the same flush
+        while (issued.drainTo(rows, batchSize) > 0) {
+            jdbcTemplate.batchUpdate("INSERT INTO otp_token (email, user_id, code, token_type, created_at, expires_at, used) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, 0)", rows);
+            rows.clear();
+        }
+        while (used.drainTo(rows, batchSize) > 0) {
+            jdbcTemplate.batchUpdate("UPDATE otp_token SET used = 1 WHERE email = ? AND created_at = ?", rows);
+            rows.clear();
+        }
+    }
+
+    /**
+     * Delete rows past the retention, in chunks so no statement holds locks for long.
+     */
+    @Scheduled(fixedDelayString = "${otp.audit.purge-interval-ms:600000}")
+    public void purge() {
+        Timestamp before = Timestamp.from(Instant.now().minusSeconds(TimeUnit.HOURS.toSeconds(retentionHours)));
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM otp_token WHERE expires_at < ? LIMIT " + PURGE_CHUNK, before);
+        } while (deleted == PURGE_CHUNK);
+    }
+
+    @PreDestroy
+    void stop() {
+        flush();
+    }
+}
@@ -5,25 +5,19 @@ import com.swp391.bookverse.dto.request.auth.otp.SendByEmailRequest;
 //import com.swp391.bookverse.dto.request.auth.otp.SendForUserRequest;
 import com.swp391.bookverse.dto.request.auth.otp.VerifyRequest;
 import com.swp391.bookverse.dto.request.auth.otp.VerifyResetPasswordRequest;
-import com.swp391.bookverse.entity.auth.otp.OtpToken;
-import com.swp391.bookverse.exception.AppException;
-import com.swp391.bookverse.exception.ErrorCode;
 import com.swp391.bookverse.repository.UserRepository;
-import com.swp391.bookverse.repository.auth.otp.OtpTokenRepository;
 import com.swp391.bookverse.service.UserService;
+import com.swp391.bookverse.service.auth.UserStatusCache;
+import com.swp391.bookverse.service.mail.MailQueue;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Optional;
 
 /**
  * @Author huangdat
@@ -33,44 +27,28 @@ import java.util.Optional;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true) // Sets the default access level for fields to private and makes them final.
 @Service
 public class OtpService {
-    JavaMailSender mailSender;
-    OtpTokenRepository repo;
+    MailQueue mailQueue;
+    OtpStore otpStore;
     SecureRandom rnd = new SecureRandom();
     Duration ttl = Duration.ofMinutes(5);
-    int resendCooldownSec = 45;
     UserRepository userRepo;
     UserService userService;
+    UserStatusCache userStatusCache;
 
     @Transactional
     public APIResponse<?> sendOtpByEmail(SendByEmailRequest req) {
         String normEmail = req.getEmail().trim().toLowerCase();
-        // Check for existing unexpired OTP to enforce cooldown
-        repo.findTopByEmailAndUsedFalseOrderByCreatedAtDesc(normEmail).ifPresent(last -> {
-            if (Instant.now().isBefore(last.getCreatedAt().plusSeconds(resendCooldownSec))) {
-                throw new IllegalStateException("Please wait before requesting another code.");
-            }
-        });
-        // Generate and save new OTP token
+        // the resend cooldown is enforced per email by the "otp-send" rate limit of OtpController
+        // Generate a new OTP code, it replaces any live code of this email
         String code = gen6Digit();
-        OtpToken t = new OtpToken();
-        t.setEmail(normEmail);
-        t.setUserId(req.getUserId()); // link to user
-        t.setCode(code);
-        t.setTokenType(req.getTokenType());
-        t.setCreatedAt(Instant.now());
-        t.setExpiresAt(t.getCreatedAt().plus(ttl));
-        repo.save(t);
+        otpStore.issue(normEmail, req.getUserId(), code, req.getTokenType() == null ? "LOGIN" : req.getTokenType(), ttl);
 
-        try {
-            sendEmailVerify(normEmail, code, "Reset password with OTP","""
+        // sent by the mail dispatcher once this transaction commits
+        sendEmailVerify(normEmail, code, "Reset password with OTP","""
         Your verification code is: %s
 
         It expires in 5 minutes. If you didn't request this, you can ignore this email.
                     """);
-        } catch (Exception e) {
-            // Rollback if email sending fails
-            throw new AppException(ErrorCode.EMAIL_INVALID);
-        }
 
         return APIResponse.<Void>builder()
                 .code(200)
@@ -82,33 +60,17 @@ public class OtpService {
     @Transactional
     public APIResponse<?> sendOtpByEmailResetPassword(SendByEmailRequest req) {
         String normEmail = req.getEmail().trim().toLowerCase();
-        // Check for existing unexpired OTP to enforce cooldown
-        repo.findTopByEmailAndUsedFalseOrderByCreatedAtDesc(normEmail).ifPresent(last -> {
-            if (Instant.now().isBefore(last.getCreatedAt().plusSeconds(resendCooldownSec))) {
-                throw new IllegalStateException("Please wait before requesting another code.");
-            }
-        });
-        // Generate and save new OTP token
+        // the resend cooldown is enforced per email by the "otp-send" rate limit of OtpController
+        // Generate a new OTP code, it replaces any live code of this email
         String code = gen6Digit();
-        OtpToken t = new OtpToken();
-        t.setEmail(normEmail);
-        t.setUserId(req.getUserId()); // link to user
-        t.setCode(code);
-        t.setTokenType(req.getTokenType());
-        t.setCreatedAt(Instant.now());
-        t.setExpiresAt(t.getCreatedAt().plus(ttl));
-        repo.save(t);
+        otpStore.issue(normEmail, req.getUserId(), code, req.getTokenType() == null ? "LOGIN" : req.getTokenType(), ttl);
 
-        try {
-            sendEmailVerify(normEmail, code,"Your Bookverse verification code" ,"""
+        // sent by the mail dispatcher once this transaction commits
+        sendEmailVerify(normEmail, code,"Your Bookverse verification code" ,"""
         Your verification code to RESET PASSWORD: %s
 
         It expires in 5 minutes. If you didn't request this, you can ignore this email.
                     """);
-        } catch (Exception e) {
-            // Rollback if email sending fails
-            throw new AppException(ErrorCode.EMAIL_INVALID);
-        }
 
         return APIResponse.<Void>builder()
                 .code(200)
@@ -150,48 +112,35 @@ public class OtpService {
         String code = req.getCode();
         String tokenType = req.getTokenType() == null ? "LOGIN" : req.getTokenType();
 
-        // Fetch the token based on userId or email
-        OtpToken token = (userIdOrNull != null && !userIdOrNull.isBlank())
-                ? repo.findTopByUserIdAndUsedFalseOrderByCreatedAtDesc(userIdOrNull).orElse(null)
-                : repo.findTopByEmailAndUsedFalseOrderByCreatedAtDesc(emailOrNull.trim().toLowerCase()).orElse(null);
-
-        // Check if token exists
-        if (token == null) {
-            return APIResponse.<Void>builder()
-                    .code(404)
-                    .message("OTP token not found.")
-                    .build();
-        }
-
-        // Validate token properties
-        if (!tokenType.equals(token.getTokenType())) {
-            return APIResponse.<Void>builder()
-                    .code(400)
-                    .message("Invalid token type.")
-                    .build();
-        }
-        if (Instant.now().isAfter(token.getExpiresAt())) {
-            return APIResponse.<Void>builder()
-                    .code(400)
-                    .message("OTP token has expired.")
-                    .build();
-        }
-        if (!token.getCode().equals(code)) {
-            return APIResponse.<Void>builder()
-                    .code(400)
-                    .message("Invalid OTP code.")
-                    .build();
-        }
-
-        // Mark token as used and save
-        try {
-            token.setUsed(true);
-            repo.save(token);
-        } catch (Exception e) {
-            return APIResponse.<Void>builder()
-                    .code(500)
-                    .message("Failed to verify OTP due to server error.")
-                    .build();
+        // Check the live code of the user or email, in memory
+        switch (otpStore.verify(userIdOrNull, emailOrNull, code, tokenType)) {
+            case NOT_FOUND -> {
+                return APIResponse.<Void>builder()
+                        .code(404)
+                        .message("OTP token not found.")
+                        .build();
+            }
+            case WRONG_TYPE -> {
+                return APIResponse.<Void>builder()
+                        .code(400)
+                        .message("Invalid token type.")
+                        .build();
+            }
+            case EXPIRED -> {
+                return APIResponse.<Void>builder()
+                        .code(400)
+                        .message("OTP token has expired.")
+                        .build();
+            }
+            case INVALID_CODE -> {
+                return APIResponse.<Void>builder()
+                        .code(400)
+                        .message("Invalid OTP code.")
+                        .build();
+            }
+            case VERIFIED -> {
+                // the code is used up
+            }
         }
 
         // make user active based on userId
@@ -200,6 +149,7 @@ public class OtpService {
                 if (!user.isActive()) {
                     user.setActive(true);
                     userRepo.save(user);
+                    userStatusCache.invalidate(user.getUsername());
                 }
             });
         }
@@ -264,16 +214,13 @@ public class OtpService {
     }
 
     /**
-     * Send OTP code to email
+     * Queue the OTP email, it is sent in the background after commit. An unsent code for the same
+     * address is replaced, the user only gets the latest one
      * @param to String
      * @param code String
      */
     private void sendEmailVerify(String to, String code, String msgSubject, String msgText) {
-        SimpleMailMessage msg = new SimpleMailMessage();
-        msg.setTo(to);
-        msg.setSubject(msgSubject);
-        msg.setText((msgText).formatted(code));
-        mailSender.send(msg);
+        mailQueue.enqueue(to, msgSubject, msgText.formatted(code), "otp:" + to);
     }
 
 
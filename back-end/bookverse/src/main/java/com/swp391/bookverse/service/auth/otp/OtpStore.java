@@ -0,0 +1,148 @@
+package com.swp391.bookverse.service.auth.otp;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live OTP codes, in memory. Issuing and verifying a code touch no database row on the request thread.
+ * <p>
+ * One code per email, a new code replaces the previous one. Codes are dropped by a hashed wheel timer a little
+ * after they expire (so a late attempt still gets "expired"), when used, or after too many wrong attempts.
+ * Codes are compared in constant time. Issues and uses are recorded by the {@link OtpAuditLog} in the
+ * background, and unexpired codes are reloaded from it at startup. Codes live in the instance that issued them,
+ * with several instances OTP requests need sticky sessions.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OtpStore {
+    static final long EXPIRED_GRACE_MS = 60_000;
+
+    OtpAuditLog auditLog;
+
+    Map<String, LiveOtp> byEmail = new ConcurrentHashMap<>();
+    // userId -> email, for verification by user id
+    Map<String, String> emailByUserId = new ConcurrentHashMap<>();
+
+    @NonFinal
+    HashedWheelTimer timer;
+
+    // time source of issue and expiry checks
+    @NonFinal
+    Clock clock = Clock.systemUTC();
+
+    @NonFinal
+    @Value("${otp.max-attempts:5}")
+    int maxAttempts;
+
+    public enum Result {
+        VERIFIED,
+        NOT_FOUND,
+        WRONG_TYPE,
+        EXPIRED,
+        INVALID_CODE
+    }
+
+    private record LiveOtp(String email, String userId, byte[] code, String tokenType, Instant createdAt,
+                           Instant expiresAt, AtomicInteger failedAttempts) {
+    }
+
+    @PostConstruct
+    void start() {
+        timer = new HashedWheelTimer("otp-expiry", 1000, 1024);
+        int loaded = 0;
+        for (OtpAuditLog.StoredOtp stored : auditLog.loadLive()) {
+            put(new LiveOtp(stored.email(), stored.userId(), stored.code().getBytes(StandardCharsets.US_ASCII),
+                    stored.tokenType(), stored.createdAt(), stored.expiresAt(), new AtomicInteger()));
+            loaded++;
+        }
+        log.info("Reloaded {} live OTP codes", loaded);
+    }
+
+    @PreDestroy
+    void stop() {
+        timer.close();
+    }
+
+    /**
+     * Make a code the live one of an email, replacing any previous code.
+     * @param email normalized (trimmed, lowercase)
+     * @param userId may be null
+     */
+    public void issue(String email, String userId, String code, String tokenType, Duration ttl) {
+        Instant now = clock.instant();
+        LiveOtp otp = new LiveOtp(email, userId, code.getBytes(StandardCharsets.US_ASCII), tokenType, now, now.plus(ttl),
+                new AtomicInteger());
+        put(otp);
+        auditLog.recordIssued(email, userId, code, tokenType, now, otp.expiresAt());
+    }
+
+    /**
+     * Check a code and use it up when it matches.
+     * @param userId looked up first when not blank
+     * @param email used when there is no user id, normalized here
+     */
+    public Result verify(String userId, String email, String code, String tokenType) {
+        String key = userId != null && !userId.isBlank() ? emailByUserId.get(userId)
+                : email != null ? email.trim().toLowerCase() : null;
+        LiveOtp otp = key != null ? byEmail.get(key) : null;
+        if (otp == null) {
+            return Result.NOT_FOUND;
+        }
+        if (!tokenType.equals(otp.tokenType())) {
+            return Result.WRONG_TYPE;
+        }
+        if (clock.instant().isAfter(otp.expiresAt())) {
+            return Result.EXPIRED;
+        }
+        if (code == null || !MessageDigest.isEqual(otp.code(), code.getBytes(StandardCharsets.US_ASCII))) {
+            if (otp.failedAttempts().incrementAndGet() >= maxAttempts) {
+                // guessing further is pointless, a new code has to be requested
+                remove(otp);
+            }
+            return Result.INVALID_CODE;
+        }
+        // of concurrent verifications with the right code only one gets to remove it
+        if (!byEmail.remove(otp.email(), otp)) {
+            return Result.NOT_FOUND;
+        }
+        if (otp.userId() != null) {
+            emailByUserId.remove(otp.userId(), otp.email());
+        }
+        auditLog.recordUsed(otp.email(), otp.createdAt());
+        return Result.VERIFIED;
+    }
+
+    private void put(LiveOtp otp) {
+        byEmail.put(otp.email(), otp);
+        if (otp.userId() != null) {
+            emailByUserId.put(otp.userId(), otp.email());
+        }
+        long delay = otp.expiresAt().toEpochMilli() - clock.millis() + EXPIRED_GRACE_MS;
+        timer.schedule(() -> remove(otp), delay);
+    }
+
+    private void remove(LiveOtp otp) {
+        // a newer code of the same email is left alone
+        if (byEmail.remove(otp.email(), otp) && otp.userId() != null) {
+            emailByUserId.remove(otp.userId(), otp.email());
+        }
+    }
+}
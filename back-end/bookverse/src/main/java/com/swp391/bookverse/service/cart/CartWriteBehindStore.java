@@ -0,0 +1,529 @@
+package com.swp391.bookverse.service.cart;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Optional in-memory cart engine (cart.engine.mode = write-behind).
+ * <p>
+ * Active carts are kept in a bounded map keyed by user id and guarded by striped locks.
+ * Every mutation is appended to a local journal, applied in memory and marked dirty;
+ * dirty carts are written to cart / cart_item in periodic batches and on shutdown.
+ * Journal segments are only deleted once the carts they describe are persisted, so
+ * a crash is recovered by replaying the remaining segments on startup. Appends reach the OS
+ * right away, which survives a crash of the JVM; they are forced to disk every
+ * journal-sync-interval-ms, so an OS crash or power loss can lose the writes of that last interval.
+ * <p>
+ * The store is local to one JVM: run a single instance (or sticky sessions per user)
+ * when this mode is enabled.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CartWriteBehindStore {
+    static final String JOURNAL_PREFIX = "cart-journal-";
+    static final String JOURNAL_SUFFIX = ".log";
+    static final int STRIPES = 64;
+    static final String CLEAR_RECORD = "CLEAR";
+
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+
+    Map<String, CartState> carts = new ConcurrentHashMap<>();
+    ReentrantLock[] locks = newLocks();
+    Object journalLock = new Object();
+    // serializes batch flushes with single-user flushes, taken before any stripe lock
+    ReentrantLock flushLock = new ReentrantLock();
+
+    @NonFinal
+    @Value("${cart.engine.mode:jpa}")
+    String mode;
+
+    @NonFinal
+    @Value("${cart.engine.max-carts:100000}")
+    int maxCarts;
+
+    @NonFinal
+    @Value("${cart.engine.journal-dir:data/cart-journal}")
+    String journalDir;
+
+    // persist always commits on its own, also when called from a caller's transaction
+    @NonFinal
+    TransactionTemplate flushTransaction;
+
+    @NonFinal
+    FileChannel journal;
+
+    @NonFinal
+    long journalSequence;
+
+    /**
+     * Cached state of one user's active cart.
+     */
+    static class CartState {
+        Long cartId;
+        Map<Long, Integer> items = new LinkedHashMap<>();
+        boolean dirty;
+    }
+
+    public boolean isEnabled() {
+        return "write-behind".equalsIgnoreCase(mode);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        flushTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Path dir = Paths.get(journalDir);
+        Files.createDirectories(dir);
+
+        // Replay segments left behind by a crash, oldest first, then persist them right away
+        List<Path> segments = listSegments();
+        for (Path segment : segments) {
+            replay(segment);
+        }
+        journalSequence = segments.isEmpty() ? 0 : sequenceOf(segments.get(segments.size() - 1));
+        openNextSegment();
+        if (!segments.isEmpty()) {
+            log.info("Replayed {} cart journal segment(s), {} cart(s) recovered", segments.size(), carts.size());
+            flush();
+        }
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        flush();
+        synchronized (journalLock) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Get a copy of the user's cart items (book id -> quantity), loading it from the database on first access.
+     * @param userId
+     * @return copy of the cart items
+     */
+    public Map<Long, Integer> read(String userId) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            return new LinkedHashMap<>(load(userId).items);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apply a mutation to the user's cart. The mutation receives a working copy, so an exception
+     * thrown from it leaves the cart untouched. Changed entries are journaled before they become visible.
+     * @param userId
+     * @param mutation change applied to the book id -> quantity map (quantity 0 or absent removes the item)
+     * @return copy of the cart items after the mutation
+     */
+    public Map<Long, Integer> update(String userId, Consumer<Map<Long, Integer>> mutation) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            CartState state = load(userId);
+            Map<Long, Integer> working = new LinkedHashMap<>(state.items);
+            mutation.accept(working);
+            working.values().removeIf(quantity -> quantity == null || quantity <= 0);
+
+            // Journal the absolute quantity of every changed book, so replay is idempotent
+            StringBuilder records = new StringBuilder();
+            for (Long bookId : union(state.items.keySet(), working.keySet())) {
+                int before = state.items.getOrDefault(bookId, 0);
+                int after = working.getOrDefault(bookId, 0);
+                if (before != after) {
+                    records.append(userId).append('\t').append(bookId).append('\t').append(after).append('\n');
+                }
+            }
+            if (!records.isEmpty()) {
+                appendToJournal(records.toString());
+                state.items = working;
+                state.dirty = true;
+            }
+            return new LinkedHashMap<>(state.items);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Persist the user's cart immediately if it has pending changes (e.g. before checkout reads it from the database).
+     * The write commits in its own transaction; the cached cart takes its cart id and turns clean only once it has.
+     * @param userId
+     */
+    public void flushUser(String userId) {
+        if (!isEnabled()) {
+            return;
+        }
+        flushLock.lock();
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            CartState state = carts.get(userId);
+            if (state != null && state.dirty) {
+                CartState copy = copyOf(state);
+                persist(Map.of(userId, copy));
+                state.cartId = copy.cartId;
+                state.dirty = false;
+            }
+        } finally {
+            lock.unlock();
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Drop the cached cart of a user (e.g. after checkout deactivated it), the next access reloads it from the database.
+     * The eviction is journaled so a replay does not resurrect the old items.
+     * @param userId
+     */
+    public void evict(String userId) {
+        if (!isEnabled()) {
+            return;
+        }
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            appendToJournal(userId + '\t' + CLEAR_RECORD + "\t0\n");
+            carts.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write every dirty cart to the database in one batch, then drop journal segments that are covered by it.
+     */
+    @Scheduled(fixedDelayString = "${cart.engine.flush-interval-ms:2000}")
+    public void flush() {
+        if (!isEnabled()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flushDirtyCarts();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushDirtyCarts() {
+        long coveredSequence;
+        try {
+            coveredSequence = rotateJournal();
+        } catch (IOException e) {
+            log.error("Cannot rotate cart journal, flush skipped", e);
+            return;
+        }
+
+        // Take a consistent copy of every dirty cart under its stripe lock
+        Map<String, CartState> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, CartState> entry : carts.entrySet()) {
+            ReentrantLock lock = lockFor(entry.getKey());
+            lock.lock();
+            try {
+                CartState state = entry.getValue();
+                if (state.dirty) {
+                    snapshot.put(entry.getKey(), copyOf(state));
+                    state.dirty = false;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        try {
+            if (!snapshot.isEmpty()) {
+                persist(snapshot);
+                // remember generated cart ids for the next flush
+                snapshot.forEach((userId, copy) -> {
+                    CartState state = carts.get(userId);
+                    if (state != null && state.cartId == null) {
+                        state.cartId = copy.cartId;
+                    }
+                });
+            }
+            deleteSegmentsUpTo(coveredSequence);
+        } catch (RuntimeException e) {
+            // keep the journal and retry on the next cycle
+            snapshot.keySet().forEach(userId -> {
+                CartState state = carts.get(userId);
+                if (state != null) {
+                    state.dirty = true;
+                }
+            });
+            log.error("Cart write-behind flush failed for {} cart(s)", snapshot.size(), e);
+        }
+
+        evictCleanCarts();
+    }
+
+    private static CartState copyOf(CartState state) {
+        CartState copy = new CartState();
+        copy.cartId = state.cartId;
+        copy.items = new LinkedHashMap<>(state.items);
+        return copy;
+    }
+
+    /**
+     * Upsert the given carts: create missing cart rows, then replace their items, all in one new transaction.
+     * Generated cart ids are written into the given states, pass copies and take the ids over after it returned.
+     */
+    private void persist(Map<String, CartState> snapshot) {
+        flushTransaction.executeWithoutResult(status -> {
+            List<String> withoutCart = snapshot.entrySet().stream()
+                    .filter(entry -> entry.getValue().cartId == null)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            if (!withoutCart.isEmpty()) {
+                Map<String, Long> cartIds = findActiveCartIds(withoutCart);
+                List<Object[]> inserts = withoutCart.stream()
+                        .filter(userId -> !cartIds.containsKey(userId))
+                        .map(userId -> new Object[]{userId})
+                        .toList();
+                if (!inserts.isEmpty()) {
+                    jdbcTemplate.batchUpdate("INSERT INTO cart (user_id, active) VALUES (?, 1)", inserts);
+                    cartIds.putAll(findActiveCartIds(withoutCart));
+                }
+                withoutCart.forEach(userId -> snapshot.get(userId).cartId = cartIds.get(userId));
+            }
+
+            List<Object[]> deletes = new ArrayList<>(snapshot.size());
+            List<Object[]> inserts = new ArrayList<>();
+            for (CartState state : snapshot.values()) {
+                deletes.add(new Object[]{state.cartId});
+                state.items.forEach((bookId, quantity) -> inserts.add(new Object[]{state.cartId, bookId, quantity}));
+            }
+            jdbcTemplate.batchUpdate("DELETE FROM cart_item WHERE cart_id = ?", deletes);
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO cart_item (cart_id, book_id, quantity) VALUES (?, ?, ?)", inserts);
+            }
+        });
+    }
+
+    private Map<String, Long> findActiveCartIds(List<String> userIds) {
+        String placeholders = String.join(",", Collections.nCopies(userIds.size(), "?"));
+        Map<String, Long> cartIds = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, MIN(id) FROM cart WHERE active = 1 AND user_id IN (" + placeholders + ") GROUP BY user_id",
+                rs -> {
+                    cartIds.put(rs.getString(1), rs.getLong(2));
+                },
+                userIds.toArray());
+        return cartIds;
+    }
+
+    /**
+     * Get the cached cart of a user or load it from the database. Caller must hold the user's stripe lock.
+     */
+    private CartState load(String userId) {
+        CartState state = carts.get(userId);
+        if (state != null) {
+            return state;
+        }
+        if (carts.size() >= maxCarts) {
+            evictCleanCarts();
+        }
+        CartState loaded = new CartState();
+        jdbcTemplate.query("SELECT c.id, ci.book_id, ci.quantity FROM cart c LEFT JOIN cart_item ci ON ci.cart_id = c.id " +
+                        "WHERE c.user_id = ? AND c.active = 1 ORDER BY c.id, ci.id",
+                rs -> {
+                    if (loaded.cartId == null) {
+                        loaded.cartId = rs.getLong(1);
+                    }
+                    long bookId = rs.getLong(2);
+                    if (!rs.wasNull() && rs.getLong(1) == loaded.cartId) {
+                        loaded.items.merge(bookId, rs.getInt(3), Integer::sum);
+                    }
+                },
+                userId);
+        carts.put(userId, loaded);
+        return loaded;
+    }
+
+    /**
+     * Drop clean carts while the map is above its bound. Dirty carts stay until they are flushed.
+     */
+    private void evictCleanCarts() {
+        Iterator<Map.Entry<String, CartState>> iterator = carts.entrySet().iterator();
+        while (carts.size() > maxCarts * 9L / 10 && iterator.hasNext()) {
+            Map.Entry<String, CartState> entry = iterator.next();
+            ReentrantLock lock = lockFor(entry.getKey());
+            if (lock.tryLock()) {
+                try {
+                    if (!entry.getValue().dirty) {
+                        iterator.remove();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private ReentrantLock lockFor(String userId) {
+        int h = userId.hashCode();
+        return locks[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static ReentrantLock[] newLocks() {
+        ReentrantLock[] locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    private static Set<Long> union(Set<Long> a, Set<Long> b) {
+        Set<Long> all = new LinkedHashSet<>(a);
+        all.addAll(b);
+        return all;
+    }
+
+    // ---------------------------------------------------------------- journal
+
+    /**
+     * Force the current journal segment to disk. Runs outside the journal lock so appends are not held up by it.
+     */
+    @Scheduled(fixedDelayString = "${cart.engine.journal-sync-interval-ms:200}")
+    public void syncJournal() {
+        if (!isEnabled()) {
+            return;
+        }
+        FileChannel segment;
+        synchronized (journalLock) {
+            segment = journal;
+        }
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.force(false);
+        } catch (ClosedChannelException e) {
+            // rotated meanwhile, rotation forces the segment before closing it
+        } catch (IOException e) {
+            log.error("Cannot sync cart journal", e);
+        }
+    }
+
+    private void appendToJournal(String records) {
+        ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+        synchronized (journalLock) {
+            try {
+                while (buffer.hasRemaining()) {
+                    journal.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot append to cart journal", e);
+            }
+        }
+    }
+
+    /**
+     * Switch to a new journal segment.
+     * @return sequence of the last segment whose records are covered by a flush that starts now
+     */
+    private long rotateJournal() throws IOException {
+        synchronized (journalLock) {
+            journal.force(false);
+            journal.close();
+            long covered = journalSequence;
+            openNextSegment();
+            return covered;
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        journalSequence++;
+        Path segment = Paths.get(journalDir, JOURNAL_PREFIX + String.format("%019d", journalSequence) + JOURNAL_SUFFIX);
+        journal = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void deleteSegmentsUpTo(long sequence) {
+        try {
+            for (Path segment : listSegments()) {
+                if (sequenceOf(segment) <= sequence) {
+                    Files.deleteIfExists(segment);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot delete flushed cart journal segments", e);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(journalDir))) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(JOURNAL_PREFIX))
+                    .sorted(Comparator.comparingLong(CartWriteBehindStore::sequenceOf))
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length()));
+    }
+
+    private void replay(Path segment) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] record = line.split("\t");
+                if (record.length != 3) {
+                    continue; // torn write at the end of the segment
+                }
+                String userId = record[0];
+                if (CLEAR_RECORD.equals(record[1])) {
+                    carts.remove(userId);
+                    continue;
+                }
+                long bookId = Long.parseLong(record[1]);
+                int quantity = Integer.parseInt(record[2]);
+                CartState state = load(userId);
+                if (quantity > 0) {
+                    state.items.put(bookId, quantity);
+                } else {
+                    state.items.remove(bookId);
+                }
+                state.dirty = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,570 @@
+package com.swp391.bookverse.service.flashsale;
+
+import com.swp391.bookverse.dto.request.FlashSalePurchaseRequest;
+import com.swp391.bookverse.dto.response.FlashSalePurchaseResponse;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.repository.PromotionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import com.swp391.bookverse.service.auth.CurrentUserService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flash-sale ordering mode.
+ * <p>
+ * While a FLASH_SALE promotion runs (Promotion.promotionDay is today), purchases of its books do not
+ * touch book rows from request threads. They are offered to a bounded lock-free ring buffer of the
+ * book's shard, and one writer thread per shard drains it, decides in memory which requests fit the
+ * stock, decrements stock with one conditional UPDATE per book per batch and completes the callers'
+ * futures. A full buffer is rejected immediately with FLASH_SALE_BUSY.
+ * <p>
+ * Purchased units are held for the user (a claim) until checkout consumes them. Claims are written to
+ * flash_sale_claim in the same transaction as the stock decrement of their batch, so a restart or crash never
+ * loses taken stock: claims that are not checked out before they expire are given back to the stock by a
+ * periodic job, also run at startup and shutdown. A caller that stops waiting cancels its request; a request the
+ * writer granted anyway is undone right after the batch commits.
+ */
+@Slf4j
+@Service
+// flash_sale_claim is created by Hibernate, it must exist before the startup give-back
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class FlashSaleService {
+    public static final String FLASH_SALE_TYPE = "FLASH_SALE";
+
+    static final String UPSERT_CLAIM_SQL = "INSERT INTO flash_sale_claim (user_id, book_id, quantity, expires_at) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), expires_at = VALUES(expires_at)";
+    static final String TAKE_STOCK_SQL = "UPDATE book SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+    static final String GIVE_BACK_SQL = "UPDATE book SET stock_quantity = stock_quantity + ? WHERE id = ?";
+    static final int MAX_BATCH_ATTEMPTS = 3;
+
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+    PromotionRepository promotionRepository;
+    CurrentUserService currentUserService;
+
+    Set<Long> flashSaleBooks = ConcurrentHashMap.newKeySet();
+
+    @NonFinal
+    Shard[] shards;
+
+    @NonFinal
+    @Value("${flash-sale.enabled:true}")
+    boolean enabled;
+
+    @NonFinal
+    @Value("${flash-sale.shards:4}")
+    int shardCount;
+
+    @NonFinal
+    @Value("${flash-sale.queue-capacity:4096}")
+    int queueCapacity;
+
+    @NonFinal
+    @Value("${flash-sale.batch-size:256}")
+    int batchSize;
+
+    @NonFinal
+    @Value("${flash-sale.claim-ttl-minutes:15}")
+    long claimTtlMinutes;
+
+    @NonFinal
+    @Value("${flash-sale.response-timeout-ms:2000}")
+    long responseTimeoutMs;
+
+    @NonFinal
+    @Value("${flash-sale.claim-expiry-batch-size:500}")
+    int expiryBatchSize;
+
+    /**
+     * One purchase handled by a shard writer.
+     */
+    record StockRequest(String userId, long bookId, int quantity, CompletableFuture<Integer> result) {
+    }
+
+    /**
+     * Units bought in the flash sale and held for a user until checkout.
+     */
+    record Claim(int quantity, Instant expiresAt) {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        // stock of claims that expired while no instance was running
+        expireClaims();
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+            shards[i].writer.start();
+        }
+        try {
+            refreshFlashSaleBooks();
+        } catch (RuntimeException e) {
+            log.warn("Cannot load flash sale books on startup, retrying on schedule", e);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (shards == null) {
+            return;
+        }
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.writer);
+        }
+        // writers drain their buffers first, grants nobody waits for any more are undone there
+        for (Shard shard : shards) {
+            shard.writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        try {
+            expireClaims();
+        } catch (RuntimeException e) {
+            log.warn("Cannot give back expired flash sale claims on shutdown", e);
+        }
+    }
+
+    /**
+     * Flag the books of FLASH_SALE promotions running today, unflag the others.
+     */
+    @Scheduled(cron = "${flash-sale.refresh-cron:0 * * * * *}")
+    public void refreshFlashSaleBooks() {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> current = new HashSet<>(promotionRepository.findBookIdsByPromotionDayAndType(LocalDate.now(), FLASH_SALE_TYPE));
+        flashSaleBooks.retainAll(current);
+        flashSaleBooks.addAll(current);
+    }
+
+    public boolean isFlashSaleBook(Long bookId) {
+        return enabled && flashSaleBooks.contains(bookId);
+    }
+
+    public Set<Long> getFlashSaleBooks() {
+        return Collections.unmodifiableSet(flashSaleBooks);
+    }
+
+    /**
+     * Buy flash-sale units for the current user and wait for the shard writer's decision.
+     * @param request
+     * @return FlashSalePurchaseResponse
+     */
+    public FlashSalePurchaseResponse purchase(FlashSalePurchaseRequest request) {
+        // current user id from the jwt token
+        String userId = currentUserService.getId();
+
+        int quantity = request.getQuantity() != null ? request.getQuantity() : 1;
+        CompletableFuture<Integer> result = purchase(userId, request.getBookId(), quantity);
+        int remaining = await(result);
+        Claim claim = getClaim(userId, request.getBookId());
+        return FlashSalePurchaseResponse.builder()
+                .bookId(request.getBookId())
+                .quantity(quantity)
+                .heldQuantity(claim != null ? claim.quantity() : 0)
+                .remainingStock(remaining)
+                .holdExpiresAt(claim != null ? claim.expiresAt() : null)
+                .build();
+    }
+
+    /**
+     * Wait for the writer's decision. On timeout the request is cancelled, so the writer skips it or undoes its
+     * grant; when the decision came in just before the cancel, it is used as usual.
+     */
+    private int await(CompletableFuture<Integer> result) {
+        try {
+            return result.get(responseTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AppException appException) {
+                throw appException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            if (result.cancel(false)) {
+                throw new AppException(ErrorCode.FLASH_SALE_BUSY);
+            }
+            return await(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (result.cancel(false)) {
+                throw new AppException(ErrorCode.FLASH_SALE_BUSY);
+            }
+            // already decided, get() returns at once
+            return await(result);
+        }
+    }
+
+    /**
+     * Queue a flash-sale purchase.
+     * @param userId buyer
+     * @param bookId flagged book
+     * @param quantity units to buy
+     * @return future completed with the remaining stock, or exceptionally with EXCEED_STOCK
+     * @throws AppException BOOK_NOT_IN_FLASH_SALE, FLASH_SALE_BUSY when the shard buffer is full
+     */
+    public CompletableFuture<Integer> purchase(String userId, Long bookId, int quantity) {
+        if (quantity <= 0) {
+            throw new AppException(ErrorCode.QUANTITY_INVALID);
+        }
+        if (!isFlashSaleBook(bookId)) {
+            throw new AppException(ErrorCode.BOOK_NOT_IN_FLASH_SALE);
+        }
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        if (!shardOf(bookId).submit(new StockRequest(userId, bookId, quantity, result))) {
+            throw new AppException(ErrorCode.FLASH_SALE_BUSY);
+        }
+        return result;
+    }
+
+    /**
+     * Take the user's claims on the given books, up to the ordered quantities, used by checkout for units whose
+     * stock is already taken. Runs in the checkout's transaction with a fixed number of statements: the claim rows
+     * stay locked until it ends and come back if it rolls back. Like every writer of claims, it locks the book rows
+     * first, in id order, then the claims.
+     * @param quantities book id -> ordered quantity
+     * @return book id -> consumed quantity, books without a claim are absent
+     */
+    public Map<Long, Integer> consumeClaims(String userId, Map<Long, Integer> quantities) {
+        if (!enabled || quantities.isEmpty()) {
+            return Map.of();
+        }
+        List<Object> params = new ArrayList<>(quantities.size() + 1);
+        params.add(userId);
+        params.addAll(quantities.keySet());
+        String placeholders = placeholders(quantities.size());
+        List<Long> claimed = jdbcTemplate.queryForList("SELECT book_id FROM flash_sale_claim WHERE user_id = ? AND book_id IN (" + placeholders + ")",
+                Long.class, params.toArray());
+        if (claimed.isEmpty()) {
+            return Map.of();
+        }
+        lockBooks(claimed);
+
+        Map<Long, Integer> consumed = new HashMap<>();
+        List<Object[]> decrements = new ArrayList<>();
+        List<Object> deletes = new ArrayList<>();
+        deletes.add(userId);
+        jdbcTemplate.query("SELECT book_id, quantity FROM flash_sale_claim WHERE user_id = ? AND book_id IN (" + placeholders + ") FOR UPDATE",
+                rs -> {
+                    long bookId = rs.getLong(1);
+                    int held = rs.getInt(2);
+                    int taken = Math.min(held, quantities.get(bookId));
+                    consumed.put(bookId, taken);
+                    if (taken == held) {
+                        deletes.add(bookId);
+                    } else {
+                        decrements.add(new Object[]{taken, userId, bookId});
+                    }
+                }, params.toArray());
+        if (!decrements.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE flash_sale_claim SET quantity = quantity - ? WHERE user_id = ? AND book_id = ?", decrements);
+        }
+        if (deletes.size() > 1) {
+            jdbcTemplate.update("DELETE FROM flash_sale_claim WHERE user_id = ? AND book_id IN (" + placeholders(deletes.size() - 1) + ")",
+                    deletes.toArray());
+        }
+        return consumed;
+    }
+
+    /**
+     * Units of a book currently held for a user, null when there are none.
+     */
+    public Claim getClaim(String userId, Long bookId) {
+        List<Claim> claims = jdbcTemplate.query("SELECT quantity, expires_at FROM flash_sale_claim WHERE user_id = ? AND book_id = ?",
+                (rs, rowNum) -> new Claim(rs.getInt(1), rs.getTimestamp(2).toInstant()), userId, bookId);
+        return claims.isEmpty() ? null : claims.get(0);
+    }
+
+    /**
+     * Give the stock of expired claims back to the books, in batches. Candidates are read without locks, then
+     * their books are locked before the claims, the order every writer of claims uses. Claims are taken with
+     * SKIP LOCKED and must still be expired, so several instances, or a checkout consuming a claim right now,
+     * never give the same units back twice.
+     */
+    @Scheduled(fixedDelayString = "${flash-sale.claim-expiry-interval-ms:30000}")
+    public void expireClaims() {
+        if (!enabled) {
+            return;
+        }
+        Integer candidates;
+        do {
+            int[] expired = {0};
+            candidates = transactionTemplate.execute(status -> {
+                Timestamp now = Timestamp.from(Instant.now());
+                List<Object[]> found = jdbcTemplate.query(
+                        "SELECT id, book_id FROM flash_sale_claim WHERE expires_at <= ? ORDER BY expires_at LIMIT ?",
+                        (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getLong(2)}, now, expiryBatchSize);
+                if (found.isEmpty()) {
+                    return 0;
+                }
+                lockBooks(found.stream().map(row -> (Long) row[1]).toList());
+
+                List<Object> params = new ArrayList<>(found.size() + 1);
+                found.forEach(row -> params.add(row[0]));
+                params.add(now);
+                List<Object[]> rows = jdbcTemplate.query(
+                        "SELECT id, book_id, quantity FROM flash_sale_claim WHERE id IN (" + placeholders(found.size()) + ") " +
+                                "AND expires_at <= ? FOR UPDATE SKIP LOCKED",
+                        (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getLong(2), rs.getInt(3)}, params.toArray());
+                if (!rows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(GIVE_BACK_SQL, rows.stream().map(row -> new Object[]{row[2], row[1]}).toList());
+                    jdbcTemplate.update("DELETE FROM flash_sale_claim WHERE id IN (" + placeholders(rows.size()) + ")",
+                            rows.stream().map(row -> row[0]).toArray());
+                }
+                expired[0] = rows.size();
+                return found.size();
+            });
+            if (expired[0] > 0) {
+                log.info("Gave back the stock of {} expired flash sale claim(s)", expired[0]);
+            }
+        } while (candidates != null && candidates == expiryBatchSize);
+    }
+
+    /**
+     * Lock the given book rows in id order. Claims are always locked after the books they belong to.
+     */
+    private void lockBooks(Collection<Long> bookIds) {
+        List<Long> sorted = bookIds.stream().distinct().sorted().toList();
+        jdbcTemplate.queryForList("SELECT id FROM book WHERE id IN (" + placeholders(sorted.size()) + ") ORDER BY id FOR UPDATE",
+                Long.class, sorted.toArray());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private Shard shardOf(Long bookId) {
+        if (shards == null) {
+            throw new AppException(ErrorCode.BOOK_NOT_IN_FLASH_SALE);
+        }
+        return shards[(int) Math.floorMod(bookId, (long) shards.length)];
+    }
+
+    /**
+     * Ring buffer plus its single writer thread.
+     */
+    private final class Shard {
+        final MpscRingBuffer<StockRequest> queue = new MpscRingBuffer<>(queueCapacity);
+        final Thread writer;
+        volatile boolean running = true;
+
+        Shard(int index) {
+            writer = new Thread(this::run, "flash-sale-writer-" + index);
+            writer.setDaemon(true);
+        }
+
+        boolean submit(StockRequest request) {
+            if (!queue.offer(request)) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            return true;
+        }
+
+        void run() {
+            List<StockRequest> batch = new ArrayList<>(batchSize);
+            while (running || queue.size() > 0) {
+                StockRequest request;
+                while (batch.size() < batchSize && (request = queue.poll()) != null) {
+                    batch.add(request);
+                }
+                if (batch.isEmpty()) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    continue;
+                }
+                // callers that gave up before the batch started are skipped
+                batch.removeIf(waiting -> waiting.result().isCancelled());
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                try {
+                    process(batch);
+                } catch (RuntimeException e) {
+                    log.error("Flash sale batch of {} request(s) failed", batch.size(), e);
+                    batch.forEach(failed -> failed.result().completeExceptionally(e));
+                }
+                batch.clear();
+            }
+        }
+
+        /**
+         * Decide the batch and persist it in one transaction, then answer the callers.
+         * Retried when the transaction loses a lock conflict with a checkout or the expiry job.
+         */
+        void process(List<StockRequest> batch) {
+            Map<Long, Decision> decisions;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    decisions = transactionTemplate.execute(status -> decideAndWrite(batch));
+                    break;
+                } catch (PessimisticLockingFailureException e) {
+                    if (attempt >= MAX_BATCH_ATTEMPTS) {
+                        throw e;
+                    }
+                }
+            }
+            List<StockRequest> abandoned = new ArrayList<>();
+            decisions.values().forEach(decision -> complete(decision, abandoned));
+            if (!abandoned.isEmpty()) {
+                undo(abandoned);
+            }
+        }
+
+        /**
+         * Decide the batch against fresh stock, write one conditional decrement per book and the granted claims.
+         */
+        Map<Long, Decision> decideAndWrite(List<StockRequest> batch) {
+            Map<Long, List<StockRequest>> byBook = new LinkedHashMap<>();
+            for (StockRequest request : batch) {
+                byBook.computeIfAbsent(request.bookId(), id -> new ArrayList<>()).add(request);
+            }
+            Map<Long, Integer> stock = loadStock(byBook.keySet());
+
+            Map<Long, Decision> decisions = new LinkedHashMap<>();
+            byBook.forEach((bookId, requests) -> decisions.put(bookId, decide(stock.getOrDefault(bookId, 0), requests)));
+
+            // books in id order, then their claims: the lock order of every writer of claims
+            List<Long> bookIds = decisions.keySet().stream().sorted().toList();
+            int[] updated = jdbcTemplate.batchUpdate(TAKE_STOCK_SQL,
+                    bookIds.stream().map(bookId -> {
+                        int taken = decisions.get(bookId).taken;
+                        return new Object[]{taken, bookId, taken};
+                    }).toList());
+
+            for (int i = 0; i < bookIds.size(); i++) {
+                Long bookId = bookIds.get(i);
+                Decision decision = decisions.get(bookId);
+                if (updated[i] == 0 && decision.taken > 0) {
+                    // stock changed under us between the read and the update, decide this book once more
+                    decision = decide(loadStock(List.of(bookId)).getOrDefault(bookId, 0), byBook.get(bookId));
+                    int taken = decision.taken;
+                    if (jdbcTemplate.update(TAKE_STOCK_SQL, taken, bookId, taken) == 0) {
+                        decision = decide(0, byBook.get(bookId));
+                    }
+                    decisions.put(bookId, decision);
+                }
+            }
+
+            Timestamp expiresAt = Timestamp.from(Instant.now().plus(claimTtlMinutes, ChronoUnit.MINUTES));
+            List<Object[]> claimRows = new ArrayList<>();
+            decisions.values().forEach(decision -> decision.granted.forEach(grant -> {
+                StockRequest request = grant.getKey();
+                claimRows.add(new Object[]{request.userId(), request.bookId(), request.quantity(), expiresAt});
+            }));
+            if (!claimRows.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_CLAIM_SQL, claimRows);
+            }
+            return decisions;
+        }
+
+        Map<Long, Integer> loadStock(Collection<Long> bookIds) {
+            String placeholders = placeholders(bookIds.size());
+            Map<Long, Integer> stock = new HashMap<>();
+            jdbcTemplate.query("SELECT id, stock_quantity FROM book WHERE id IN (" + placeholders + ")",
+                    rs -> {
+                        stock.put(rs.getLong(1), rs.getInt(2));
+                    },
+                    bookIds.toArray());
+            return stock;
+        }
+
+        Decision decide(int stock, List<StockRequest> requests) {
+            Decision decision = new Decision();
+            int remaining = stock;
+            for (StockRequest request : requests) {
+                if (request.quantity() <= remaining) {
+                    remaining -= request.quantity();
+                    decision.taken += request.quantity();
+                    decision.granted.add(Map.entry(request, remaining));
+                } else {
+                    decision.denied.add(request);
+                }
+            }
+            return decision;
+        }
+
+        /**
+         * Answer the callers of a committed decision. A grant whose caller cancelled meanwhile is collected.
+         */
+        void complete(Decision decision, List<StockRequest> abandoned) {
+            decision.granted.forEach(grant -> {
+                if (!grant.getKey().result().complete(grant.getValue())) {
+                    abandoned.add(grant.getKey());
+                }
+            });
+            decision.denied.forEach(request -> request.result().completeExceptionally(new AppException(ErrorCode.EXCEED_STOCK)));
+        }
+
+        /**
+         * Take back granted units nobody waits for any more: out of the claim, back into the stock. Books are
+         * locked before the claims, like everywhere else. A failure leaves the claim to the expiry job.
+         */
+        void undo(List<StockRequest> abandoned) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    lockBooks(abandoned.stream().map(StockRequest::bookId).toList());
+                    int[] taken = jdbcTemplate.batchUpdate(
+                            "UPDATE flash_sale_claim SET quantity = quantity - ? WHERE user_id = ? AND book_id = ? AND quantity >= ?",
+                            abandoned.stream().map(request -> new Object[]{request.quantity(), request.userId(), request.bookId(), request.quantity()}).toList());
+                    List<Object[]> giveBacks = new ArrayList<>();
+                    List<Object[]> emptied = new ArrayList<>();
+                    for (int i = 0; i < taken.length; i++) {
+                        // a checkout may already have consumed the units, then they stay sold
+                        if (taken[i] > 0) {
+                            StockRequest request = abandoned.get(i);
+                            giveBacks.add(new Object[]{request.quantity(), request.bookId()});
+                            emptied.add(new Object[]{request.userId(), request.bookId()});
+                        }
+                    }
+                    if (!giveBacks.isEmpty()) {
+                        jdbcTemplate.batchUpdate(GIVE_BACK_SQL, giveBacks);
+                        jdbcTemplate.batchUpdate("DELETE FROM flash_sale_claim WHERE user_id = ? AND book_id = ? AND quantity = 0", emptied);
+                    }
+                });
+                log.info("Undid {} flash sale grant(s) whose callers timed out", abandoned.size());
+            } catch (RuntimeException e) {
+                log.warn("Cannot undo {} flash sale grant(s) of timed out callers, they expire with their claims", abandoned.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Outcome of a batch for one book.
+     */
+    private static final class Decision {
+        int taken;
+        List<Map.Entry<StockRequest, Integer>> granted = new ArrayList<>();
+        List<StockRequest> denied = new ArrayList<>();
+    }
+}
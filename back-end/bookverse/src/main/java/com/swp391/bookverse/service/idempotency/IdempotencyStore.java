@@ -0,0 +1,232 @@
+package com.swp391.bookverse.service.idempotency;
+
+import com.swp391.bookverse.entity.IdempotencyRecord;
+import com.swp391.bookverse.enums.IdempotencyStatus;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.repository.IdempotencyRecordRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Responses of requests sent with an Idempotency-Key.
+ * <p>
+ * The idempotency_key table is the source of truth: the first request inserts the key as IN_PROGRESS,
+ * stores the response bytes when it succeeds and the row is purged once its replay window ends.
+ * A bounded in-memory map sits in front of it, so repeated keys are replayed without a query and
+ * concurrent duplicates on this instance wait on the first execution instead of racing it.
+ * Duplicates arriving on another instance poll the row until it completes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class IdempotencyStore {
+    static final long POLL_INTERVAL_MS = 50;
+
+    IdempotencyRecordRepository repository;
+
+    Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @NonFinal
+    @Value("${idempotency.ttl-hours:24}")
+    long ttlHours;
+
+    @NonFinal
+    @Value("${idempotency.lock-timeout-seconds:60}")
+    long lockTimeoutSeconds;
+
+    @NonFinal
+    @Value("${idempotency.wait-timeout-ms:10000}")
+    long waitTimeoutMs;
+
+    @NonFinal
+    @Value("${idempotency.max-entries:10000}")
+    int maxEntries;
+
+    @NonFinal
+    @Value("${idempotency.purge-batch-size:500}")
+    int purgeBatchSize;
+
+    /**
+     * Response bytes replayed for a repeated key.
+     */
+    public record StoredResponse(int status, String contentType, byte[] body) {
+    }
+
+    /**
+     * In-memory state of a key: completed with the stored response, or with null when the first execution failed.
+     */
+    static final class Entry {
+        final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE;
+    }
+
+    /**
+     * Hash identifying a client key, scoped to the caller and the endpoint.
+     */
+    public String keyOf(String principal, String method, String path, String clientKey) {
+        if (clientKey.isBlank() || clientKey.length() > 255) {
+            throw new AppException(ErrorCode.IDEMPOTENCY_KEY_INVALID);
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((principal + '\n' + method + '\n' + path + '\n' + clientKey).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Start a request with a key.
+     * @param key hash from keyOf
+     * @return the stored response to replay, or null when the caller owns the key and must execute the
+     * request, then call complete or release
+     * @throws AppException IDEMPOTENCY_KEY_IN_PROGRESS when the first execution does not finish in time
+     */
+    public StoredResponse begin(String key) {
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+        while (true) {
+            Entry entry = new Entry();
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing != null) {
+                StoredResponse response = await(existing, deadline);
+                if (response != null && existing.expiresAt > System.currentTimeMillis()) {
+                    return response;
+                }
+                // first execution failed or the replay window ended, compete for the key again
+                entries.remove(key, existing);
+                continue;
+            }
+
+            Instant now = Instant.now();
+            Instant lockedUntil = now.plusSeconds(lockTimeoutSeconds);
+            if (repository.claim(key, now, lockedUntil) == 1 || repository.takeOver(key, now, lockedUntil) == 1) {
+                return null;
+            }
+            Optional<IdempotencyRecord> record = repository.findById(key);
+            if (record.isPresent() && record.get().getStatus() == IdempotencyStatus.COMPLETED) {
+                IdempotencyRecord completed = record.get();
+                StoredResponse response = new StoredResponse(completed.getResponseStatus(), completed.getContentType(), completed.getBody());
+                entry.expiresAt = completed.getExpiresAt().toEpochMilli();
+                entry.response.complete(response);
+                trim();
+                return response;
+            }
+
+            // executing on another instance
+            entries.remove(key, entry);
+            entry.response.complete(null);
+            if (System.currentTimeMillis() >= deadline) {
+                throw new AppException(ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS);
+            }
+            sleep();
+        }
+    }
+
+    /**
+     * Store the response of a successful execution and hand it to waiting duplicates.
+     */
+    public void complete(String key, StoredResponse response) {
+        Instant expiresAt = Instant.now().plusSeconds(TimeUnit.HOURS.toSeconds(ttlHours));
+        repository.complete(key, response.status(), response.contentType(), response.body(), expiresAt);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.expiresAt = expiresAt.toEpochMilli();
+            entry.response.complete(response);
+        }
+        trim();
+    }
+
+    /**
+     * Free the key after a failed execution, so a retry executes the request again.
+     */
+    public void release(String key) {
+        try {
+            repository.release(key);
+        } finally {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                entry.response.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Delete keys whose replay window ended, in chunks to keep each statement short.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> e.getValue().response.isDone() && e.getValue().expiresAt <= now);
+
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = repository.purgeExpired(Instant.now(), purgeBatchSize);
+            purged += deleted;
+        } while (deleted == purgeBatchSize);
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency key(s)", purged);
+        }
+    }
+
+    private StoredResponse await(Entry entry, long deadline) {
+        try {
+            return entry.response.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new AppException(ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Keep the map bounded, completed entries can always be read back from the table.
+     */
+    private void trim() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> e.getValue().response.isDone() && e.getValue().expiresAt <= now);
+        var iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            if (iterator.next().getValue().response.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.swp391.bookverse.service.inventory;
+
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory stock reservations, used by the cart to hold stock for a user without locking book rows.
+ * <p>
+ * Every known book gets a dense ordinal and one 64-bit slot packing (reserved, available) stock,
+ * so reserve / release is a single compare-and-set and never oversells. Reservations expire after
+ * a TTL when the cart is abandoned, and the slots of books with reservations are periodically reconciled with
+ * book.stock_quantity (available = stock in database - reserved). A book nobody holds is re-aligned from the stock
+ * the cart reads when it is reserved again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class StockReservationService {
+    static final int CHUNK_SIZE = 4096;
+    static final int RECONCILE_BATCH = 500;
+
+    JdbcTemplate jdbcTemplate;
+
+    Map<Long, Integer> ordinals = new ConcurrentHashMap<>();
+    AtomicInteger nextOrdinal = new AtomicInteger();
+    Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+
+    @NonFinal
+    volatile AtomicReferenceArray<AtomicLongArray> chunks;
+
+    @NonFinal
+    @Value("${inventory.reservation.enabled:true}")
+    boolean enabled;
+
+    @NonFinal
+    @Value("${inventory.reservation.ttl-minutes:30}")
+    long ttlMinutes;
+
+    @NonFinal
+    @Value("${inventory.reservation.capacity:1048576}")
+    int capacity;
+
+    /**
+     * Stock held by one holder (user) for one book.
+     */
+    static final class Reservation {
+        final int ordinal;
+        final int quantity;
+        final long expiresAt;
+
+        Reservation(int ordinal, int quantity, long expiresAt) {
+            this.ordinal = ordinal;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set the reservations of a holder to the desired quantities, all or nothing.
+     * @param holder owner of the reservations (user id)
+     * @param desired book id -> quantity the holder wants to keep (0 releases)
+     * @param stockHints book id -> stock quantity read from the database, used the first time a book is seen
+     * @throws AppException EXCEED_STOCK when one of the books does not have enough available stock
+     */
+    public void reserveAll(String holder, Map<Long, Integer> desired, Map<Long, Integer> stockHints) {
+        List<Map.Entry<Long, Integer>> applied = new ArrayList<>(desired.size());
+        try {
+            for (Map.Entry<Long, Integer> entry : desired.entrySet()) {
+                Long bookId = entry.getKey();
+                int previous = setReservation(holder, bookId, stockHints.get(bookId), entry.getValue());
+                applied.add(Map.entry(bookId, previous));
+            }
+        } catch (AppException e) {
+            // roll back what was already changed, releasing always succeeds
+            for (Map.Entry<Long, Integer> entry : applied) {
+                setReservation(holder, entry.getKey(), stockHints.get(entry.getKey()), entry.getValue());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Lower a holder's reservation of a book to at most the given quantity (cart item decreased or removed).
+     * Never reserves anything, so it cannot fail.
+     * @param holder
+     * @param bookId
+     * @param quantity quantity to keep
+     */
+    public void releaseTo(String holder, Long bookId, int quantity) {
+        reservations.computeIfPresent(key(holder, bookId), (k, reservation) -> {
+            if (reservation.quantity <= quantity) {
+                return reservation;
+            }
+            int released = reservation.quantity - quantity;
+            shift(reservation.ordinal, -released, released);
+            return quantity > 0 ? new Reservation(reservation.ordinal, quantity, reservation.expiresAt) : null;
+        });
+    }
+
+    /**
+     * Drop a reservation whose stock was taken out of the database (checkout), without giving it back.
+     * @param holder
+     * @param bookId
+     */
+    public void commit(String holder, Long bookId) {
+        Reservation reservation = reservations.remove(key(holder, bookId));
+        if (reservation != null) {
+            shift(reservation.ordinal, -reservation.quantity, 0);
+        }
+    }
+
+    /**
+     * Stock of a book that is not reserved by anyone, or null if the book is not tracked yet.
+     * @param bookId
+     * @return available quantity
+     */
+    public Integer getAvailable(Long bookId) {
+        Integer ordinal = ordinals.get(bookId);
+        return ordinal == null ? null : available(slot(ordinal));
+    }
+
+    /**
+     * Release reservations whose TTL elapsed (abandoned carts).
+     */
+    @Scheduled(fixedDelayString = "${inventory.reservation.expiry-interval-ms:30000}")
+    public void expireReservations() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (String key : reservations.keySet()) {
+            boolean[] released = {false};
+            reservations.computeIfPresent(key, (k, reservation) -> {
+                if (reservation.expiresAt > now) {
+                    return reservation;
+                }
+                shift(reservation.ordinal, -reservation.quantity, reservation.quantity);
+                released[0] = true;
+                return null;
+            });
+            if (released[0]) {
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            log.info("Released {} expired stock reservation(s)", expired);
+        }
+    }
+
+    /**
+     * Re-align available stock of the books currently reserved with book.stock_quantity, reading only those rows
+     * by primary key in batches.
+     */
+    @Scheduled(fixedDelayString = "${inventory.reservation.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        if (!enabled || ordinals.isEmpty()) {
+            return;
+        }
+        List<Long> reserved = new ArrayList<>();
+        ordinals.forEach((bookId, ordinal) -> {
+            if (reserved(slot(ordinal)) > 0) {
+                reserved.add(bookId);
+            }
+        });
+        for (int from = 0; from < reserved.size(); from += RECONCILE_BATCH) {
+            List<Long> batch = reserved.subList(from, Math.min(from + RECONCILE_BATCH, reserved.size()));
+            jdbcTemplate.query("SELECT id, stock_quantity FROM book WHERE id IN ("
+                    + String.join(",", Collections.nCopies(batch.size(), "?")) + ")", rs -> {
+                Integer ordinal = ordinals.get(rs.getLong(1));
+                if (ordinal != null) {
+                    alignStock(ordinal, rs.getInt(2));
+                }
+            }, batch.toArray());
+        }
+    }
+
+    /**
+     * Atomically move a holder's reservation of one book to the given quantity.
+     * @return the previous quantity
+     */
+    private int setReservation(String holder, Long bookId, Integer stockHint, int quantity) {
+        int ordinal = ordinalOf(bookId, stockHint);
+        long expiresAt = System.currentTimeMillis() + ttlMinutes * 60_000;
+        int[] previous = {0};
+        reservations.compute(key(holder, bookId), (k, reservation) -> {
+            int current = reservation == null ? 0 : reservation.quantity;
+            previous[0] = current;
+            int delta = quantity - current;
+            if (delta != 0 && !shift(ordinal, delta, -delta)) {
+                throw new AppException(ErrorCode.EXCEED_STOCK);
+            }
+            return quantity > 0 ? new Reservation(ordinal, quantity, expiresAt) : null;
+        });
+        return previous[0];
+    }
+
+    /**
+     * CAS loop adding deltas to the reserved and available halves of a slot.
+     * Fails (without change) when available stock would become negative because of a reservation.
+     */
+    private boolean shift(int ordinal, int reservedDelta, int availableDelta) {
+        AtomicLongArray chunk = chunks.get(ordinal / CHUNK_SIZE);
+        int index = ordinal % CHUNK_SIZE;
+        while (true) {
+            long current = chunk.get(index);
+            int available = available(current) + availableDelta;
+            if (availableDelta < 0 && available < 0) {
+                return false;
+            }
+            if (chunk.compareAndSet(index, current, pack(reserved(current) + reservedDelta, available))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Set available = stock - reserved, keeping the reserved half as it is at the time of the swap.
+     */
+    private void alignStock(int ordinal, int stock) {
+        AtomicLongArray chunk = chunks.get(ordinal / CHUNK_SIZE);
+        int index = ordinal % CHUNK_SIZE;
+        while (true) {
+            long current = chunk.get(index);
+            int reserved = reserved(current);
+            if (chunk.compareAndSet(index, current, pack(reserved, stock - reserved))) {
+                return;
+            }
+        }
+    }
+
+    private int ordinalOf(Long bookId, Integer stockHint) {
+        Integer ordinal = ordinals.get(bookId);
+        if (ordinal != null) {
+            // not reconciled while nobody holds it, take the stock the caller just read instead
+            AtomicLongArray chunk = chunks.get(ordinal / CHUNK_SIZE);
+            int index = ordinal % CHUNK_SIZE;
+            long current = chunk.get(index);
+            if (stockHint != null && reserved(current) == 0 && available(current) != stockHint) {
+                chunk.compareAndSet(index, current, pack(0, stockHint));
+            }
+            return ordinal;
+        }
+        return ordinals.computeIfAbsent(bookId, id -> {
+            int next = nextOrdinal.getAndIncrement();
+            if (next >= capacity) {
+                throw new IllegalStateException("Stock reservation capacity exceeded: " + capacity);
+            }
+            AtomicReferenceArray<AtomicLongArray> directory = directory();
+            int chunkIndex = next / CHUNK_SIZE;
+            if (directory.get(chunkIndex) == null) {
+                directory.compareAndSet(chunkIndex, null, new AtomicLongArray(CHUNK_SIZE));
+            }
+            directory.get(chunkIndex).set(next % CHUNK_SIZE, pack(0, stockHint != null ? stockHint : 0));
+            return next;
+        });
+    }
+
+    private synchronized AtomicReferenceArray<AtomicLongArray> directory() {
+        if (chunks == null) {
+            chunks = new AtomicReferenceArray<>((capacity + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        }
+        return chunks;
+    }
+
+    private long slot(int ordinal) {
+        return chunks.get(ordinal / CHUNK_SIZE).get(ordinal % CHUNK_SIZE);
+    }
+
+    private static String key(String holder, Long bookId) {
+        return holder + '#' + bookId;
+    }
+
+    private static long pack(int reserved, int available) {
+        return ((long) reserved << 32) | (available & 0xFFFFFFFFL);
+    }
+
+    private static int reserved(long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    private static int available(long slot) {
+        return (int) slot;
+    }
+}
@@ -0,0 +1,386 @@
+package com.swp391.bookverse.service.mail;
+
+import com.swp391.bookverse.dto.request.CampaignCreationRequest;
+import com.swp391.bookverse.dto.response.CampaignResponse;
+import com.swp391.bookverse.entity.MailCampaign;
+import com.swp391.bookverse.enums.CampaignStatus;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.repository.MailCampaignRepository;
+import com.swp391.bookverse.repository.PromotionRepository;
+import com.swp391.bookverse.service.ratelimit.RateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emails a promotion to every active customer.
+ * <p>
+ * Recipients are streamed page by page with a keyset query on user id (id, email and name only, no entities or
+ * role collections), so memory use does not depend on the number of customers: at most the page being sent and
+ * the next one are held. Each page is rendered with the precompiled template and sent in chunks by a pool of
+ * workers, one SMTP connection per chunk, throttled to a global messages-per-second budget. Messages the server
+ * rejects are handed to the MailQueue for retries. After a page is sent its last user id and the counters are
+ * checkpointed with the campaign's lease; a crashed run is taken over once the lease ends and resumes after the
+ * checkpoint, resending at most one page. Every claim writes a new run token that the checkpoint and completion
+ * updates require, so a run whose lease was taken over stops at its next checkpoint instead of sending on.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CampaignMailer {
+    static final List<String> VARIABLES = List.of("name", "email", "promotion", "percentage", "day");
+    static final String DEFAULT_SUBJECT = "A new Bookverse promotion is live";
+    static final String DEFAULT_TEMPLATE = """
+            Hi {{name}},
+
+            {{promotion}}
+
+            Up to {{percentage}}% off, on {{day}} only. See you at Bookverse!
+            """;
+
+    JdbcTemplate jdbcTemplate;
+    JavaMailSender mailSender;
+    MailQueue mailQueue;
+    RateLimiter rateLimiter;
+    MailCampaignRepository mailCampaignRepository;
+    PromotionRepository promotionRepository;
+
+    // campaigns being sent by this instance, a pause followed by a quick resume must not start a second run
+    Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    @NonFinal
+    ExecutorService runners;
+
+    @NonFinal
+    ExecutorService workers;
+
+    @NonFinal
+    @Value("${campaign.auto-start:true}")
+    boolean autoStart;
+
+    @NonFinal
+    @Value("${campaign.page-size:500}")
+    int pageSize;
+
+    @NonFinal
+    @Value("${campaign.parallelism:4}")
+    int parallelism;
+
+    @NonFinal
+    @Value("${campaign.messages-per-connection:50}")
+    int messagesPerConnection;
+
+    @NonFinal
+    @Value("${campaign.messages-per-second:20}")
+    int messagesPerSecond;
+
+    @NonFinal
+    @Value("${campaign.lease-seconds:300}")
+    long leaseSeconds;
+
+    @NonFinal
+    @Value("${spring.mail.from:}")
+    String from;
+
+    record Recipient(String id, String email, String name) {
+    }
+
+    record Chunk(int sent, int deferred) {
+    }
+
+    @PostConstruct
+    void start() {
+        runners = Executors.newFixedThreadPool(2, Thread.ofPlatform().name("campaign-runner-", 0).daemon().factory());
+        workers = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("campaign-worker-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        runners.shutdownNow();
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Create a campaign for a promotion and start sending it (admin only).
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    public CampaignResponse create(CampaignCreationRequest request) {
+        if (request.getPromotionId() == null || !promotionRepository.existsById(request.getPromotionId())) {
+            throw new AppException(ErrorCode.PROMOTION_NOT_FOUND);
+        }
+        if (mailCampaignRepository.existsByPromotionId(request.getPromotionId())) {
+            throw new AppException(ErrorCode.CAMPAIGN_EXISTS);
+        }
+        String template = request.getTemplate() != null && !request.getTemplate().isBlank() ? request.getTemplate() : DEFAULT_TEMPLATE;
+        try {
+            MailTemplate.compile(template, VARIABLES);
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.CAMPAIGN_TEMPLATE_INVALID);
+        }
+        Instant now = Instant.now();
+        MailCampaign campaign = mailCampaignRepository.save(MailCampaign.builder()
+                .promotionId(request.getPromotionId())
+                .subject(request.getSubject() != null && !request.getSubject().isBlank() ? request.getSubject() : DEFAULT_SUBJECT)
+                .template(template)
+                .status(CampaignStatus.RUNNING)
+                // unclaimed, picked up by the next resumeAbandoned
+                .lockedUntil(now)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        claimAndRun(campaign.getId());
+        return toResponse(campaign);
+    }
+
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    public CampaignResponse get(Long id) {
+        return toResponse(mailCampaignRepository.findById(id).orElseThrow(() -> new AppException(ErrorCode.CAMPAIGN_NOT_FOUND)));
+    }
+
+    /**
+     * Stop sending after the current page (admin only).
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    public CampaignResponse pause(Long id) {
+        jdbcTemplate.update("UPDATE mail_campaign SET status = 'PAUSED', updated_at = ? WHERE id = ? AND status = 'RUNNING'",
+                Timestamp.from(Instant.now()), id);
+        return get(id);
+    }
+
+    /**
+     * Continue a paused campaign after its checkpoint (admin only).
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    public CampaignResponse resume(Long id) {
+        Timestamp now = Timestamp.from(Instant.now());
+        if (jdbcTemplate.update("UPDATE mail_campaign SET status = 'RUNNING', locked_until = ?, updated_at = ? WHERE id = ? AND status = 'PAUSED'",
+                now, now, id) == 1) {
+            claimAndRun(id);
+        }
+        return get(id);
+    }
+
+    /**
+     * Create campaigns with the default text for the promotions that go live today.
+     */
+    @Scheduled(cron = "${campaign.auto-start-cron:0 0 8 * * *}")
+    public void startTodaysPromotions() {
+        if (!autoStart) {
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        // the unique promotion_id makes this a no-op for promotions that already have a campaign
+        jdbcTemplate.update("INSERT IGNORE INTO mail_campaign (promotion_id, subject, template, status, sent_count, deferred_count, " +
+                        "locked_until, created_at, updated_at) SELECT p.id, ?, ?, 'RUNNING', 0, 0, ?, ?, ? FROM promotion p WHERE p.promotion_day = ?",
+                DEFAULT_SUBJECT, DEFAULT_TEMPLATE, now, now, now, LocalDate.now());
+        resumeAbandoned();
+    }
+
+    /**
+     * Take over running campaigns whose lease has ended: new ones, and ones whose instance crashed or stopped.
+     */
+    @Scheduled(fixedDelayString = "${campaign.resume-interval-ms:30000}", initialDelayString = "${campaign.resume-initial-delay-ms:10000}")
+    public void resumeAbandoned() {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM mail_campaign WHERE status = 'RUNNING' AND locked_until < ?",
+                Long.class, Timestamp.from(Instant.now()));
+        ids.forEach(this::claimAndRun);
+    }
+
+    private void claimAndRun(long id) {
+        if (running.contains(id)) {
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        String runToken = UUID.randomUUID().toString();
+        // only the instance whose update succeeds sends the campaign
+        if (jdbcTemplate.update("UPDATE mail_campaign SET locked_until = ?, run_token = ? WHERE id = ? AND status = 'RUNNING' AND locked_until <= ?",
+                Timestamp.from(now.toInstant().plusSeconds(leaseSeconds)), runToken, id, now) == 1) {
+            if (running.add(id)) {
+                runners.submit(() -> {
+                    try {
+                        run(id, runToken);
+                    } finally {
+                        running.remove(id);
+                    }
+                });
+            }
+        }
+    }
+
+    private void run(long id, String runToken) {
+        try {
+            Map<String, Object> campaign = jdbcTemplate.queryForMap(
+                    "SELECT c.subject, c.template, c.last_user_id, p.content, p.percentage, p.promotion_day " +
+                            "FROM mail_campaign c JOIN promotion p ON p.id = c.promotion_id WHERE c.id = ?", id);
+            String subject = (String) campaign.get("subject");
+            MailTemplate template = MailTemplate.compile((String) campaign.get("template"), VARIABLES);
+            String promotion = (String) campaign.get("content");
+            Object percentage = campaign.get("percentage");
+            Object day = campaign.get("promotion_day");
+            String cursor = (String) campaign.get("last_user_id");
+            log.info("Campaign {} sending after user {}", id, cursor);
+
+            List<Recipient> page = fetchPage(cursor);
+            while (!page.isEmpty()) {
+                List<CompletableFuture<Chunk>> sends = new ArrayList<>();
+                for (int offset = 0; offset < page.size(); offset += messagesPerConnection) {
+                    List<Recipient> recipients = page.subList(offset, Math.min(offset + messagesPerConnection, page.size()));
+                    sends.add(CompletableFuture.supplyAsync(() -> send(id, subject, template, recipients,
+                            promotion, percentage != null ? percentage.toString() : "", day != null ? day.toString() : ""), workers));
+                }
+                // the next page is read while this one is being sent
+                cursor = page.get(page.size() - 1).id();
+                List<Recipient> next = fetchPage(cursor);
+
+                int sent = 0;
+                int deferred = 0;
+                for (CompletableFuture<Chunk> send : sends) {
+                    Chunk chunk = send.join();
+                    sent += chunk.sent();
+                    deferred += chunk.deferred();
+                }
+                if (!checkpoint(id, runToken, cursor, sent, deferred)) {
+                    return;
+                }
+                page = next;
+            }
+            if (jdbcTemplate.update("UPDATE mail_campaign SET status = 'COMPLETED', finished_at = ?, updated_at = ? " +
+                            "WHERE id = ? AND status = 'RUNNING' AND run_token = ?",
+                    Timestamp.from(Instant.now()), Timestamp.from(Instant.now()), id, runToken) == 1) {
+                log.info("Campaign {} completed", id);
+            }
+        } catch (RuntimeException e) {
+            // the lease runs out and the campaign is resumed from its checkpoint
+            log.error("Campaign {} interrupted", id, e);
+        }
+    }
+
+    /**
+     * Active customers after a user id, in id order.
+     */
+    private List<Recipient> fetchPage(String afterUserId) {
+        return jdbcTemplate.query("SELECT u.id, u.email, u.fullname FROM `user` u WHERE u.id > ? AND u.active = 1 " +
+                        "AND u.email IS NOT NULL AND EXISTS (SELECT 1 FROM user_role r WHERE r.user_id = u.id AND r.role = 'CUSTOMER') " +
+                        "ORDER BY u.id LIMIT ?",
+                (rs, rowNum) -> new Recipient(rs.getString(1), rs.getString(2), rs.getString(3)),
+                afterUserId != null ? afterUserId : "", pageSize);
+    }
+
+    /**
+     * Record progress and renew the lease, as long as this run still holds it.
+     * @return false when the run must stop: its lease was taken over, or the campaign has been paused meanwhile
+     */
+    private boolean checkpoint(long id, String runToken, String lastUserId, int sent, int deferred) {
+        Instant now = Instant.now();
+        if (jdbcTemplate.update("UPDATE mail_campaign SET last_user_id = ?, sent_count = sent_count + ?, deferred_count = deferred_count + ?, " +
+                        "locked_until = ?, updated_at = ? WHERE id = ? AND run_token = ?",
+                lastUserId, sent, deferred, Timestamp.from(now.plusSeconds(leaseSeconds)), Timestamp.from(now), id, runToken) == 0) {
+            log.warn("Campaign {} lease lost after user {}, another run has taken over", id, lastUserId);
+            return false;
+        }
+        if (!"RUNNING".equals(jdbcTemplate.queryForObject("SELECT status FROM mail_campaign WHERE id = ?", String.class, id))) {
+            log.info("Campaign {} paused after user {}", id, lastUserId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Render and send a chunk over one SMTP connection, within the campaign's rate.
+     */
+    private Chunk send(long id, String subject, MailTemplate template, List<Recipient> recipients,
+                       String promotion, String percentage, String day) {
+        SimpleMailMessage[] messages = new SimpleMailMessage[recipients.size()];
+        for (int i = 0; i < messages.length; i++) {
+            throttle(id);
+            Recipient recipient = recipients.get(i);
+            SimpleMailMessage msg = new SimpleMailMessage();
+            if (!from.isBlank()) {
+                msg.setFrom(from);
+            }
+            msg.setTo(recipient.email());
+            msg.setSubject(subject);
+            msg.setText(template.render(recipient.name(), recipient.email(), promotion, percentage, day));
+            messages[i] = msg;
+        }
+
+        Set<SimpleMailMessage> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException e) {
+            e.getFailedMessages().keySet().forEach(msg -> {
+                if (msg instanceof SimpleMailMessage simple) {
+                    failed.add(simple);
+                }
+            });
+            if (failed.isEmpty()) {
+                failed.addAll(List.of(messages));
+            }
+        } catch (MailException e) {
+            failed.addAll(List.of(messages));
+        }
+        // the mail queue retries them with backoff
+        for (SimpleMailMessage msg : failed) {
+            mailQueue.enqueue(msg.getTo()[0], msg.getSubject(), msg.getText(), null);
+        }
+        return new Chunk(messages.length - failed.size(), failed.size());
+    }
+
+    private void throttle(long id) {
+        long waitMs;
+        while ((waitMs = rateLimiter.tryAcquire("campaign:" + id, messagesPerSecond, 1)) > 0) {
+            try {
+                Thread.sleep(waitMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Campaign " + id + " interrupted", e);
+            }
+        }
+    }
+
+    private static CampaignResponse toResponse(MailCampaign campaign) {
+        return CampaignResponse.builder()
+                .id(campaign.getId())
+                .promotionId(campaign.getPromotionId())
+                .subject(campaign.getSubject())
+                .status(campaign.getStatus())
+                .sentCount(campaign.getSentCount())
+                .deferredCount(campaign.getDeferredCount())
+                .createdAt(campaign.getCreatedAt())
+                .updatedAt(campaign.getUpdatedAt())
+                .finishedAt(campaign.getFinishedAt())
+                .build();
+    }
+}
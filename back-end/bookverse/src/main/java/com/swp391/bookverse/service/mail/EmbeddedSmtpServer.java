@@ -0,0 +1,209 @@
+package com.swp391.bookverse.service.mail;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal SMTP server on localhost that accepts and keeps every message, a stand-in for a real mail server in
+ * integration and load tests (like GreenMail). Only loaded when mail.embedded-smtp.enabled is true; point
+ * spring.mail.host/port at it.
+ * <p>
+ * Speaks enough ESMTP for Jakarta Mail: EHLO/HELO, any AUTH PLAIN/LOGIN, MAIL, RCPT, DATA, RSET, NOOP, QUIT.
+ * Several messages per connection are supported, so the batching of the MailDispatcher can be observed.
+ * An optional per-message latency simulates a slow provider.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "mail.embedded-smtp.enabled", havingValue = "true")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class EmbeddedSmtpServer {
+    Deque<ReceivedMail> received = new ArrayDeque<>();
+    AtomicLong receivedTotal = new AtomicLong();
+    AtomicLong connectionsTotal = new AtomicLong();
+
+    @NonFinal
+    ServerSocket serverSocket;
+
+    @NonFinal
+    @Value("${mail.embedded-smtp.port:3025}")
+    int port;
+
+    @NonFinal
+    @Value("${mail.embedded-smtp.max-messages:10000}")
+    int maxMessages;
+
+    @NonFinal
+    @Value("${mail.embedded-smtp.latency-ms:0}")
+    long latencyMs;
+
+    public record ReceivedMail(String from, List<String> recipients, String data, Instant receivedAt) {
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        serverSocket = new ServerSocket(port, 100, InetAddress.getLoopbackAddress());
+        Thread.ofPlatform().name("embedded-smtp").daemon().start(this::acceptLoop);
+        log.info("Embedded SMTP server listening on localhost:{}", port);
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        serverSocket.close();
+    }
+
+    /**
+     * Latest received messages, oldest first.
+     */
+    public synchronized List<ReceivedMail> getMessages() {
+        return new ArrayList<>(received);
+    }
+
+    public long getReceivedTotal() {
+        return receivedTotal.get();
+    }
+
+    public long getConnectionsTotal() {
+        return connectionsTotal.get();
+    }
+
+    public synchronized void clear() {
+        received.clear();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionsTotal.incrementAndGet();
+                Thread.ofVirtual().start(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Embedded SMTP accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 localhost ESMTP embedded");
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO" -> reply(out, "250-localhost\r\n250-8BITMIME\r\n250 AUTH PLAIN LOGIN");
+                    case "HELO" -> reply(out, "250 localhost");
+                    case "AUTH" -> authenticate(line, in, out);
+                    case "MAIL" -> {
+                        from = address(line);
+                        recipients.clear();
+                        reply(out, "250 OK");
+                    }
+                    case "RCPT" -> {
+                        recipients.add(address(line));
+                        reply(out, "250 OK");
+                    }
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        String data = readData(in);
+                        if (latencyMs > 0) {
+                            Thread.sleep(latencyMs);
+                        }
+                        store(new ReceivedMail(from, List.copyOf(recipients), data, Instant.now()));
+                        reply(out, "250 OK queued");
+                    }
+                    case "RSET" -> {
+                        from = null;
+                        recipients.clear();
+                        reply(out, "250 OK");
+                    }
+                    case "NOOP" -> reply(out, "250 OK");
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Embedded SMTP connection closed: {}", e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Any credentials are accepted.
+     */
+    private static void authenticate(String line, BufferedReader in, OutputStream out) throws IOException {
+        String[] parts = line.split(" ");
+        String mechanism = parts.length > 1 ? parts[1].toUpperCase() : "";
+        if (mechanism.equals("LOGIN")) {
+            if (parts.length < 3) {
+                reply(out, "334 VXNlcm5hbWU6");
+                in.readLine();
+            }
+            reply(out, "334 UGFzc3dvcmQ6");
+            in.readLine();
+        } else if (mechanism.equals("PLAIN") && parts.length < 3) {
+            reply(out, "334 ");
+            in.readLine();
+        }
+        reply(out, "235 Authentication successful");
+    }
+
+    private static String readData(BufferedReader in) throws IOException {
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(".")) {
+            // undo dot-stuffing
+            data.append(line.startsWith(".") ? line.substring(1) : line).append("\r\n");
+        }
+        return data.toString();
+    }
+
+    private synchronized void store(ReceivedMail mail) {
+        receivedTotal.incrementAndGet();
+        received.addLast(mail);
+        while (received.size() > maxMessages) {
+            received.removeFirst();
+        }
+    }
+
+    private static String address(String line) {
+        int start = line.indexOf('<');
+        int end = line.indexOf('>', start + 1);
+        return start >= 0 && end > start ? line.substring(start + 1, end) : line.substring(line.indexOf(':') + 1).trim();
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
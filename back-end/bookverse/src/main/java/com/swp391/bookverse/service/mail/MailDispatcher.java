@@ -0,0 +1,317 @@
+package com.swp391.bookverse.service.mail;
+
+import com.swp391.bookverse.dto.response.MailStatsResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the queued emails in the background.
+ * <p>
+ * Batches are claimed like outbox events (FOR UPDATE SKIP LOCKED, SENDING until a lease ends), then split into
+ * chunks sent by a worker pool. A chunk goes through one JavaMailSender.send call, which opens a single SMTP
+ * connection for all of its messages instead of a handshake per email. Messages the server rejected are retried
+ * with exponential backoff until max-attempts, then left FAILED for inspection.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class MailDispatcher {
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+    JavaMailSender mailSender;
+    MailQueue mailQueue;
+
+    // metrics
+    AtomicLong sent = new AtomicLong();
+    AtomicLong retried = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    AtomicLong batches = new AtomicLong();
+    AtomicLong sendNanos = new AtomicLong();
+
+    // set while the dispatch loop runs, a poll finding it set does nothing
+    AtomicBoolean dispatching = new AtomicBoolean();
+
+    @NonFinal
+    ExecutorService workers;
+
+    // runs the dispatch loop, which waits on SMTP sends, so it never holds the shared scheduler thread
+    @NonFinal
+    ExecutorService loop;
+
+    @NonFinal
+    @Value("${mail.queue.enabled:true}")
+    boolean enabled;
+
+    @NonFinal
+    @Value("${mail.queue.workers:2}")
+    int workerCount;
+
+    @NonFinal
+    @Value("${mail.queue.batch-size:200}")
+    int batchSize;
+
+    @NonFinal
+    @Value("${mail.queue.messages-per-connection:50}")
+    int messagesPerConnection;
+
+    @NonFinal
+    @Value("${mail.queue.lease-seconds:120}")
+    long leaseSeconds;
+
+    @NonFinal
+    @Value("${mail.queue.max-attempts:6}")
+    int maxAttempts;
+
+    @NonFinal
+    @Value("${mail.queue.backoff-initial-ms:5000}")
+    long backoffInitialMs;
+
+    @NonFinal
+    @Value("${mail.queue.backoff-max-ms:1800000}")
+    long backoffMaxMs;
+
+    @NonFinal
+    @Value("${mail.queue.retention-days:7}")
+    long retentionDays;
+
+    @NonFinal
+    @Value("${spring.mail.from:}")
+    String from;
+
+    record QueuedMail(long id, String recipient, String subject, String body, int attempts) {
+    }
+
+    @PostConstruct
+    void start() {
+        workers = Executors.newFixedThreadPool(workerCount, Thread.ofPlatform().name("mail-worker-", 0).daemon().factory());
+        loop = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("mail-dispatcher").daemon().factory());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        loop.shutdown();
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Start the dispatch loop on its own thread unless it is still running from an earlier poll.
+     */
+    @Scheduled(fixedDelayString = "${mail.queue.poll-interval-ms:1000}")
+    public void dispatch() {
+        if (!enabled || !dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            loop.execute(() -> {
+                try {
+                    drain();
+                } catch (RuntimeException e) {
+                    log.error("Mail dispatch failed", e);
+                } finally {
+                    dispatching.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            dispatching.set(false);
+        }
+    }
+
+    /**
+     * Claim and send batches until no message is due.
+     */
+    private void drain() {
+        List<QueuedMail> batch;
+        do {
+            batch = claimBatch();
+            List<Future<?>> sends = new ArrayList<>();
+            for (int offset = 0; offset < batch.size(); offset += messagesPerConnection) {
+                List<QueuedMail> chunk = batch.subList(offset, Math.min(offset + messagesPerConnection, batch.size()));
+                sends.add(workers.submit(() -> send(chunk)));
+            }
+            for (Future<?> send : sends) {
+                try {
+                    send.get();
+                } catch (ExecutionException e) {
+                    log.error("Mail batch crashed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    /**
+     * Backlog and delivery counters of the mail queue (admin only).
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    public MailStatsResponse getStats() {
+        long[] backlog = {0};
+        Instant[] oldest = {null};
+        jdbcTemplate.query("SELECT COUNT(*), MIN(created_at) FROM mail_message WHERE status IN ('PENDING', 'SENDING')", rs -> {
+            backlog[0] = rs.getLong(1);
+            Timestamp createdAt = rs.getTimestamp(2);
+            oldest[0] = createdAt != null ? createdAt.toInstant() : null;
+        });
+        Long failedInTable = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM mail_message WHERE status = 'FAILED'", Long.class);
+
+        long batchCount = batches.get();
+        return MailStatsResponse.builder()
+                .backlog(backlog[0])
+                .oldestPendingAgeMs(oldest[0] != null ? Math.max(Instant.now().toEpochMilli() - oldest[0].toEpochMilli(), 0) : 0)
+                .sentTotal(sent.get())
+                .retriedTotal(retried.get())
+                .failedTotal(failed.get())
+                .dedupedTotal(mailQueue.getDeduped())
+                .batchesTotal(batchCount)
+                .averageBatchSize(batchCount == 0 ? 0 : (double) (sent.get() + retried.get() + failed.get()) / batchCount)
+                .averageSendMs(batchCount == 0 ? 0 : sendNanos.get() / 1_000_000.0 / batchCount)
+                .failedInTable(failedInTable != null ? failedInTable : 0)
+                .build();
+    }
+
+    /**
+     * Delete sent messages older than the retention, in chunks.
+     */
+    @Scheduled(fixedDelayString = "${mail.queue.purge-interval-ms:3600000}")
+    public void purgeSent() {
+        Timestamp before = Timestamp.from(Instant.now().minusSeconds(TimeUnit.DAYS.toSeconds(retentionDays)));
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM mail_message WHERE status = 'SENT' AND sent_at < ? LIMIT 1000", before);
+        } while (deleted == 1000);
+    }
+
+    private List<QueuedMail> claimBatch() {
+        List<QueuedMail> batch = transactionTemplate.execute(status -> {
+            Timestamp now = Timestamp.from(Instant.now());
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM mail_message WHERE status IN ('PENDING', 'SENDING') AND available_at <= ? " +
+                            "ORDER BY available_at, id LIMIT ? FOR UPDATE SKIP LOCKED",
+                    Long.class, now, batchSize);
+            if (ids.isEmpty()) {
+                return List.<QueuedMail>of();
+            }
+            String in = String.join(",", Collections.nCopies(ids.size(), "?"));
+            List<Object> params = new ArrayList<>(ids.size() + 1);
+            params.add(Timestamp.from(Instant.now().plusSeconds(leaseSeconds)));
+            params.addAll(ids);
+            // once claimed the message no longer absorbs newer ones, those are queued on their own
+            jdbcTemplate.update("UPDATE mail_message SET status = 'SENDING', available_at = ?, dedupe_key = NULL WHERE id IN (" + in + ")",
+                    params.toArray());
+            return jdbcTemplate.query("SELECT id, recipient, subject, body, attempts FROM mail_message WHERE id IN (" + in + ")",
+                    (rs, rowNum) -> new QueuedMail(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getInt(5)),
+                    ids.toArray());
+        });
+        return batch != null ? batch : List.of();
+    }
+
+    /**
+     * Send a chunk over one SMTP connection and record the outcome of each message.
+     */
+    private void send(List<QueuedMail> chunk) {
+        SimpleMailMessage[] messages = new SimpleMailMessage[chunk.size()];
+        Map<SimpleMailMessage, QueuedMail> queued = new IdentityHashMap<>(chunk.size());
+        for (int i = 0; i < messages.length; i++) {
+            QueuedMail mail = chunk.get(i);
+            SimpleMailMessage msg = new SimpleMailMessage();
+            if (!from.isBlank()) {
+                msg.setFrom(from);
+            }
+            msg.setTo(mail.recipient());
+            msg.setSubject(mail.subject());
+            msg.setText(mail.body());
+            messages[i] = msg;
+            queued.put(msg, mail);
+        }
+
+        Map<QueuedMail, String> failures = new IdentityHashMap<>();
+        long start = System.nanoTime();
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException e) {
+            // per-message failures, keyed by the SimpleMailMessage; a failed connect lists every message
+            e.getFailedMessages().forEach((msg, error) -> {
+                QueuedMail mail = queued.get(msg);
+                if (mail != null) {
+                    failures.put(mail, error.toString());
+                }
+            });
+            if (failures.isEmpty()) {
+                chunk.forEach(mail -> failures.put(mail, e.toString()));
+            }
+        } catch (MailException e) {
+            // authentication or connection problems, nothing was sent
+            chunk.forEach(mail -> failures.put(mail, e.toString()));
+        }
+        sendNanos.addAndGet(System.nanoTime() - start);
+        batches.incrementAndGet();
+
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> sentIds = new ArrayList<>(chunk.size());
+        for (QueuedMail mail : chunk) {
+            if (!failures.containsKey(mail)) {
+                sentIds.add(new Object[]{now, mail.id()});
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE mail_message SET status = 'SENT', attempts = attempts + 1, sent_at = ?, last_error = NULL WHERE id = ?", sentIds);
+            sent.addAndGet(sentIds.size());
+        }
+        failures.forEach(this::markFailedAttempt);
+    }
+
+    private void markFailedAttempt(QueuedMail mail, String error) {
+        int attempts = mail.attempts() + 1;
+        if (attempts >= maxAttempts) {
+            log.error("Mail {} to {} failed after {} attempts: {}", mail.id(), mail.recipient(), attempts, error);
+            jdbcTemplate.update("UPDATE mail_message SET status = 'FAILED', attempts = ?, last_error = ? WHERE id = ?",
+                    attempts, truncate(error), mail.id());
+            failed.incrementAndGet();
+            return;
+        }
+        long backoff = Math.min(backoffInitialMs << Math.min(attempts - 1, 30), backoffMaxMs);
+        log.warn("Mail {} to {} failed, retrying in {} ms: {}", mail.id(), mail.recipient(), backoff, error);
+        jdbcTemplate.update("UPDATE mail_message SET status = 'PENDING', attempts = ?, available_at = ?, last_error = ? WHERE id = ?",
+                attempts, Timestamp.from(Instant.now().plusMillis(backoff)), truncate(error), mail.id());
+        retried.incrementAndGet();
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= 500 ? error : error.substring(0, 500);
+    }
+}
@@ -0,0 +1,53 @@
+package com.swp391.bookverse.service.mail;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues emails in the mail_message table, to be sent in the background by the MailDispatcher.
+ * <p>
+ * Called inside the caller's transaction, the email is queued if and only if the change is committed, and the
+ * request thread never waits for SMTP. Per-recipient dedupe: while a message with the same dedupe key is still
+ * pending, a new one replaces its content instead of queueing a second email (a re-requested OTP code supersedes
+ * the unsent one).
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class MailQueue {
+    JdbcTemplate jdbcTemplate;
+
+    AtomicLong deduped = new AtomicLong();
+
+    /**
+     * @param to recipient
+     * @param subject
+     * @param text plain text body
+     * @param dedupeKey e.g. "otp:" + email, null to always queue a new message
+     */
+    public void enqueue(String to, String subject, String text, String dedupeKey) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int affected = jdbcTemplate.update("INSERT INTO mail_message (recipient, subject, body, dedupe_key, status, attempts, available_at, created_at) " +
+                        "VALUES (?, ?, ?, ?, 'PENDING', 0, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE recipient = VALUES(recipient), subject = VALUES(subject), body = VALUES(body), created_at = VALUES(created_at)",
+                to, subject, text, dedupeKey, now, now);
+        // MySQL reports 2 affected rows when the existing row was updated
+        if (affected > 1) {
+            deduped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Messages merged into a pending one since startup of this instance.
+     */
+    public long getDeduped() {
+        return deduped.get();
+    }
+}
@@ -0,0 +1,72 @@
+package com.swp391.bookverse.service.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text template with {{variable}} placeholders, parsed once and rendered many times.
+ * <p>
+ * Compiling splits the source into literal parts and resolves each placeholder to the index of its variable,
+ * so rendering is a single pass of appends into a presized builder, with no parsing or map lookups.
+ */
+public final class MailTemplate {
+    private final String[] literals;
+    private final int[] slots;
+    private final int literalLength;
+
+    private MailTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * @param source template text
+     * @param variables names allowed in placeholders, in the order their values are passed to render
+     * @throws IllegalArgumentException on an unclosed or unknown placeholder
+     */
+    public static MailTemplate compile(String source, List<String> variables) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = source.indexOf("{{", position);
+            if (open < 0) {
+                literals.add(source.substring(position));
+                break;
+            }
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at " + open);
+            }
+            String name = source.substring(open + 2, close).trim();
+            int slot = variables.indexOf(name);
+            if (slot < 0) {
+                throw new IllegalArgumentException("Unknown placeholder " + name);
+            }
+            literals.add(source.substring(position, open));
+            slots.add(slot);
+            position = close + 2;
+        }
+        return new MailTemplate(literals.toArray(String[]::new), slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * @param values one per variable, in the order given to compile; null renders as empty
+     */
+    public String render(String... values) {
+        StringBuilder sb = new StringBuilder(literalLength + slots.length * 16);
+        for (int i = 0; i < slots.length; i++) {
+            sb.append(literals[i]);
+            String value = values[slots[i]];
+            if (value != null) {
+                sb.append(value);
+            }
+        }
+        return sb.append(literals[slots.length]).toString();
+    }
+}
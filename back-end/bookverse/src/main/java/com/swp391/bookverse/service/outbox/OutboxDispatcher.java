@@ -0,0 +1,266 @@
+package com.swp391.bookverse.service.outbox;
+
+import com.swp391.bookverse.dto.response.OutboxStatsResponse;
+import com.swp391.bookverse.entity.OutboxEvent;
+import com.swp391.bookverse.repository.OutboxEventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Delivers outbox events to their handlers in the background.
+ * <p>
+ * Batches are claimed with SELECT ... FOR UPDATE SKIP LOCKED and marked PROCESSING until a lease ends,
+ * so several instances can poll the same table without delivering an event twice, and events of a
+ * crashed instance are picked up again once the lease expires. Failed deliveries are retried with
+ * exponential backoff until max-attempts, then left FAILED for inspection.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OutboxDispatcher {
+    static final int THROUGHPUT_WINDOW_SECONDS = 60;
+
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+    OutboxEventRepository outboxEventRepository;
+    List<OutboxHandler> handlerList;
+
+    Map<String, OutboxHandler> handlers = new HashMap<>();
+
+    // metrics
+    AtomicLong delivered = new AtomicLong();
+    AtomicLong retried = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    AtomicLong deliveryLagMillis = new AtomicLong();
+    AtomicLong handlingNanos = new AtomicLong();
+    AtomicLongArray deliveredPerSecond = new AtomicLongArray(THROUGHPUT_WINDOW_SECONDS);
+    AtomicLongArray secondOfSlot = new AtomicLongArray(THROUGHPUT_WINDOW_SECONDS);
+
+    @NonFinal
+    ExecutorService workers;
+
+    @NonFinal
+    @Value("${outbox.enabled:true}")
+    boolean enabled;
+
+    @NonFinal
+    @Value("${outbox.workers:4}")
+    int workerCount;
+
+    @NonFinal
+    @Value("${outbox.batch-size:100}")
+    int batchSize;
+
+    @NonFinal
+    @Value("${outbox.lease-seconds:60}")
+    long leaseSeconds;
+
+    @NonFinal
+    @Value("${outbox.max-attempts:8}")
+    int maxAttempts;
+
+    @NonFinal
+    @Value("${outbox.backoff-initial-ms:1000}")
+    long backoffInitialMs;
+
+    @NonFinal
+    @Value("${outbox.backoff-max-ms:600000}")
+    long backoffMaxMs;
+
+    @NonFinal
+    @Value("${outbox.retention-days:7}")
+    long retentionDays;
+
+    @PostConstruct
+    void start() {
+        handlerList.forEach(handler -> handlers.put(handler.name(), handler));
+        workers = Executors.newFixedThreadPool(workerCount, Thread.ofPlatform().name("outbox-worker-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Claim and deliver batches until no event is due.
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:500}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        List<OutboxEvent> batch;
+        do {
+            batch = claimBatch();
+            List<Future<?>> deliveries = new ArrayList<>(batch.size());
+            for (OutboxEvent event : batch) {
+                deliveries.add(workers.submit(() -> deliver(event)));
+            }
+            for (Future<?> delivery : deliveries) {
+                try {
+                    delivery.get();
+                } catch (ExecutionException e) {
+                    log.error("Outbox delivery crashed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    /**
+     * Lag and throughput of the outbox (admin only).
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    public OutboxStatsResponse getStats() {
+        long[] backlog = {0};
+        Instant[] oldest = {null};
+        jdbcTemplate.query("SELECT COUNT(*), MIN(created_at) FROM outbox_event WHERE status IN ('PENDING', 'PROCESSING')", rs -> {
+            backlog[0] = rs.getLong(1);
+            Timestamp createdAt = rs.getTimestamp(2);
+            oldest[0] = createdAt != null ? createdAt.toInstant() : null;
+        });
+        Long failedInTable = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_event WHERE status = 'FAILED'", Long.class);
+
+        long now = Instant.now().getEpochSecond();
+        long lastMinute = 0;
+        for (int i = 0; i < THROUGHPUT_WINDOW_SECONDS; i++) {
+            if (now - secondOfSlot.get(i) < THROUGHPUT_WINDOW_SECONDS) {
+                lastMinute += deliveredPerSecond.get(i);
+            }
+        }
+        long deliveredTotal = delivered.get();
+        return OutboxStatsResponse.builder()
+                .backlog(backlog[0])
+                .oldestPendingAgeMs(oldest[0] != null ? Math.max(Instant.now().toEpochMilli() - oldest[0].toEpochMilli(), 0) : 0)
+                .lastDeliveryLagMs(deliveryLagMillis.get())
+                .deliveredTotal(deliveredTotal)
+                .retriedTotal(retried.get())
+                .failedTotal(failed.get())
+                .failedInTable(failedInTable != null ? failedInTable : 0)
+                .throughputPerSecond((double) lastMinute / THROUGHPUT_WINDOW_SECONDS)
+                .averageHandlingMs(deliveredTotal == 0 ? 0 : handlingNanos.get() / 1_000_000.0 / deliveredTotal)
+                .build();
+    }
+
+    /**
+     * Delete delivered events older than the retention, in chunks, and the handler marks of processed events
+     * as old. Such events are done and never redelivered.
+     */
+    @Scheduled(fixedDelayString = "${outbox.purge-interval-ms:3600000}")
+    public void purgeDelivered() {
+        Timestamp before = Timestamp.from(Instant.now().minusSeconds(TimeUnit.DAYS.toSeconds(retentionDays)));
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM outbox_event WHERE status = 'DONE' AND processed_at < ? LIMIT ?", before, batchSize * 10);
+        } while (deleted == batchSize * 10);
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM processed_outbox_event WHERE processed_at < ? LIMIT ?", before, batchSize * 10);
+        } while (deleted == batchSize * 10);
+    }
+
+    private List<OutboxEvent> claimBatch() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> {
+            Timestamp now = Timestamp.from(Instant.now());
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM outbox_event WHERE status IN ('PENDING', 'PROCESSING') AND available_at <= ? " +
+                            "ORDER BY available_at, id LIMIT ? FOR UPDATE SKIP LOCKED",
+                    Long.class, now, batchSize);
+            if (ids.isEmpty()) {
+                return List.<OutboxEvent>of();
+            }
+            List<Object> params = new ArrayList<>(ids.size() + 1);
+            params.add(Timestamp.from(Instant.now().plusSeconds(leaseSeconds)));
+            params.addAll(ids);
+            jdbcTemplate.update("UPDATE outbox_event SET status = 'PROCESSING', available_at = ? WHERE id IN ("
+                    + String.join(",", Collections.nCopies(ids.size(), "?")) + ")", params.toArray());
+            return outboxEventRepository.findAllById(ids);
+        });
+        return batch != null ? batch : List.of();
+    }
+
+    private void deliver(OutboxEvent event) {
+        OutboxHandler handler = handlers.get(event.getHandler());
+        if (handler == null) {
+            markFailed(event, event.getAttempts() + 1, "No handler named " + event.getHandler());
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                handler.handle(event);
+                jdbcTemplate.update("UPDATE outbox_event SET status = 'DONE', attempts = attempts + 1, processed_at = ?, last_error = NULL WHERE id = ?",
+                        Timestamp.from(Instant.now()), event.getId());
+            });
+        } catch (RuntimeException e) {
+            int attempts = event.getAttempts() + 1;
+            if (attempts >= maxAttempts) {
+                log.error("Outbox event {} ({} -> {}) failed after {} attempts", event.getId(), event.getEventType(), event.getHandler(), attempts, e);
+                markFailed(event, attempts, e.toString());
+            } else {
+                long backoff = Math.min(backoffInitialMs << Math.min(attempts - 1, 30), backoffMaxMs);
+                log.warn("Outbox event {} ({} -> {}) failed, retrying in {} ms: {}", event.getId(), event.getEventType(), event.getHandler(), backoff, e.toString());
+                jdbcTemplate.update("UPDATE outbox_event SET status = 'PENDING', attempts = ?, available_at = ?, last_error = ? WHERE id = ?",
+                        attempts, Timestamp.from(Instant.now().plusMillis(backoff)), truncate(e.toString()), event.getId());
+                retried.incrementAndGet();
+            }
+            return;
+        }
+        handlingNanos.addAndGet(System.nanoTime() - start);
+        delivered.incrementAndGet();
+        deliveryLagMillis.set(Math.max(Instant.now().toEpochMilli() - event.getCreatedAt().toEpochMilli(), 0));
+        countDelivery(Instant.now().getEpochSecond());
+    }
+
+    private void markFailed(OutboxEvent event, int attempts, String error) {
+        jdbcTemplate.update("UPDATE outbox_event SET status = 'FAILED', attempts = ?, last_error = ? WHERE id = ?",
+                attempts, truncate(error), event.getId());
+        failed.incrementAndGet();
+    }
+
+    /**
+     * Per-second delivery counts over the last minute, slots are reset when their second comes round again.
+     */
+    private void countDelivery(long second) {
+        int slot = (int) (second % THROUGHPUT_WINDOW_SECONDS);
+        long slotSecond = secondOfSlot.get(slot);
+        if (slotSecond != second && secondOfSlot.compareAndSet(slot, slotSecond, second)) {
+            deliveredPerSecond.set(slot, 0);
+        }
+        deliveredPerSecond.incrementAndGet(slot);
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= 500 ? error : error.substring(0, 500);
+    }
+}
@@ -0,0 +1,26 @@
+package com.swp391.bookverse.service.outbox;
+
+import com.swp391.bookverse.entity.OutboxEvent;
+import com.swp391.bookverse.enums.OutboxEventType;
+
+import java.util.Set;
+
+/**
+ * Consumer of outbox events. Every handler subscribed to an event type gets its own copy of each event,
+ * so a failing handler is retried without repeating the others.
+ */
+public interface OutboxHandler {
+    /**
+     * Stored with each event copy, must stay stable across releases.
+     */
+    String name();
+
+    Set<OutboxEventType> eventTypes();
+
+    /**
+     * Deliver one event. Runs in a transaction that also marks the event done, so database side effects
+     * happen exactly once; other side effects (mail) happen at least once.
+     * @throws RuntimeException to have the event retried with backoff
+     */
+    void handle(OutboxEvent event);
+}
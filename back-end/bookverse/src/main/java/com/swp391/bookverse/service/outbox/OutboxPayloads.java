@@ -0,0 +1,20 @@
+package com.swp391.bookverse.service.outbox;
+
+import java.util.List;
+
+/**
+ * JSON payloads of the outbox events.
+ */
+public final class OutboxPayloads {
+    private OutboxPayloads() {
+    }
+
+    public record Mail(String to, String subject, String text) {
+    }
+
+    public record OrderPlaced(Long orderId, String userId, String email, Double totalAmount, List<OrderLine> lines) {
+    }
+
+    public record OrderLine(Long bookId, String bookTitle, Integer quantity, Double price) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.swp391.bookverse.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp391.bookverse.entity.OutboxEvent;
+import com.swp391.bookverse.enums.OutboxEventType;
+import com.swp391.bookverse.enums.OutboxStatus;
+import com.swp391.bookverse.repository.OutboxEventRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes outbox events. Must be called inside the transaction of the business change, so the event
+ * exists if and only if the change is committed; the OutboxDispatcher delivers it afterwards.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OutboxService {
+    OutboxEventRepository outboxEventRepository;
+    ObjectMapper objectMapper;
+    // handlers are looked up lazily, they may depend on this service
+    ObjectProvider<OutboxHandler> handlers;
+
+    @NonFinal
+    volatile Map<OutboxEventType, List<String>> subscribers;
+
+    /**
+     * Record an event for every handler subscribed to its type.
+     * @param type
+     * @param aggregateId id of the entity the event is about
+     * @param payload serialized to JSON
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(OutboxEventType type, String aggregateId, Object payload) {
+        List<String> handlers = subscribers().getOrDefault(type, List.of());
+        if (handlers.isEmpty()) {
+            log.warn("No outbox handler for {}, event dropped", type);
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize outbox payload of " + type, e);
+        }
+        Instant now = Instant.now();
+        List<OutboxEvent> events = new ArrayList<>(handlers.size());
+        for (String handler : handlers) {
+            events.add(OutboxEvent.builder()
+                    .eventType(type)
+                    .handler(handler)
+                    .aggregateId(aggregateId)
+                    .payload(json)
+                    .status(OutboxStatus.PENDING)
+                    .attempts(0)
+                    .availableAt(now)
+                    .createdAt(now)
+                    .build());
+        }
+        outboxEventRepository.saveAll(events);
+    }
+
+    private Map<OutboxEventType, List<String>> subscribers() {
+        Map<OutboxEventType, List<String>> current = subscribers;
+        if (current == null) {
+            current = new EnumMap<>(OutboxEventType.class);
+            for (OutboxHandler handler : handlers) {
+                for (OutboxEventType type : handler.eventTypes()) {
+                    current.computeIfAbsent(type, t -> new ArrayList<>()).add(handler.name());
+                }
+            }
+            subscribers = current;
+        }
+        return current;
+    }
+
+    /**
+     * Read the payload of an event.
+     */
+    public <T> T payloadOf(OutboxEvent event, Class<T> type) {
+        try {
+            return objectMapper.readValue(event.getPayload(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupted payload in outbox event " + event.getId(), e);
+        }
+    }
+}
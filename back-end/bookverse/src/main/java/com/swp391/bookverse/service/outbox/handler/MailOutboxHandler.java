@@ -0,0 +1,42 @@
+package com.swp391.bookverse.service.outbox.handler;
+
+import com.swp391.bookverse.entity.OutboxEvent;
+import com.swp391.bookverse.enums.OutboxEventType;
+import com.swp391.bookverse.service.mail.MailQueue;
+import com.swp391.bookverse.service.outbox.OutboxHandler;
+import com.swp391.bookverse.service.outbox.OutboxPayloads;
+import com.swp391.bookverse.service.outbox.OutboxService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Moves MAIL events into the mail queue. Emails are queued with MailQueue directly now, this drains events
+ * published before that.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class MailOutboxHandler implements OutboxHandler {
+    MailQueue mailQueue;
+    OutboxService outboxService;
+
+    @Override
+    public String name() {
+        return "mail";
+    }
+
+    @Override
+    public Set<OutboxEventType> eventTypes() {
+        return Set.of(OutboxEventType.MAIL);
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        OutboxPayloads.Mail mail = outboxService.payloadOf(event, OutboxPayloads.Mail.class);
+        mailQueue.enqueue(mail.to(), mail.subject(), mail.text(), null);
+    }
+}
@@ -0,0 +1,52 @@
+package com.swp391.bookverse.service.outbox.handler;
+
+import com.swp391.bookverse.entity.OutboxEvent;
+import com.swp391.bookverse.enums.OutboxEventType;
+import com.swp391.bookverse.service.mail.MailQueue;
+import com.swp391.bookverse.service.outbox.OutboxHandler;
+import com.swp391.bookverse.service.outbox.OutboxPayloads;
+import com.swp391.bookverse.service.outbox.OutboxService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Queues the order confirmation email to the customer.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OrderNotificationHandler implements OutboxHandler {
+    MailQueue mailQueue;
+    OutboxService outboxService;
+
+    @Override
+    public String name() {
+        return "order-notification";
+    }
+
+    @Override
+    public Set<OutboxEventType> eventTypes() {
+        return Set.of(OutboxEventType.ORDER_PLACED);
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        OutboxPayloads.OrderPlaced order = outboxService.payloadOf(event, OutboxPayloads.OrderPlaced.class);
+        if (order.email() == null || order.email().isBlank()) {
+            return;
+        }
+        StringBuilder text = new StringBuilder("Thank you for your order #").append(order.orderId()).append(".\n\n");
+        for (OutboxPayloads.OrderLine line : order.lines()) {
+            text.append(line.quantity()).append(" x ").append(line.bookTitle())
+                    .append(" - ").append(line.price()).append('\n');
+        }
+        text.append("\nTotal: ").append(order.totalAmount()).append('\n');
+
+        // in the handler's transaction, queued once per delivered event
+        mailQueue.enqueue(order.email(), "Your Bookverse order #" + order.orderId(), text.toString(), "order:" + order.orderId());
+    }
+}
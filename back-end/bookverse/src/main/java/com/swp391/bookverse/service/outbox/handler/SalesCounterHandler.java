@@ -0,0 +1,54 @@
+package com.swp391.bookverse.service.outbox.handler;
+
+import com.swp391.bookverse.entity.OutboxEvent;
+import com.swp391.bookverse.enums.OutboxEventType;
+import com.swp391.bookverse.service.outbox.OutboxHandler;
+import com.swp391.bookverse.service.outbox.OutboxPayloads;
+import com.swp391.bookverse.service.outbox.OutboxService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps book.sold_count up to date from placed orders.
+ * Delivery is at-least-once, so the event is first marked in processed_outbox_event in the same transaction
+ * and a redelivered event finds its mark and changes nothing.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SalesCounterHandler implements OutboxHandler {
+    JdbcTemplate jdbcTemplate;
+    OutboxService outboxService;
+
+    @Override
+    public String name() {
+        return "sales-counter";
+    }
+
+    @Override
+    public Set<OutboxEventType> eventTypes() {
+        return Set.of(OutboxEventType.ORDER_PLACED);
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        int claimed = jdbcTemplate.update("INSERT IGNORE INTO processed_outbox_event (handler, event_id, processed_at) VALUES (?, ?, ?)",
+                name(), event.getId(), Timestamp.from(Instant.now()));
+        if (claimed == 0) {
+            return;
+        }
+        OutboxPayloads.OrderPlaced order = outboxService.payloadOf(event, OutboxPayloads.OrderPlaced.class);
+        List<Object[]> increments = order.lines().stream()
+                .map(line -> new Object[]{line.quantity(), line.bookId()})
+                .toList();
+        jdbcTemplate.batchUpdate("UPDATE book SET sold_count = COALESCE(sold_count, 0) + ? WHERE id = ?", increments);
+    }
+}
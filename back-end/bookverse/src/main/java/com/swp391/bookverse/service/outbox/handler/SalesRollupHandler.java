@@ -0,0 +1,37 @@
+package com.swp391.bookverse.service.outbox.handler;
+
+import com.swp391.bookverse.entity.OutboxEvent;
+import com.swp391.bookverse.enums.OutboxEventType;
+import com.swp391.bookverse.service.outbox.OutboxHandler;
+import com.swp391.bookverse.service.report.SalesRollupService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Adds placed orders to the sales rollups.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SalesRollupHandler implements OutboxHandler {
+    SalesRollupService salesRollupService;
+
+    @Override
+    public String name() {
+        return "sales-rollup";
+    }
+
+    @Override
+    public Set<OutboxEventType> eventTypes() {
+        return Set.of(OutboxEventType.ORDER_PLACED);
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        salesRollupService.applyOrder(Long.valueOf(event.getAggregateId()));
+    }
+}
@@ -0,0 +1,396 @@
+package com.swp391.bookverse.service.payment;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp391.bookverse.configuration.VNPayConfig;
+import com.swp391.bookverse.dto.response.ReconciliationResponse;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settles PENDING VNPay payments whose IPN callback never arrived, using VNPay's querydr API.
+ * <p>
+ * Stale payments are read page by page by id (keyset, index on status + id), each page is queried with at most
+ * `concurrency` requests in flight and a per-request timeout, and the answers are applied with two batched
+ * conditional updates, the same ones the IPN uses, so a callback arriving meanwhile is never overwritten.
+ * Repeated transport failures open a circuit breaker that stops the run instead of piling up timeouts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PaymentReconciler {
+    static final TypeReference<Map<String, Object>> JSON_MAP = new TypeReference<>() {
+    };
+
+    JdbcTemplate jdbcTemplate;
+    VNPaySigner vnPaySigner;
+    ObjectMapper objectMapper;
+
+    AtomicBoolean running = new AtomicBoolean();
+
+    @NonFinal
+    HttpClient httpClient;
+
+    // scheduled runs wait on VNPay here, never on the shared scheduler pool
+    @NonFinal
+    ExecutorService runner;
+
+    @NonFinal
+    CircuitBreaker circuitBreaker;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.enabled:true}")
+    boolean enabled;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.api-url:https://sandbox.vnpayment.vn/merchant_webapi/api/transaction}")
+    String apiUrl;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.ip-addr:127.0.0.1}")
+    String ipAddr;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.stale-minutes:20}")
+    long staleMinutes;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.max-age-hours:72}")
+    long maxAgeHours;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.page-size:200}")
+    int pageSize;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.concurrency:8}")
+    int concurrency;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.connect-timeout-ms:2000}")
+    long connectTimeoutMs;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.request-timeout-ms:5000}")
+    long requestTimeoutMs;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.breaker-failures:5}")
+    int breakerFailures;
+
+    @NonFinal
+    @Value("${vnpay.reconcile.breaker-open-ms:60000}")
+    long breakerOpenMs;
+
+    private enum Outcome {
+        PAID, FAILED, UNCHANGED, ERROR
+    }
+
+    private record Candidate(long id, String txnRef, long amount, long createdAt) {
+    }
+
+    private record Answer(Candidate candidate, Outcome outcome, String transactionNo, LocalDateTime paidAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        circuitBreaker = new CircuitBreaker(breakerFailures, breakerOpenMs);
+        runner = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("payment-reconciler").daemon().factory());
+    }
+
+    @PreDestroy
+    void stop() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * Start a run on the reconciler's own thread, unless one (scheduled or manual) is still going.
+     */
+    @Scheduled(fixedDelayString = "${vnpay.reconcile.interval-ms:300000}", initialDelayString = "${vnpay.reconcile.initial-delay-ms:60000}")
+    public void scheduledReconcile() {
+        if (!enabled || running.get()) {
+            return;
+        }
+        try {
+            runner.execute(() -> {
+                try {
+                    ReconciliationResponse result = reconcile();
+                    if (result.getScanned() > 0) {
+                        log.info("Payment reconciliation: {}", result);
+                    }
+                } catch (AppException e) {
+                    // a manual run is in progress
+                } catch (RuntimeException e) {
+                    log.error("Payment reconciliation failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    /**
+     * Query VNPay for every stale PENDING payment and settle the ones VNPay has an answer for.
+     * @return counts of the run
+     */
+    public ReconciliationResponse reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new AppException(ErrorCode.RECONCILIATION_IN_PROGRESS);
+        }
+        try {
+            return run();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ReconciliationResponse run() {
+        long start = System.nanoTime();
+        long staleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(staleMinutes);
+        Timestamp createdAfter = Timestamp.from(Instant.now().minusSeconds(TimeUnit.HOURS.toSeconds(maxAgeHours)));
+
+        int scanned = 0, queried = 0, paid = 0, failed = 0, unchanged = 0, errors = 0, skipped = 0;
+        long lastId = 0;
+        List<Candidate> page;
+        do {
+            page = nextPage(lastId, createdAfter);
+            if (page.isEmpty()) {
+                break;
+            }
+            lastId = page.get(page.size() - 1).id();
+            scanned += page.size();
+
+            List<Candidate> due = new ArrayList<>(page.size());
+            for (Candidate candidate : page) {
+                // the customer may still be on VNPay's page
+                if (candidate.createdAt() <= staleBefore) {
+                    due.add(candidate);
+                }
+            }
+            List<Answer> answers = queryAll(due);
+            skipped += due.size() - answers.size();
+
+            List<Object[]> paidArgs = new ArrayList<>();
+            List<Object[]> failedArgs = new ArrayList<>();
+            for (Answer answer : answers) {
+                switch (answer.outcome()) {
+                    case PAID -> paidArgs.add(new Object[]{Timestamp.valueOf(answer.paidAt()), answer.transactionNo(), answer.candidate().txnRef()});
+                    case FAILED -> failedArgs.add(new Object[]{answer.transactionNo(), answer.candidate().txnRef()});
+                    case UNCHANGED -> unchanged++;
+                    case ERROR -> errors++;
+                }
+                if (answer.outcome() != Outcome.ERROR) {
+                    queried++;
+                }
+            }
+            int paidNow = applied(paidArgs.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(PaymentService.MARK_PAID_SQL, paidArgs));
+            int failedNow = applied(failedArgs.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(PaymentService.MARK_FAILED_SQL, failedArgs));
+            paid += paidNow;
+            failed += failedNow;
+            // settled by an IPN between the query and the update
+            unchanged += paidArgs.size() - paidNow + failedArgs.size() - failedNow;
+        } while (page.size() == pageSize && circuitBreaker.getState() != CircuitBreaker.State.OPEN);
+
+        return ReconciliationResponse.builder()
+                .scanned(scanned)
+                .queried(queried)
+                .markedPaid(paid)
+                .markedFailed(failed)
+                .unchanged(unchanged)
+                .errors(errors)
+                .skipped(skipped)
+                .breakerState(circuitBreaker.getState().name())
+                .durationMs((System.nanoTime() - start) / 1_000_000)
+                .build();
+    }
+
+    private List<Candidate> nextPage(long lastId, Timestamp createdAfter) {
+        return jdbcTemplate.query("SELECT id, txn_ref, amount FROM payment " +
+                        "WHERE status = 'PENDING' AND id > ? AND txn_ref IS NOT NULL AND created_at >= ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> {
+                    String txnRef = rs.getString(2);
+                    return new Candidate(rs.getLong(1), txnRef, Math.round(rs.getDouble(3) * 100), createdAtOf(txnRef));
+                },
+                lastId, createdAfter, pageSize);
+    }
+
+    /**
+     * Query the candidates with bounded concurrency. Candidates not sent because the breaker is open get no answer.
+     */
+    private List<Answer> queryAll(List<Candidate> candidates) {
+        Semaphore inFlight = new Semaphore(Math.max(concurrency, 1));
+        List<CompletableFuture<Answer>> calls = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            inFlight.acquireUninterruptibly();
+            if (!circuitBreaker.tryAcquire()) {
+                inFlight.release();
+                continue;
+            }
+            calls.add(query(candidate).whenComplete((answer, error) -> inFlight.release()));
+        }
+        List<Answer> answers = new ArrayList<>(calls.size());
+        for (CompletableFuture<Answer> call : calls) {
+            answers.add(call.join());
+        }
+        return answers;
+    }
+
+    private CompletableFuture<Answer> query(Candidate candidate) {
+        String requestId = UUID.randomUUID().toString().replace("-", "");
+        String createDate = PaymentService.formatVNPayDate(System.currentTimeMillis());
+        String transactionDate = PaymentService.formatVNPayDate(candidate.createdAt());
+        String orderInfo = "Kiem tra giao dich:" + candidate.txnRef();
+
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("vnp_RequestId", requestId);
+        body.put("vnp_Version", VNPayConfig.vnp_Version);
+        body.put("vnp_Command", "querydr");
+        body.put("vnp_TmnCode", VNPayConfig.vnp_TmnCode);
+        body.put("vnp_TxnRef", candidate.txnRef());
+        body.put("vnp_OrderInfo", orderInfo);
+        body.put("vnp_TransactionDate", transactionDate);
+        body.put("vnp_CreateDate", createDate);
+        body.put("vnp_IpAddr", ipAddr);
+        body.put("vnp_SecureHash", vnPaySigner.sign(String.join("|", requestId, VNPayConfig.vnp_Version, "querydr",
+                VNPayConfig.vnp_TmnCode, candidate.txnRef(), transactionDate, createDate, ipAddr, orderInfo)));
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(apiUrl))
+                    .timeout(Duration.ofMillis(requestTimeoutMs))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            return CompletableFuture.completedFuture(new Answer(candidate, Outcome.ERROR, null, null));
+        }
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error != null || response.statusCode() >= 500) {
+                        circuitBreaker.onFailure();
+                        log.warn("VNPay querydr for {} failed: {}", candidate.txnRef(), error != null ? error.toString() : "HTTP " + response.statusCode());
+                        return new Answer(candidate, Outcome.ERROR, null, null);
+                    }
+                    circuitBreaker.onSuccess();
+                    return answerOf(candidate, response);
+                });
+    }
+
+    private Answer answerOf(Candidate candidate, HttpResponse<String> response) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        try {
+            objectMapper.readValue(response.body(), JSON_MAP)
+                    .forEach((name, value) -> fields.put(name, value != null ? value.toString() : ""));
+        } catch (Exception e) {
+            log.warn("Unreadable VNPay querydr response for {}", candidate.txnRef());
+            return new Answer(candidate, Outcome.ERROR, null, null);
+        }
+        String data = String.join("|", field(fields, "vnp_ResponseId"), field(fields, "vnp_Command"),
+                field(fields, "vnp_ResponseCode"), field(fields, "vnp_Message"), field(fields, "vnp_TmnCode"),
+                field(fields, "vnp_TxnRef"), field(fields, "vnp_Amount"), field(fields, "vnp_BankCode"),
+                field(fields, "vnp_PayDate"), field(fields, "vnp_TransactionNo"), field(fields, "vnp_TransactionType"),
+                field(fields, "vnp_TransactionStatus"), field(fields, "vnp_OrderInfo"), field(fields, "vnp_PromotionCode"),
+                field(fields, "vnp_PromotionAmount"));
+        if (!vnPaySigner.verify(data, fields.get(VNPaySigner.SECURE_HASH))) {
+            log.warn("Invalid signature on VNPay querydr response for {}", candidate.txnRef());
+            return new Answer(candidate, Outcome.ERROR, null, null);
+        }
+
+        String responseCode = field(fields, "vnp_ResponseCode");
+        if ("91".equals(responseCode)) {
+            // VNPay never saw the transaction, the customer left before paying
+            return new Answer(candidate, Outcome.UNCHANGED, null, null);
+        }
+        if (!"00".equals(responseCode) || !candidate.txnRef().equals(fields.get("vnp_TxnRef"))) {
+            log.warn("VNPay querydr for {} answered {} {}", candidate.txnRef(), responseCode, field(fields, "vnp_Message"));
+            return new Answer(candidate, Outcome.ERROR, null, null);
+        }
+
+        String transactionNo = field(fields, "vnp_TransactionNo");
+        return switch (field(fields, "vnp_TransactionStatus")) {
+            case "00" -> {
+                if (!String.valueOf(candidate.amount()).equals(fields.get("vnp_Amount"))) {
+                    log.warn("VNPay amount {} does not match payment {} of {}", fields.get("vnp_Amount"), candidate.txnRef(), candidate.amount());
+                    yield new Answer(candidate, Outcome.ERROR, null, null);
+                }
+                yield new Answer(candidate, Outcome.PAID, transactionNo, paidAtOf(field(fields, "vnp_PayDate")));
+            }
+            case "02" -> new Answer(candidate, Outcome.FAILED, transactionNo, null);
+            default -> new Answer(candidate, Outcome.UNCHANGED, null, null);
+        };
+    }
+
+    private static String field(Map<String, String> fields, String name) {
+        return fields.getOrDefault(name, "");
+    }
+
+    private static LocalDateTime paidAtOf(String payDate) {
+        try {
+            return LocalDateTime.ofInstant(Instant.from(PaymentService.VNPAY_DATE.parse(payDate)), ZoneId.systemDefault());
+        } catch (RuntimeException e) {
+            return LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Creation time encoded in txn refs made by {@link PaymentService#prepareTransaction(Long)}.
+     */
+    private static long createdAtOf(String txnRef) {
+        int separator = txnRef.indexOf('T');
+        try {
+            return separator < 0 ? Long.MAX_VALUE : Long.parseLong(txnRef.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static int applied(int[] counts) {
+        int applied = 0;
+        for (int count : counts) {
+            // the driver may report SUCCESS_NO_INFO (-2) for rewritten batches
+            if (count != 0) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+}
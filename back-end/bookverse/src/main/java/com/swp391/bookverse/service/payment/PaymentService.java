@@ -0,0 +1,142 @@
+package com.swp391.bookverse.service.payment;
+
+import com.swp391.bookverse.dto.response.VNPayIpnResponse;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import com.swp391.bookverse.service.auth.CurrentUserService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Links payments to VNPay transactions and applies VNPay's IPN callbacks.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PaymentService {
+    // moves a PENDING payment and its order to paid, shared by the IPN and the reconciliation job
+    static final String MARK_PAID_SQL = "UPDATE payment p JOIN `order` o ON o.id = p.order_id " +
+            "SET p.status = 'SUCCESS', p.paid_at = ?, p.transaction_no = ?, o.status = 'PROCESSING' " +
+            "WHERE p.txn_ref = ? AND p.status = 'PENDING'";
+    // a failed or cancelled attempt leaves the order PENDING, so the customer can pay it with a new attempt
+    static final String MARK_FAILED_SQL = "UPDATE payment SET status = 'FAILED', transaction_no = ? WHERE txn_ref = ? AND status = 'PENDING'";
+
+    // VNPay dates are Vietnam local time (GMT+7)
+    public static final ZoneId VNPAY_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    static final DateTimeFormatter VNPAY_DATE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(VNPAY_ZONE);
+
+    JdbcTemplate jdbcTemplate;
+    VNPaySigner vnPaySigner;
+    CurrentUserService currentUserService;
+
+    /**
+     * vnp_TxnRef, vnp_Amount (VND x 100) and creation time (epoch millis, also encoded in the txnRef)
+     * of a payment about to be sent to VNPay.
+     */
+    public record PendingTransaction(String txnRef, long amount, long createdAt) {
+    }
+
+    /**
+     * Attach a new vnp_TxnRef to the payment of one of the current user's orders, which must still be PENDING.
+     * A payment whose last attempt FAILED is reopened as PENDING with the new reference; callbacks for the old
+     * reference no longer match it.
+     * @param orderId
+     * @return PendingTransaction
+     */
+    @Transactional
+    public PendingTransaction prepareTransaction(Long orderId) {
+        List<Object[]> payments = jdbcTemplate.query("SELECT p.id, p.amount FROM payment p " +
+                        "JOIN `order` o ON o.id = p.order_id WHERE p.order_id = ? AND o.user_id = ?",
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getDouble(2)},
+                orderId, currentUserService.getId());
+        if (payments.isEmpty()) {
+            throw new AppException(ErrorCode.PAYMENT_NOT_FOUND);
+        }
+        long paymentId = (long) payments.get(0)[0];
+        double amount = (double) payments.get(0)[1];
+
+        // a new reference per attempt, VNPay rejects reused ones
+        long createdAt = System.currentTimeMillis();
+        String txnRef = paymentId + "T" + createdAt;
+        if (jdbcTemplate.update("UPDATE payment p JOIN `order` o ON o.id = p.order_id " +
+                        "SET p.txn_ref = ?, p.status = 'PENDING', p.transaction_no = NULL " +
+                        "WHERE p.id = ? AND p.status IN ('PENDING', 'FAILED') AND o.status = 'PENDING'", txnRef, paymentId) == 0) {
+            throw new AppException(ErrorCode.PAYMENT_NOT_PENDING);
+        }
+        return new PendingTransaction(txnRef, Math.round(amount * 100), createdAt);
+    }
+
+    /**
+     * Check the signature of the parameters VNPay sends to the return URL.
+     */
+    public boolean verifyReturn(Map<String, String> params) {
+        return vnPaySigner.verify(params);
+    }
+
+    /**
+     * Apply a VNPay IPN callback.
+     * <p>
+     * One indexed read (payment by its unique txn_ref) and one conditional update of the payment and its order,
+     * guarded by payment.status = 'PENDING', so a replayed or concurrent duplicate callback changes nothing and
+     * gets "already confirmed". No outbound call is made, which keeps the response well within VNPay's timeout.
+     * @param params query parameters of the callback
+     * @return response code and message in VNPay's format
+     */
+    public VNPayIpnResponse handleIpn(Map<String, String> params) {
+        try {
+            if (!vnPaySigner.verify(params)) {
+                return ipnResponse("97", "Invalid Checksum");
+            }
+            String txnRef = params.get("vnp_TxnRef");
+            List<Double> amounts = jdbcTemplate.queryForList("SELECT amount FROM payment WHERE txn_ref = ?", Double.class, txnRef);
+            if (amounts.isEmpty()) {
+                return ipnResponse("01", "Order not found");
+            }
+            if (amounts.get(0) == null || Math.round(amounts.get(0) * 100) != Long.parseLong(params.get("vnp_Amount"))) {
+                return ipnResponse("04", "Invalid amount");
+            }
+
+            boolean success = "00".equals(params.get("vnp_ResponseCode"))
+                    && "00".equals(params.getOrDefault("vnp_TransactionStatus", "00"));
+            String transactionNo = params.get("vnp_TransactionNo");
+            int updated = success
+                    ? jdbcTemplate.update(MARK_PAID_SQL, Timestamp.valueOf(LocalDateTime.now()), transactionNo, txnRef)
+                    : jdbcTemplate.update(MARK_FAILED_SQL, transactionNo, txnRef);
+            if (updated == 0) {
+                return ipnResponse("02", "Order already confirmed");
+            }
+            return ipnResponse("00", "Confirm Success");
+        } catch (RuntimeException e) {
+            log.error("VNPay IPN failed", e);
+            return ipnResponse("99", "Unknown error");
+        }
+    }
+
+    /**
+     * yyyyMMddHHmmss in VNPay's zone, the format of vnp_CreateDate and vnp_TransactionDate.
+     */
+    public static String formatVNPayDate(long epochMillis) {
+        return VNPAY_DATE.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    private static VNPayIpnResponse ipnResponse(String code, String message) {
+        return VNPayIpnResponse.builder()
+                .rspCode(code)
+                .message(message)
+                .build();
+    }
+}
@@ -0,0 +1,158 @@
+package com.swp391.bookverse.service.payment;
+
+import com.swp391.bookverse.configuration.VNPayConfig;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * HMAC-SHA512 signing of VNPay requests and verification of VNPay callbacks (return URL, IPN).
+ * <p>
+ * The canonical data VNPay signs is the query string of the non-empty vnp_ fields sorted by name, values
+ * URL-encoded (US-ASCII, space as '+'), so the signed data and the query sent to VNPay are built in one pass.
+ * Mac instances are not thread-safe and costly to create, each thread keeps its own initialized one.
+ */
+@Component
+public class VNPaySigner {
+    public static final String SECURE_HASH = "vnp_SecureHash";
+    public static final String SECURE_HASH_TYPE = "vnp_SecureHashType";
+
+    static final String ALGORITHM = "HmacSHA512";
+    static final char[] HEX = "0123456789abcdef".toCharArray();
+    static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+
+    private final ThreadLocal<Mac> mac;
+
+    public VNPaySigner() {
+        this(VNPayConfig.secretKey);
+    }
+
+    public VNPaySigner(String secretKey) {
+        SecretKeySpec key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        // fail at startup rather than on the first payment
+        newMac(key);
+        this.mac = ThreadLocal.withInitial(() -> newMac(key));
+    }
+
+    /**
+     * Query string for VNPay with its signature appended.
+     * @param params vnp_ fields, empty values are skipped
+     * @return query string, without the leading '?'
+     */
+    public String buildSignedQuery(Map<String, String> params) {
+        String query = canonicalQuery(params);
+        return query + '&' + SECURE_HASH + '=' + sign(query);
+    }
+
+    /**
+     * Check the signature of a VNPay callback.
+     * @param params all query parameters of the callback, including vnp_SecureHash
+     * @return true when vnp_SecureHash matches the other fields
+     */
+    public boolean verify(Map<String, String> params) {
+        return verify(canonicalQuery(params), params.get(SECURE_HASH));
+    }
+
+    /**
+     * Check a signature over already assembled data, e.g. the '|' joined fields of a querydr response.
+     * @param data signed data
+     * @param received hex HMAC-SHA512 sent with it
+     * @return true when they match
+     */
+    public boolean verify(String data, String received) {
+        if (received == null || received.length() != 128) {
+            return false;
+        }
+        byte[] expected = hmac(data);
+        byte[] actual = new byte[expected.length];
+        for (int i = 0; i < actual.length; i++) {
+            int high = Character.digit(received.charAt(2 * i), 16);
+            int low = Character.digit(received.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            actual[i] = (byte) ((high << 4) | low);
+        }
+        // constant time, does not leak how many leading bytes matched
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * Lowercase hex HMAC-SHA512 of the data.
+     */
+    public String sign(String data) {
+        byte[] hash = hmac(data);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Sorted name=encodedValue pairs of the non-empty fields, the signature fields excluded.
+     */
+    String canonicalQuery(Map<String, String> params) {
+        Map<String, String> sorted = params instanceof TreeMap<String, String> tree && tree.comparator() == null
+                ? params : new TreeMap<>(params);
+        StringBuilder sb = new StringBuilder(sorted.size() * 32);
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            String name = entry.getKey();
+            String value = entry.getValue();
+            if (value == null || value.isEmpty() || SECURE_HASH.equals(name) || SECURE_HASH_TYPE.equals(name)) {
+                continue;
+            }
+            if (!sb.isEmpty()) {
+                sb.append('&');
+            }
+            encode(name, sb);
+            sb.append('=');
+            encode(value, sb);
+        }
+        return sb.toString();
+    }
+
+    private byte[] hmac(String data) {
+        return mac.get().doFinal(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Same output as URLEncoder.encode(value, US_ASCII), written straight into the builder.
+     */
+    static void encode(String value, StringBuilder sb) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                sb.append(c);
+            } else if (c == ' ') {
+                sb.append('+');
+            } else if (c < 0x80) {
+                sb.append('%').append(HEX_UPPER[c >> 4]).append(HEX_UPPER[c & 0xF]);
+            } else {
+                // not representable in US-ASCII, URLEncoder writes '?' (one per surrogate pair)
+                if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                }
+                sb.append("%3F");
+            }
+        }
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.swp391.bookverse.service.payment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp391.bookverse.configuration.VNPayConfig;
+import com.swp391.bookverse.dto.response.VNPayBurstResponse;
+import com.swp391.bookverse.dto.response.VNPayIpnResponse;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for VNPay, for integration and load tests without the sandbox. Only loaded when
+ * vnpay.stub.enabled is true.
+ * <ul>
+ *     <li>Sends bursts of correctly signed IPN callbacks (duplicates of the same transaction, as VNPay does when
+ *     it retries) to our own IPN URL.</li>
+ *     <li>Answers querydr requests of the reconciliation job with a configurable transaction status, latency and
+ *     error rate (point vnpay.reconcile.api-url at it).</li>
+ * </ul>
+ */
+@Service
+@ConditionalOnProperty(name = "vnpay.stub.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VNPayStub {
+    VNPaySigner vnPaySigner;
+    JdbcTemplate jdbcTemplate;
+    ObjectMapper objectMapper;
+
+    HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @NonFinal
+    @Value("${vnpay.stub.query-status:00}")
+    String queryStatus;
+
+    @NonFinal
+    @Value("${vnpay.stub.query-latency-ms:50}")
+    long queryLatencyMs;
+
+    // share of querydr calls answered with HTTP 503, to exercise the circuit breaker
+    @NonFinal
+    @Value("${vnpay.stub.query-error-rate:0}")
+    double queryErrorRate;
+
+    @NonFinal
+    @Value("${vnpay.stub.ipn-url:http://localhost:8080/bookverse/api/payments/vnpay-ipn}")
+    String ipnUrl;
+
+    /**
+     * Fire IPN callbacks for a transaction.
+     * @param txnRef payment.txn_ref of the transaction
+     * @param count number of callbacks
+     * @param concurrency callbacks in flight at once
+     * @param responseCode vnp_ResponseCode to report ("00" = paid)
+     * @return response code counts and latencies
+     */
+    public VNPayBurstResponse burst(String txnRef, int count, int concurrency, String responseCode) {
+        List<Double> amounts = jdbcTemplate.queryForList("SELECT amount FROM payment WHERE txn_ref = ?", Double.class, txnRef);
+        if (amounts.isEmpty()) {
+            throw new AppException(ErrorCode.PAYMENT_NOT_FOUND);
+        }
+        String transactionNo = String.valueOf(10_000_000 + ThreadLocalRandom.current().nextInt(90_000_000));
+        Map<String, String> params = new TreeMap<>();
+        params.put("vnp_Amount", String.valueOf(Math.round(amounts.get(0) * 100)));
+        params.put("vnp_BankCode", "NCB");
+        params.put("vnp_BankTranNo", "VNP" + transactionNo);
+        params.put("vnp_CardType", "ATM");
+        params.put("vnp_OrderInfo", "Thanh toan don hang:" + txnRef);
+        params.put("vnp_PayDate", PaymentService.formatVNPayDate(System.currentTimeMillis()));
+        params.put("vnp_ResponseCode", responseCode);
+        params.put("vnp_TmnCode", VNPayConfig.vnp_TmnCode);
+        params.put("vnp_TransactionNo", transactionNo);
+        params.put("vnp_TransactionStatus", responseCode);
+        params.put("vnp_TxnRef", txnRef);
+        URI uri = URI.create(ipnUrl + "?" + vnPaySigner.buildSignedQuery(params));
+
+        Semaphore inFlight = new Semaphore(Math.max(concurrency, 1));
+        Map<String, AtomicLong> codes = new ConcurrentHashMap<>();
+        long[] latencies = new long[count];
+        List<CompletableFuture<Void>> calls = new ArrayList<>(count);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            inFlight.acquireUninterruptibly();
+            int index = i;
+            long sentAt = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(10)).GET().build();
+            calls.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .handle((response, error) -> {
+                        latencies[index] = (System.nanoTime() - sentAt) / 1_000_000;
+                        codes.computeIfAbsent(codeOf(response, error), c -> new AtomicLong()).incrementAndGet();
+                        inFlight.release();
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+        long totalMs = (System.nanoTime() - start) / 1_000_000;
+
+        Arrays.sort(latencies);
+        Map<String, Long> responseCodes = new TreeMap<>();
+        codes.forEach((code, n) -> responseCodes.put(code, n.get()));
+        return VNPayBurstResponse.builder()
+                .sent(count)
+                .responseCodes(responseCodes)
+                .totalMs(totalMs)
+                .p50Ms(count == 0 ? 0 : latencies[(count - 1) / 2])
+                .p99Ms(count == 0 ? 0 : latencies[(int) Math.ceil(count * 0.99) - 1])
+                .maxMs(count == 0 ? 0 : latencies[count - 1])
+                .build();
+    }
+
+    /**
+     * Answer a querydr request the way VNPay does.
+     * @param request JSON body of the request
+     * @return signed response fields, or null to simulate an outage (HTTP 503)
+     */
+    public Map<String, String> queryTransaction(Map<String, String> request) {
+        if (queryLatencyMs > 0) {
+            try {
+                Thread.sleep(queryLatencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ThreadLocalRandom.current().nextDouble() < queryErrorRate) {
+            return null;
+        }
+        String txnRef = request.getOrDefault("vnp_TxnRef", "");
+        String signedData = String.join("|", request.get("vnp_RequestId"), request.get("vnp_Version"), request.get("vnp_Command"),
+                request.get("vnp_TmnCode"), txnRef, request.get("vnp_TransactionDate"), request.get("vnp_CreateDate"),
+                request.get("vnp_IpAddr"), request.get("vnp_OrderInfo"));
+
+        Map<String, String> response = new LinkedHashMap<>();
+        response.put("vnp_ResponseId", UUID.randomUUID().toString().replace("-", ""));
+        response.put("vnp_Command", "querydr");
+        response.put("vnp_TmnCode", VNPayConfig.vnp_TmnCode);
+        response.put("vnp_TxnRef", txnRef);
+        List<Double> amounts = jdbcTemplate.queryForList("SELECT amount FROM payment WHERE txn_ref = ?", Double.class, txnRef);
+        if (!vnPaySigner.verify(signedData, request.get(VNPaySigner.SECURE_HASH))) {
+            response.put("vnp_ResponseCode", "97");
+            response.put("vnp_Message", "Invalid Checksum");
+        } else if (amounts.isEmpty()) {
+            response.put("vnp_ResponseCode", "91");
+            response.put("vnp_Message", "Not found");
+        } else {
+            response.put("vnp_ResponseCode", "00");
+            response.put("vnp_Message", "QueryDR Success");
+            response.put("vnp_Amount", String.valueOf(Math.round(amounts.get(0) * 100)));
+            response.put("vnp_BankCode", "NCB");
+            response.put("vnp_PayDate", PaymentService.formatVNPayDate(System.currentTimeMillis()));
+            response.put("vnp_TransactionNo", String.valueOf(10_000_000 + ThreadLocalRandom.current().nextInt(90_000_000)));
+            response.put("vnp_TransactionType", "01");
+            response.put("vnp_TransactionStatus", queryStatus);
+            response.put("vnp_OrderInfo", request.getOrDefault("vnp_OrderInfo", ""));
+        }
+        response.put(VNPaySigner.SECURE_HASH, vnPaySigner.sign(String.join("|", field(response, "vnp_ResponseId"),
+                field(response, "vnp_Command"), field(response, "vnp_ResponseCode"), field(response, "vnp_Message"),
+                field(response, "vnp_TmnCode"), field(response, "vnp_TxnRef"), field(response, "vnp_Amount"),
+                field(response, "vnp_BankCode"), field(response, "vnp_PayDate"), field(response, "vnp_TransactionNo"),
+                field(response, "vnp_TransactionType"), field(response, "vnp_TransactionStatus"),
+                field(response, "vnp_OrderInfo"), field(response, "vnp_PromotionCode"), field(response, "vnp_PromotionAmount"))));
+        return response;
+    }
+
+    private static String field(Map<String, String> fields, String name) {
+        return fields.getOrDefault(name, "");
+    }
+
+    private String codeOf(HttpResponse<String> response, Throwable error) {
+        if (error != null || response.statusCode() != 200) {
+            return "ERROR";
+        }
+        try {
+            return objectMapper.readValue(response.body(), VNPayIpnResponse.class).getRspCode();
+        } catch (Exception e) {
+            return "ERROR";
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.swp391.bookverse.service.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Rate limit of a controller method, enforced by RateLimitFilter before Spring Security runs.
+ * Allows `capacity` calls per key in a burst, refilled at `capacity` per `periodSeconds`.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimits.class)
+public @interface RateLimit {
+    // bucket namespace, methods sharing a name share their budget
+    String name();
+
+    RateLimitKey key() default RateLimitKey.IP;
+
+    // JSON field for BODY_FIELD keys
+    String field() default "";
+
+    int capacity();
+
+    long periodSeconds();
+}
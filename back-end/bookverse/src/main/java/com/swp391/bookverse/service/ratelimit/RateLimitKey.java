@@ -0,0 +1,13 @@
+package com.swp391.bookverse.service.ratelimit;
+
+/**
+ * What a rate limit is counted per.
+ */
+public enum RateLimitKey {
+    // client IP address
+    IP,
+    // bearer token of the request (falls back to IP when there is none)
+    USER,
+    // a top-level field of the JSON request body, e.g. email (falls back to IP when missing)
+    BODY_FIELD
+}
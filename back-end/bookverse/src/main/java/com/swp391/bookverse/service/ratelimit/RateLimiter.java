@@ -0,0 +1,130 @@
+package com.swp391.bookverse.service.ratelimit;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory token buckets keyed by arbitrary strings ("otp-send:alice@example.com", "cart-write:10.0.0.7", ...).
+ * <p>
+ * Keys are spread over independently locked stripes, so concurrent callers rarely contend. Each stripe is an
+ * LRU map bounded to max-keys / stripes entries, and buckets that have refilled completely are swept out,
+ * since forgetting a full bucket changes nothing. A check is a hash, a short lock and a few arithmetic ops.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RateLimiter {
+    @Value("${rate-limit.stripes:64}")
+    int stripeCount;
+
+    @Value("${rate-limit.max-keys:200000}")
+    int maxKeys;
+
+    Stripe[] stripes;
+
+    @PostConstruct
+    void init() {
+        int count = Integer.highestOneBit(Math.max(stripeCount, 1));
+        int perStripe = Math.max(maxKeys / count, 16);
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Take one token from the bucket of a key.
+     * @param key bucket key, usually "rule-name:client-key"
+     * @param capacity burst size, also the number of tokens refilled per period
+     * @param periodSeconds time to refill an empty bucket
+     * @return 0 when admitted, otherwise milliseconds until a token is available
+     */
+    public long tryAcquire(String key, int capacity, long periodSeconds) {
+        long now = System.nanoTime();
+        Stripe stripe = stripes[spread(key.hashCode()) & (stripes.length - 1)];
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, periodSeconds * 1_000_000_000d / capacity, now);
+                stripe.put(key, bucket);
+            }
+            return bucket.tryAcquire(now);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Bucket> buckets = stripe.values().iterator();
+                while (buckets.hasNext()) {
+                    if (buckets.next().isFull(now)) {
+                        buckets.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+        private final int maxEntries;
+
+        Stripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    /**
+     * Guarded by its stripe's lock.
+     */
+    private static final class Bucket {
+        final int capacity;
+        final double nanosPerToken;
+        double tokens;
+        long lastRefill;
+
+        Bucket(int capacity, double nanosPerToken, long now) {
+            this.capacity = capacity;
+            this.nanosPerToken = nanosPerToken;
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        long tryAcquire(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return Math.max((long) Math.ceil((1 - tokens) * nanosPerToken / 1_000_000), 1);
+        }
+
+        boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) / nanosPerToken);
+            lastRefill = now;
+        }
+    }
+}
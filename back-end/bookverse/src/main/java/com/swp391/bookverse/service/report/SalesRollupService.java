@@ -0,0 +1,209 @@
+package com.swp391.bookverse.service.report;
+
+import com.swp391.bookverse.dto.response.SalesCategoryResponse;
+import com.swp391.bookverse.dto.response.SalesDailyResponse;
+import com.swp391.bookverse.dto.response.SalesPaymentMethodResponse;
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pre-aggregated sales for the admin dashboard: revenue, units and orders by day x sub-category x publisher
+ * (sales_rollup_category) and by day x payment method (sales_rollup_payment).
+ * <p>
+ * Placed orders are added incrementally by the "sales-rollup" outbox handler. A compacting job recomputes the
+ * most recent days from order/order_item, which drops cancelled and returned orders and repairs any drift.
+ * Both paths first claim the order in sales_rollup_order, so an order is never counted twice even when the
+ * handler and the job run at the same time. Reports only read the rollups, their cost depends on the number of
+ * days shown, not on the size of the order history.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SalesRollupService {
+    static final int MAX_REPORT_DAYS = 366;
+    static final String COUNTED = "o.status NOT IN ('CANCELLED', 'RETURNED')";
+
+    static final String CATEGORY_SELECT = "SELECT DATE(o.created_at), COALESCE(b.category_id, 0), COALESCE(b.publisher_id, 0), " +
+            "SUM(oi.price * oi.quantity), SUM(oi.quantity), COUNT(DISTINCT o.id) " +
+            "FROM `order` o JOIN order_item oi ON oi.order_id = o.id JOIN book b ON b.id = oi.book_id ";
+    static final String PAYMENT_SELECT = "SELECT DATE(o.created_at), COALESCE(p.method, 'COD'), SUM(o.total_amount), COUNT(*) " +
+            "FROM `order` o LEFT JOIN payment p ON p.order_id = o.id ";
+
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+
+    @NonFinal
+    @Value("${reports.rollup.rebuild-days:2}")
+    int rebuildDays;
+
+    @NonFinal
+    @Value("${reports.rollup.marker-retention-days:30}")
+    int markerRetentionDays;
+
+    /**
+     * Add a placed order to the rollups, in the caller's transaction. Does nothing if it is already counted.
+     * @param orderId
+     */
+    public void applyOrder(Long orderId) {
+        int claimed = jdbcTemplate.update("INSERT IGNORE INTO sales_rollup_order (order_id, day) " +
+                "SELECT o.id, DATE(o.created_at) FROM `order` o WHERE o.id = ? AND " + COUNTED, orderId);
+        if (claimed == 0) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO sales_rollup_category (day, sub_category_id, publisher_id, revenue, units, order_count) " +
+                CATEGORY_SELECT + "WHERE o.id = ? GROUP BY 1, 2, 3 " +
+                "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), units = units + VALUES(units), " +
+                "order_count = order_count + VALUES(order_count)", orderId);
+        jdbcTemplate.update("INSERT INTO sales_rollup_payment (day, method, revenue, order_count) " +
+                PAYMENT_SELECT + "WHERE o.id = ? GROUP BY 1, 2 " +
+                "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), order_count = order_count + VALUES(order_count)", orderId);
+    }
+
+    /**
+     * Recompute the most recent days and forget old claims.
+     */
+    @Scheduled(fixedDelayString = "${reports.rollup.compact-interval-ms:3600000}", initialDelayString = "${reports.rollup.initial-delay-ms:120000}")
+    public void compact() {
+        LocalDate today = LocalDate.now();
+        for (LocalDate day = today.minusDays(rebuildDays - 1L); !day.isAfter(today); day = day.plusDays(1)) {
+            rebuildDay(day);
+        }
+        Date before = Date.valueOf(today.minusDays(markerRetentionDays));
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM sales_rollup_order WHERE day < ? LIMIT 1000", before);
+        } while (deleted == 1000);
+    }
+
+    /**
+     * Recompute a range of days from the orders, one transaction per day, e.g. to backfill history (admin only).
+     * @param from first day
+     * @param to last day, inclusive
+     * @return number of days rebuilt
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    public int rebuild(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            rebuildDay(day);
+        }
+        return (int) ChronoUnit.DAYS.between(from, to) + 1;
+    }
+
+    /**
+     * Revenue, units and orders per day.
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN') or hasAuthority('SCOPE_STAFF')")
+    public List<SalesDailyResponse> getDailySales(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        Map<LocalDate, SalesDailyResponse> days = new TreeMap<>();
+        jdbcTemplate.query("SELECT day, SUM(revenue), SUM(order_count) FROM sales_rollup_payment " +
+                        "WHERE day BETWEEN ? AND ? GROUP BY day",
+                rs -> {
+                    LocalDate day = rs.getDate(1).toLocalDate();
+                    days.put(day, SalesDailyResponse.builder()
+                            .day(day)
+                            .revenue(rs.getDouble(2))
+                            .orders(rs.getLong(3))
+                            .build());
+                },
+                Date.valueOf(from), Date.valueOf(to));
+        jdbcTemplate.query("SELECT day, SUM(units) FROM sales_rollup_category WHERE day BETWEEN ? AND ? GROUP BY day",
+                rs -> {
+                    SalesDailyResponse daily = days.get(rs.getDate(1).toLocalDate());
+                    if (daily != null) {
+                        daily.setUnits(rs.getLong(2));
+                    }
+                },
+                Date.valueOf(from), Date.valueOf(to));
+        return List.copyOf(days.values());
+    }
+
+    /**
+     * Sales per day, sub-category and publisher.
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN') or hasAuthority('SCOPE_STAFF')")
+    public List<SalesCategoryResponse> getSalesByCategory(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return jdbcTemplate.query("SELECT r.day, r.sub_category_id, sc.name, r.publisher_id, p.name, r.revenue, r.units, r.order_count " +
+                        "FROM sales_rollup_category r LEFT JOIN sub_category sc ON sc.id = r.sub_category_id " +
+                        "LEFT JOIN publisher p ON p.id = r.publisher_id " +
+                        "WHERE r.day BETWEEN ? AND ? ORDER BY r.day, r.revenue DESC",
+                (rs, rowNum) -> SalesCategoryResponse.builder()
+                        .day(rs.getDate(1).toLocalDate())
+                        .subCategoryId(rs.getLong(2))
+                        .subCategoryName(rs.getString(3))
+                        .publisherId(rs.getLong(4))
+                        .publisherName(rs.getString(5))
+                        .revenue(rs.getDouble(6))
+                        .units(rs.getLong(7))
+                        .orders(rs.getLong(8))
+                        .build(),
+                Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Sales per day and payment method.
+     */
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN') or hasAuthority('SCOPE_STAFF')")
+    public List<SalesPaymentMethodResponse> getSalesByPaymentMethod(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return jdbcTemplate.query("SELECT day, method, revenue, order_count FROM sales_rollup_payment " +
+                        "WHERE day BETWEEN ? AND ? ORDER BY day, method",
+                (rs, rowNum) -> SalesPaymentMethodResponse.builder()
+                        .day(rs.getDate(1).toLocalDate())
+                        .method(rs.getString(2))
+                        .revenue(rs.getDouble(3))
+                        .orders(rs.getLong(4))
+                        .build(),
+                Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Replace the rollup rows of a day with totals computed from its counted orders.
+     * The day's orders are claimed first (same lock order as applyOrder), then only claimed orders are summed,
+     * so an order claimed by a concurrent handler after this point is added by that handler alone.
+     */
+    private void rebuildDay(LocalDate day) {
+        Timestamp start = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        Date date = Date.valueOf(day);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT IGNORE INTO sales_rollup_order (order_id, day) " +
+                    "SELECT o.id, DATE(o.created_at) FROM `order` o WHERE o.created_at >= ? AND o.created_at < ? AND " + COUNTED, start, end);
+            jdbcTemplate.update("DELETE FROM sales_rollup_category WHERE day = ?", date);
+            jdbcTemplate.update("DELETE FROM sales_rollup_payment WHERE day = ?", date);
+            String claimed = "JOIN sales_rollup_order m ON m.order_id = o.id WHERE m.day = ? AND " + COUNTED;
+            jdbcTemplate.update("INSERT INTO sales_rollup_category (day, sub_category_id, publisher_id, revenue, units, order_count) " +
+                    CATEGORY_SELECT + claimed + " GROUP BY 1, 2, 3", date);
+            jdbcTemplate.update("INSERT INTO sales_rollup_payment (day, method, revenue, order_count) " +
+                    PAYMENT_SELECT + claimed + " GROUP BY 1, 2", date);
+        });
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to) || ChronoUnit.DAYS.between(from, to) >= MAX_REPORT_DAYS) {
+            throw new AppException(ErrorCode.REPORT_RANGE_INVALID);
+        }
+    }
+}
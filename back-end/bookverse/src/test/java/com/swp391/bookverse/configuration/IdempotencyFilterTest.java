@@ -0,0 +1,239 @@
+package com.swp391.bookverse.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp391.bookverse.entity.IdempotencyRecord;
+import com.swp391.bookverse.enums.IdempotencyStatus;
+import com.swp391.bookverse.repository.IdempotencyRecordRepository;
+import com.swp391.bookverse.service.idempotency.IdempotencyStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class IdempotencyFilterTest {
+    static final String CHECKOUT = "/api/orders/checkout";
+
+    // idempotency_key rows, read and written by the mocked repository like the native queries do
+    Map<String, IdempotencyRecord> table = new ConcurrentHashMap<>();
+    IdempotencyStore store;
+    CheckoutController controller = new CheckoutController();
+    MockMvc mockMvc;
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @RestController
+    static class CheckoutController {
+        final AtomicInteger executions = new AtomicInteger();
+        volatile HttpStatus status = HttpStatus.OK;
+        volatile CountDownLatch release;
+
+        @PostMapping(CHECKOUT)
+        ResponseEntity<String> checkout() throws InterruptedException {
+            int execution = executions.incrementAndGet();
+            if (release != null) {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return ResponseEntity.status(status).body("{\"order\":" + execution + "}");
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore(repository());
+        ReflectionTestUtils.setField(store, "ttlHours", 24L);
+        ReflectionTestUtils.setField(store, "lockTimeoutSeconds", 60L);
+        ReflectionTestUtils.setField(store, "waitTimeoutMs", 300L);
+        ReflectionTestUtils.setField(store, "maxEntries", 100);
+        ReflectionTestUtils.setField(store, "purgeBatchSize", 500);
+
+        IdempotencyFilter filter = new IdempotencyFilter(store, new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "paths", List.of(CHECKOUT));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).addFilters(filter).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void repeatedKeyReplaysStoredResponse() throws Exception {
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER))
+                .andExpect(content().string("{\"order\":1}"));
+
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(content().string("{\"order\":1}"));
+
+        assertThat(controller.executions).hasValue(1);
+        assertThat(table.values()).singleElement()
+                .satisfies(record -> assertThat(record.getStatus()).isEqualTo(IdempotencyStatus.COMPLETED));
+    }
+
+    @Test
+    void replayAfterRestartReadsTheTable() throws Exception {
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isOk());
+        // a new instance has nothing in memory
+        setUp();
+
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(content().string("{\"order\":1}"));
+        assertThat(controller.executions).hasValue(1);
+    }
+
+    @Test
+    void requestsWithoutKeyOrOnOtherPathsAreNotDeduplicated() throws Exception {
+        mockMvc.perform(post(CHECKOUT)).andExpect(status().isOk());
+        mockMvc.perform(post(CHECKOUT)).andExpect(status().isOk());
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1")).andExpect(status().isOk());
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k2")).andExpect(status().isOk());
+
+        assertThat(controller.executions).hasValue(4);
+    }
+
+    @Test
+    void duplicateWhileFirstIsRunningGetsConflict() throws Exception {
+        controller.release = new CountDownLatch(1);
+        Future<MvcResult> first = executor.submit(() ->
+                mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1")).andReturn());
+        while (controller.executions.get() == 0) {
+            Thread.sleep(5);
+        }
+
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.code").value(13001));
+
+        controller.release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).getResponse().getStatus()).isEqualTo(200);
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(content().string("{\"order\":1}"));
+        assertThat(controller.executions).hasValue(1);
+    }
+
+    @Test
+    void keyLockedByAnotherInstanceGetsConflict() throws Exception {
+        String key = store.keyOf("anonymous", "POST", CHECKOUT, "k1");
+        table.put(key, inProgress(key, Instant.now().plusSeconds(60)));
+
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isConflict());
+
+        assertThat(controller.executions).hasValue(0);
+    }
+
+    @Test
+    void staleLockIsTakenOver() throws Exception {
+        // left behind by an instance that died while executing
+        String key = store.keyOf("anonymous", "POST", CHECKOUT, "k1");
+        table.put(key, inProgress(key, Instant.now().minusSeconds(1)));
+
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+
+        assertThat(controller.executions).hasValue(1);
+        assertThat(table.get(key).getStatus()).isEqualTo(IdempotencyStatus.COMPLETED);
+    }
+
+    @Test
+    void failedExecutionIsReleasedAndRetried() throws Exception {
+        controller.status = HttpStatus.INTERNAL_SERVER_ERROR;
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isInternalServerError());
+        assertThat(table).isEmpty();
+
+        controller.status = HttpStatus.CONFLICT;
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isConflict())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+        assertThat(table).isEmpty();
+
+        controller.status = HttpStatus.OK;
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "k1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"order\":3}"));
+        assertThat(controller.executions).hasValue(3);
+    }
+
+    @Test
+    void blankKeyIsRejected() throws Exception {
+        mockMvc.perform(post(CHECKOUT).header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, " "))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(13002));
+        assertThat(controller.executions).hasValue(0);
+    }
+
+    private static IdempotencyRecord inProgress(String key, Instant lockedUntil) {
+        return IdempotencyRecord.builder()
+                .keyHash(key)
+                .status(IdempotencyStatus.IN_PROGRESS)
+                .createdAt(Instant.now())
+                .expiresAt(lockedUntil)
+                .build();
+    }
+
+    /**
+     * Repository mock applying the conditions of the native queries to the in-memory table.
+     */
+    private IdempotencyRecordRepository repository() {
+        IdempotencyRecordRepository repository = mock(IdempotencyRecordRepository.class);
+        when(repository.claim(anyString(), any(), any())).thenAnswer(call -> {
+            String key = call.getArgument(0);
+            return table.putIfAbsent(key, inProgress(key, call.getArgument(2))) == null ? 1 : 0;
+        });
+        when(repository.takeOver(anyString(), any(), any())).thenAnswer(call -> {
+            String key = call.getArgument(0);
+            Instant now = call.getArgument(1);
+            IdempotencyRecord current = table.get(key);
+            return current != null && current.getExpiresAt().isBefore(now)
+                    && table.replace(key, current, inProgress(key, call.getArgument(2))) ? 1 : 0;
+        });
+        when(repository.complete(anyString(), anyInt(), any(), any(), any())).thenAnswer(call -> {
+            IdempotencyRecord current = table.get(call.<String>getArgument(0));
+            if (current == null || current.getStatus() != IdempotencyStatus.IN_PROGRESS) {
+                return 0;
+            }
+            current.setStatus(IdempotencyStatus.COMPLETED);
+            current.setResponseStatus(call.getArgument(1));
+            current.setContentType(call.getArgument(2));
+            current.setBody(call.getArgument(3));
+            current.setExpiresAt(call.getArgument(4));
+            return 1;
+        });
+        when(repository.release(anyString())).thenAnswer(call -> {
+            IdempotencyRecord current = table.get(call.<String>getArgument(0));
+            return current != null && current.getStatus() == IdempotencyStatus.IN_PROGRESS
+                    && table.remove(call.getArgument(0), current) ? 1 : 0;
+        });
+        when(repository.findById(anyString())).thenAnswer(call -> Optional.ofNullable(table.get(call.<String>getArgument(0))));
+        return repository;
+    }
+}
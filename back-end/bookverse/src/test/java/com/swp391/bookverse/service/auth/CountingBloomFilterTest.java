@@ -0,0 +1,73 @@
+package com.swp391.bookverse.service.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountingBloomFilterTest {
+
+    @Test
+    void addedKeysAreFoundAndRemovedKeysAreNot() {
+        CountingBloomFilter filter = new CountingBloomFilter(1 << 16, 7);
+        assertThat(filter.mightContain("jti:a")).isFalse();
+
+        filter.add("jti:a");
+        filter.add("user:b");
+        assertThat(filter.mightContain("jti:a")).isTrue();
+        assertThat(filter.mightContain("user:b")).isTrue();
+
+        filter.remove("jti:a");
+        assertThat(filter.mightContain("jti:a")).isFalse();
+        assertThat(filter.mightContain("user:b")).isTrue();
+    }
+
+    @Test
+    void removingKeysNeverHidesKeysSharingTheirCounters() {
+        // 64 counters for 500 keys, every counter is shared by many keys
+        CountingBloomFilter filter = new CountingBloomFilter(64, 3);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            keys.add("jti:" + i);
+            filter.add("jti:" + i);
+        }
+        for (int i = 0; i < 500; i += 2) {
+            filter.remove(keys.get(i));
+        }
+        for (int i = 1; i < 500; i += 2) {
+            assertThat(filter.mightContain(keys.get(i))).as(keys.get(i)).isTrue();
+        }
+    }
+
+    @Test
+    void saturatedCountersAreNeverDecremented() {
+        CountingBloomFilter filter = new CountingBloomFilter(64, 1);
+        for (int i = 0; i < 300; i++) {
+            filter.add("user:hot");
+        }
+        filter.add("user:other");
+        for (int i = 0; i < 300; i++) {
+            filter.remove("user:hot");
+        }
+        // a counter that wrapped or went back to 0 would hide keys that are still present
+        assertThat(filter.mightContain("user:hot")).isTrue();
+        assertThat(filter.mightContain("user:other")).isTrue();
+    }
+
+    @Test
+    void falsePositiveRateStaysLow() {
+        CountingBloomFilter filter = new CountingBloomFilter(1 << 20, 7);
+        for (int i = 0; i < 20_000; i++) {
+            filter.add("jti:member-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("jti:other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(100);
+    }
+}
@@ -0,0 +1,112 @@
+package com.swp391.bookverse.service.auth;
+
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RefreshTokenServiceTest {
+    JdbcTemplate jdbcTemplate;
+    RefreshTokenService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:refresh-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE refresh_token (token_hash VARCHAR(64) PRIMARY KEY, user_id VARCHAR(64) NOT NULL, " +
+                "created_at TIMESTAMP NOT NULL, expires_at TIMESTAMP NOT NULL, revoked TINYINT NOT NULL)");
+        service = new RefreshTokenService(jdbcTemplate);
+        ReflectionTestUtils.setField(service, "refreshTtlDays", 14L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void tokenCanBeUsedOnce() {
+        String token = service.issue("u1");
+
+        assertThat(service.consume(token)).isEqualTo("u1");
+        assertInvalid(token);
+    }
+
+    @Test
+    void reusedTokenRevokesAllTokensOfItsUser() {
+        String stolen = service.issue("u1");
+        String rotated = service.issue("u1");
+        String otherDevice = service.issue("u1");
+        String otherUser = service.issue("u2");
+        service.consume(stolen);
+
+        assertInvalid(stolen);
+
+        assertInvalid(rotated);
+        assertInvalid(otherDevice);
+        assertThat(service.consume(otherUser)).isEqualTo("u2");
+    }
+
+    @Test
+    void unknownOrExpiredTokenRevokesNothing() {
+        String valid = service.issue("u1");
+        ReflectionTestUtils.setField(service, "refreshTtlDays", -1L);
+        String expired = service.issue("u1");
+
+        assertInvalid("not-a-token");
+        assertInvalid(" ");
+        assertInvalid(expired);
+
+        assertThat(service.consume(valid)).isEqualTo("u1");
+    }
+
+    @Test
+    void concurrentUsesOfOneTokenSucceedOnce() throws Exception {
+        String token = service.issue("u1");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger succeeded = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        service.consume(token);
+                        succeeded.incrementAndGet();
+                    } catch (AppException e) {
+                        assertThat(e.getErrorCode()).isEqualTo(ErrorCode.REFRESH_TOKEN_INVALID);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertThat(succeeded).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertInvalid(String token) {
+        assertThatThrownBy(() -> service.consume(token))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.REFRESH_TOKEN_INVALID);
+    }
+}
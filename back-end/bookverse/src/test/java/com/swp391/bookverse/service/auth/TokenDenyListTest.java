@@ -0,0 +1,112 @@
+package com.swp391.bookverse.service.auth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenDenyListTest {
+    JdbcTemplate jdbcTemplate;
+    TokenDenyList denyList;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:deny-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE revoked_token (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "token_key VARCHAR(80) NOT NULL UNIQUE, revoked_at TIMESTAMP NOT NULL, expires_at TIMESTAMP NOT NULL)");
+        denyList = newDenyList();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void revokedTokensAndUsersAreFound() {
+        Instant now = Instant.now();
+        denyList.revokeToken("jwt-1", now.plusSeconds(600));
+        denyList.revokeUser("u1");
+
+        assertThat(denyList.isRevoked("jwt-1", "u2", now)).isTrue();
+        assertThat(denyList.isRevoked("jwt-2", "u2", now)).isFalse();
+        assertThat(denyList.isRevoked("jwt-2", "u1", now.minusSeconds(60))).isTrue();
+        // issued after the user was revoked, e.g. after reactivation and a new login
+        assertThat(denyList.isRevoked("jwt-3", "u1", now.plusSeconds(5))).isFalse();
+    }
+
+    @Test
+    void revocationsOfOtherInstancesArrivePerSync() {
+        TokenDenyList other = newDenyList();
+        other.revokeUser("u1");
+        other.revokeToken("jwt-1", Instant.now().plusSeconds(600));
+        assertThat(denyList.isRevoked("jwt-1", null, null)).isFalse();
+
+        denyList.sync();
+
+        assertThat(denyList.isRevoked("jwt-1", null, null)).isTrue();
+        assertThat(denyList.isRevoked(null, "u1", Instant.now().minusSeconds(1))).isTrue();
+    }
+
+    @Test
+    void staleRowNeverRollsBackNewerRevocation() {
+        Instant issuedAt = Instant.now().minusSeconds(10);
+        denyList.revokeUser("u1");
+        assertThat(denyList.isRevoked(null, "u1", issuedAt)).isTrue();
+
+        // the row as an earlier revocation left it, read again within the sync margin
+        Instant earlier = Instant.now().minusSeconds(30);
+        jdbcTemplate.update("UPDATE revoked_token SET revoked_at = ? WHERE token_key = 'user:u1'", Timestamp.from(earlier));
+        denyList.sync();
+
+        assertThat(denyList.isRevoked(null, "u1", issuedAt)).isTrue();
+    }
+
+    @Test
+    void laterRevocationMovesTheUserCutOffForward() {
+        Instant issuedAt = Instant.now().plusSeconds(10);
+        jdbcTemplate.update("INSERT INTO revoked_token (token_key, revoked_at, expires_at) VALUES ('user:u1', ?, ?)",
+                Timestamp.from(Instant.now().minusSeconds(30)), Timestamp.from(Instant.now().plusSeconds(600)));
+        denyList.sync();
+        assertThat(denyList.isRevoked(null, "u1", issuedAt)).isFalse();
+
+        jdbcTemplate.update("UPDATE revoked_token SET revoked_at = ? WHERE token_key = 'user:u1'",
+                Timestamp.from(Instant.now().plusSeconds(20)));
+        denyList.sync();
+
+        assertThat(denyList.isRevoked(null, "u1", issuedAt)).isTrue();
+    }
+
+    @Test
+    void expiredEntriesArePurged() throws InterruptedException {
+        denyList.revokeToken("jwt-1", Instant.now().plus(300, ChronoUnit.MILLIS));
+        denyList.revokeToken("jwt-2", Instant.now().plusSeconds(600));
+        Thread.sleep(400);
+
+        denyList.purgeExpired();
+
+        assertThat(denyList.isRevoked("jwt-1", null, null)).isFalse();
+        assertThat(denyList.isRevoked("jwt-2", null, null)).isTrue();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revoked_token", Integer.class)).isOne();
+    }
+
+    private TokenDenyList newDenyList() {
+        TokenDenyList denyList = new TokenDenyList(jdbcTemplate);
+        ReflectionTestUtils.setField(denyList, "syncMarginSeconds", 60L);
+        ReflectionTestUtils.setField(denyList, "bloomCounters", 1 << 16);
+        ReflectionTestUtils.setField(denyList, "bloomHashes", 7);
+        ReflectionTestUtils.setField(denyList, "accessTtlSeconds", 3600L);
+        denyList.load();
+        return denyList;
+    }
+}
@@ -0,0 +1,90 @@
+package com.swp391.bookverse.service.auth.otp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedWheelTimerTest {
+    static final long TICK_MS = 100;
+
+    AtomicLong now = new AtomicLong(1_000_000);
+    HashedWheelTimer timer = new HashedWheelTimer(TICK_MS, 8, now::get);
+
+    @Test
+    void taskRunsOnFirstTickAtOrAfterDeadline() {
+        List<Long> runs = new ArrayList<>();
+        timer.schedule(() -> runs.add(now.get()), 250);
+
+        advanceTo(1_000_100);
+        advanceTo(1_000_249);
+        assertThat(runs).isEmpty();
+        // the deadline falls inside tick 10_002, the task waits for the next one
+        advanceTo(1_000_250);
+        advanceTo(1_000_299);
+        assertThat(runs).isEmpty();
+
+        advanceTo(1_000_300);
+        assertThat(runs).containsExactly(1_000_300L);
+    }
+
+    @Test
+    void tasksNeverRunEarlyAndAtMostOneTickLate() {
+        Random random = new Random(7);
+        int maxStep = 30;
+        List<long[]> runs = new ArrayList<>();
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            // beyond one turn (800 ms) too
+            long delay = random.nextInt(3_000);
+            long deadline = now.get() + delay;
+            deadlines.add(deadline);
+            timer.schedule(() -> runs.add(new long[]{deadline, now.get()}), delay);
+            if (random.nextInt(4) == 0) {
+                advanceTo(now.get() + 1 + random.nextInt(maxStep));
+            }
+        }
+        long end = deadlines.stream().mapToLong(Long::longValue).max().orElseThrow() + TICK_MS + maxStep;
+        while (now.get() < end) {
+            advanceTo(now.get() + 1 + random.nextInt(maxStep));
+        }
+
+        assertThat(runs).hasSize(deadlines.size());
+        assertThat(runs).allSatisfy(run -> assertThat(run[1] - run[0]).isBetween(0L, TICK_MS + maxStep));
+    }
+
+    @Test
+    void pauseLongerThanOneTurnCatchesUp() {
+        List<Integer> runs = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int task = i;
+            timer.schedule(() -> runs.add(task), i * TICK_MS);
+        }
+
+        advanceTo(now.get() + 10 * 8 * TICK_MS);
+
+        assertThat(runs).containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7);
+    }
+
+    @Test
+    void failingTaskDoesNotStopOthers() {
+        List<String> runs = new ArrayList<>();
+        timer.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, 0);
+        timer.schedule(() -> runs.add("after"), 0);
+
+        advanceTo(now.get() + TICK_MS);
+
+        assertThat(runs).containsExactly("after");
+    }
+
+    private void advanceTo(long millis) {
+        now.set(millis);
+        timer.advance();
+    }
+}
@@ -0,0 +1,165 @@
+package com.swp391.bookverse.service.auth.otp;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class OtpStoreTest {
+    static final String EMAIL = "reader@example.com";
+    static final String TYPE = "VERIFY_EMAIL";
+
+    MutableClock clock = new MutableClock(Instant.parse("2026-10-19T10:00:00Z"));
+    OtpAuditLog auditLog = mock(OtpAuditLog.class);
+    HashedWheelTimer timer = new HashedWheelTimer(1000, 1024, clock::millis);
+    OtpStore store = new OtpStore(auditLog);
+
+    /**
+     * Clock moved by the test.
+     */
+    static final class MutableClock extends Clock {
+        Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "timer", timer);
+        ReflectionTestUtils.setField(store, "clock", clock);
+        ReflectionTestUtils.setField(store, "maxAttempts", 3);
+    }
+
+    @Test
+    void codeIsUsedOnce() {
+        store.issue(EMAIL, "u1", "123456", TYPE, Duration.ofMinutes(5));
+
+        assertThat(store.verify(null, " Reader@Example.com ", "123456", TYPE)).isEqualTo(OtpStore.Result.VERIFIED);
+        assertThat(store.verify(null, EMAIL, "123456", TYPE)).isEqualTo(OtpStore.Result.NOT_FOUND);
+        verify(auditLog).recordUsed(eq(EMAIL), any());
+    }
+
+    @Test
+    void codeIsFoundByUserId() {
+        store.issue(EMAIL, "u1", "123456", TYPE, Duration.ofMinutes(5));
+
+        assertThat(store.verify("u1", null, "123456", "RESET_PASSWORD")).isEqualTo(OtpStore.Result.WRONG_TYPE);
+        assertThat(store.verify("u1", null, "123456", TYPE)).isEqualTo(OtpStore.Result.VERIFIED);
+    }
+
+    @Test
+    void expiredCodeIsReportedThenDroppedAfterGrace() {
+        store.issue(EMAIL, null, "123456", TYPE, Duration.ofMinutes(5));
+
+        advance(Duration.ofMinutes(5));
+        assertThat(store.verify(null, EMAIL, "000000", TYPE)).isEqualTo(OtpStore.Result.INVALID_CODE);
+        advance(Duration.ofMillis(1));
+        assertThat(store.verify(null, EMAIL, "123456", TYPE)).isEqualTo(OtpStore.Result.EXPIRED);
+
+        // a late attempt within the grace period still learns the code expired
+        advance(Duration.ofMillis(OtpStore.EXPIRED_GRACE_MS - 1000));
+        assertThat(store.verify(null, EMAIL, "123456", TYPE)).isEqualTo(OtpStore.Result.EXPIRED);
+
+        // removed at most one tick after expiry + grace
+        advance(Duration.ofMillis(2000));
+        assertThat(store.verify(null, EMAIL, "123456", TYPE)).isEqualTo(OtpStore.Result.NOT_FOUND);
+    }
+
+    @Test
+    void expiryOfReplacedCodeLeavesNewCode() {
+        store.issue(EMAIL, "u1", "111111", TYPE, Duration.ofMinutes(1));
+        advance(Duration.ofSeconds(30));
+        store.issue(EMAIL, "u1", "222222", TYPE, Duration.ofMinutes(5));
+
+        advance(Duration.ofMinutes(2));
+
+        assertThat(store.verify("u1", null, "111111", TYPE)).isEqualTo(OtpStore.Result.INVALID_CODE);
+        assertThat(store.verify("u1", null, "222222", TYPE)).isEqualTo(OtpStore.Result.VERIFIED);
+    }
+
+    @Test
+    void codeIsDroppedAfterMaxAttempts() {
+        store.issue(EMAIL, null, "123456", TYPE, Duration.ofMinutes(5));
+
+        assertThat(store.verify(null, EMAIL, "000000", TYPE)).isEqualTo(OtpStore.Result.INVALID_CODE);
+        assertThat(store.verify(null, EMAIL, null, TYPE)).isEqualTo(OtpStore.Result.INVALID_CODE);
+        assertThat(store.verify(null, EMAIL, "000001", TYPE)).isEqualTo(OtpStore.Result.INVALID_CODE);
+
+        assertThat(store.verify(null, EMAIL, "123456", TYPE)).isEqualTo(OtpStore.Result.NOT_FOUND);
+    }
+
+    @Test
+    void comparisonTimeDoesNotDependOnMismatchPosition() {
+        ReflectionTestUtils.setField(store, "maxAttempts", Integer.MAX_VALUE);
+        // long enough for an early-exit comparison to stand out from the call overhead
+        char[] code = new char[64 * 1024];
+        Arrays.fill(code, 'a');
+        store.issue(EMAIL, null, new String(code), TYPE, Duration.ofMinutes(5));
+        char[] guess = code.clone();
+        guess[0] = 'b';
+        String firstByteWrong = new String(guess);
+        guess[0] = 'a';
+        guess[guess.length - 1] = 'b';
+        String lastByteWrong = new String(guess);
+
+        int samples = 1_001;
+        long[] first = new long[samples];
+        long[] last = new long[samples];
+        for (int warmUp = 0; warmUp < 2_000; warmUp++) {
+            store.verify(null, EMAIL, firstByteWrong, TYPE);
+            store.verify(null, EMAIL, lastByteWrong, TYPE);
+        }
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            store.verify(null, EMAIL, firstByteWrong, TYPE);
+            first[i] = System.nanoTime() - start;
+            start = System.nanoTime();
+            store.verify(null, EMAIL, lastByteWrong, TYPE);
+            last[i] = System.nanoTime() - start;
+        }
+
+        // an early-exit comparison (Arrays.equals) gives about 0.75 here, a constant-time one about 1.0
+        double ratio = (double) median(first) / median(last);
+        assertThat(ratio).isBetween(0.85, 1.18);
+    }
+
+    private void advance(Duration duration) {
+        clock.now = clock.now.plus(duration);
+        timer.advance();
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,138 @@
+package com.swp391.bookverse.service.cart;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Add-one-to-cart throughput: the write-behind store against the statements the JPA path runs per click
+ * (joined cart load, book lookup, item update or insert, in one transaction).
+ * <p>
+ * Runs on an in-memory H2 database by default. Point it at MySQL to get numbers that include the network round trips:
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Dexec.args="-Dbench.jdbc.url=jdbc:mysql://localhost:3306/bench \
+ *     -Dbench.jdbc.user=root -Dbench.jdbc.password=... -cp %classpath org.openjdk.jmh.Main CartMutationBenchmark"
+ * </pre>
+ * The write-behind store is flushed after every iteration, outside the measurement, like the scheduled flush does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CartMutationBenchmark {
+    static final int USERS = 1000;
+    static final int BOOKS = 50;
+
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+    CartWriteBehindStore store;
+    Path journalDir;
+    HikariDataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("bench.jdbc.url", "jdbc:h2:mem:cart-bench;MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        dataSource.setUsername(System.getProperty("bench.jdbc.user", "sa"));
+        dataSource.setPassword(System.getProperty("bench.jdbc.password", ""));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        jdbcTemplate.execute("DROP TABLE IF EXISTS cart_item");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS cart");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS book");
+        jdbcTemplate.execute("CREATE TABLE book (id BIGINT PRIMARY KEY, title VARCHAR(255), price DOUBLE, stock_quantity INT)");
+        jdbcTemplate.execute("CREATE TABLE cart (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id VARCHAR(64), active BOOLEAN)");
+        jdbcTemplate.execute("CREATE TABLE cart_item (id BIGINT AUTO_INCREMENT PRIMARY KEY, cart_id BIGINT, book_id BIGINT, quantity INT)");
+        jdbcTemplate.execute("CREATE INDEX idx_cart_user ON cart (user_id, active)");
+        jdbcTemplate.execute("CREATE INDEX idx_cart_item_cart ON cart_item (cart_id)");
+
+        List<Object[]> books = new ArrayList<>();
+        for (long id = 1; id <= BOOKS; id++) {
+            books.add(new Object[]{id, "Book " + id, 100_000.0, 1_000_000});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO book (id, title, price, stock_quantity) VALUES (?, ?, ?, ?)", books);
+        List<Object[]> carts = new ArrayList<>();
+        for (int user = 0; user < USERS; user++) {
+            carts.add(new Object[]{userId(user)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO cart (user_id, active) VALUES (?, 1)", carts);
+
+        journalDir = Files.createTempDirectory("cart-journal-bench");
+        store = new CartWriteBehindStore(jdbcTemplate, transactionTemplate);
+        ReflectionTestUtils.setField(store, "mode", "write-behind");
+        ReflectionTestUtils.setField(store, "maxCarts", USERS * 2);
+        ReflectionTestUtils.setField(store, "journalDir", journalDir.toString());
+        store.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        store.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.stop();
+        dataSource.close();
+        try (Stream<Path> files = Files.walk(journalDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object writeBehind() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long bookId = random.nextInt(BOOKS) + 1;
+        return store.update(userId(random.nextInt(USERS)), items -> items.merge(bookId, 1, Integer::sum));
+    }
+
+    @Benchmark
+    public Object jpaStatements() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String userId = userId(random.nextInt(USERS));
+        long bookId = random.nextInt(BOOKS) + 1;
+        return transactionTemplate.execute(status -> {
+            // findByUserIdAndActive: cart joined with its items and their books
+            long[] cart = {0, 0, 0};
+            jdbcTemplate.query("SELECT c.id, ci.id, ci.quantity, b.id, b.title, b.price, b.stock_quantity FROM cart c " +
+                            "LEFT JOIN cart_item ci ON ci.cart_id = c.id LEFT JOIN book b ON b.id = ci.book_id " +
+                            "WHERE c.user_id = ? AND c.active = 1",
+                    rs -> {
+                        cart[0] = rs.getLong(1);
+                        if (rs.getLong(4) == bookId) {
+                            cart[1] = rs.getLong(2);
+                            cart[2] = rs.getInt(3);
+                        }
+                    },
+                    userId);
+            // bookRepository.findById
+            jdbcTemplate.queryForMap("SELECT id, title, price, stock_quantity FROM book WHERE id = ?", bookId);
+            if (cart[1] != 0) {
+                return jdbcTemplate.update("UPDATE cart_item SET quantity = ? WHERE id = ?", cart[2] + 1, cart[1]);
+            }
+            return jdbcTemplate.update("INSERT INTO cart_item (cart_id, book_id, quantity) VALUES (?, ?, 1)", cart[0], bookId);
+        });
+    }
+
+    private static String userId(int user) {
+        return "user-" + user;
+    }
+}
@@ -0,0 +1,135 @@
+package com.swp391.bookverse.service.cart;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartWriteBehindStoreTest {
+
+    @TempDir
+    Path journalDir;
+
+    DriverManagerDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:cart-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE cart (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id VARCHAR(64), active BOOLEAN)");
+        jdbcTemplate.execute("CREATE TABLE cart_item (id BIGINT AUTO_INCREMENT PRIMARY KEY, cart_id BIGINT, book_id BIGINT, quantity INT)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void replaysJournalAfterCrash() throws IOException {
+        CartWriteBehindStore crashed = newStore();
+        crashed.update("u1", items -> items.put(1L, 2));
+        crashed.update("u1", items -> items.merge(1L, 1, Integer::sum));
+        crashed.update("u1", items -> items.put(2L, 5));
+        crashed.update("u1", items -> items.remove(2L));
+        crashed.update("u2", items -> items.put(3L, 1));
+        crashed.update("u3", items -> items.put(4L, 1));
+        crashed.evict("u3");
+        // a record torn by the crash is skipped
+        Files.writeString(segments().get(segments().size() - 1), "u2\t9", StandardOpenOption.APPEND);
+
+        // nothing reached the database before the crash
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_item", Integer.class)).isZero();
+
+        CartWriteBehindStore restarted = newStore();
+
+        assertThat(itemsInDatabase("u1")).containsExactly(Map.entry(1L, 3));
+        assertThat(itemsInDatabase("u2")).containsExactly(Map.entry(3L, 1));
+        assertThat(itemsInDatabase("u3")).isEmpty();
+        assertThat(restarted.read("u1")).containsExactly(Map.entry(1L, 3));
+        assertThat(segments()).allSatisfy(segment -> assertThat(Files.size(segment)).isZero());
+    }
+
+    @Test
+    void replayOverwritesPersistedCart() throws IOException {
+        CartWriteBehindStore first = newStore();
+        first.update("u1", items -> items.put(1L, 1));
+        first.flush();
+        first.update("u1", items -> {
+            items.put(1L, 4);
+            items.put(2L, 2);
+        });
+
+        newStore();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart WHERE user_id = 'u1'", Integer.class)).isOne();
+        assertThat(itemsInDatabase("u1")).containsOnly(Map.entry(1L, 4), Map.entry(2L, 2));
+    }
+
+    @Test
+    void stopFlushesDirtyCartsAndDropsJournal() throws IOException {
+        CartWriteBehindStore store = newStore();
+        store.update("u1", items -> items.put(1L, 2));
+        store.update("u2", items -> items.put(2L, 1));
+
+        store.stop();
+
+        assertThat(itemsInDatabase("u1")).containsExactly(Map.entry(1L, 2));
+        assertThat(itemsInDatabase("u2")).containsExactly(Map.entry(2L, 1));
+        assertThat(segments()).allSatisfy(segment -> assertThat(Files.size(segment)).isZero());
+
+        // a restart has nothing to replay and reads the persisted carts
+        CartWriteBehindStore restarted = newStore();
+        assertThat(restarted.read("u1")).containsExactly(Map.entry(1L, 2));
+    }
+
+    private CartWriteBehindStore newStore() throws IOException {
+        CartWriteBehindStore store = new CartWriteBehindStore(jdbcTemplate, transactionTemplate);
+        ReflectionTestUtils.setField(store, "mode", "write-behind");
+        ReflectionTestUtils.setField(store, "maxCarts", 100);
+        ReflectionTestUtils.setField(store, "journalDir", journalDir.toString());
+        store.start();
+        return store;
+    }
+
+    private Map<Long, Integer> itemsInDatabase(String userId) {
+        Map<Long, Integer> items = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT ci.book_id, ci.quantity FROM cart c JOIN cart_item ci ON ci.cart_id = c.id " +
+                        "WHERE c.user_id = ? AND c.active = 1 ORDER BY ci.book_id",
+                rs -> {
+                    items.put(rs.getLong(1), rs.getInt(2));
+                },
+                userId);
+        return items;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(CartWriteBehindStore.JOURNAL_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.swp391.bookverse.service.inventory;
+
+import com.swp391.bookverse.exception.AppException;
+import com.swp391.bookverse.exception.ErrorCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StockReservationServiceTest {
+    static final long BOOK = 1L;
+
+    JdbcTemplate jdbcTemplate;
+    StockReservationService service;
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:stock-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE book (id BIGINT PRIMARY KEY, stock_quantity INT)");
+        service = new StockReservationService(jdbcTemplate);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "ttlMinutes", 30L);
+        ReflectionTestUtils.setField(service, "capacity", 10_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void concurrentReservesNeverOversell() throws Exception {
+        int holders = 200;
+        int stock = 100;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < holders; i++) {
+            String holder = "user-" + i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    service.reserveAll(holder, Map.of(BOOK, 1), Map.of(BOOK, stock));
+                    reserved.incrementAndGet();
+                } catch (AppException e) {
+                    assertThat(e.getErrorCode()).isEqualTo(ErrorCode.EXCEED_STOCK);
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(reserved.get()).isEqualTo(stock);
+        assertThat(rejected.get()).isEqualTo(holders - stock);
+        assertThat(service.getAvailable(BOOK)).isZero();
+    }
+
+    @Test
+    void concurrentReserveAndReleaseGiveStockBack() throws Exception {
+        int stock = 50;
+        service.reserveAll("warm-up", Map.of(BOOK, 0), Map.of(BOOK, stock));
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean negativeSeen = new AtomicBoolean();
+        Future<?> watcher = executor.submit(() -> {
+            while (running.get()) {
+                if (service.getAvailable(BOOK) < 0) {
+                    negativeSeen.set(true);
+                }
+            }
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String holder = "user-" + i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int round = 0; round < 2_000; round++) {
+                    try {
+                        service.reserveAll(holder, Map.of(BOOK, 1 + random.nextInt(8)), Map.of(BOOK, stock));
+                    } catch (AppException e) {
+                        // the others hold it, retry on the next round
+                    }
+                    service.releaseTo(holder, BOOK, random.nextInt(3));
+                }
+                service.releaseTo(holder, BOOK, 0);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        watcher.get(10, TimeUnit.SECONDS);
+
+        assertThat(negativeSeen).isFalse();
+        assertThat(service.getAvailable(BOOK)).isEqualTo(stock);
+    }
+
+    @Test
+    void reserveAllIsAllOrNothing() {
+        service.reserveAll("a", Map.of(1L, 5, 2L, 1), Map.of(1L, 10, 2L, 1));
+
+        assertThatThrownBy(() -> service.reserveAll("b", Map.of(1L, 5, 2L, 1), Map.of(1L, 10, 2L, 1)))
+                .isInstanceOf(AppException.class);
+
+        assertThat(service.getAvailable(1L)).isEqualTo(5);
+        assertThat(service.getAvailable(2L)).isZero();
+    }
+
+    @Test
+    void commitKeepsStockTakenReleaseGivesItBack() {
+        service.reserveAll("a", Map.of(BOOK, 3), Map.of(BOOK, 10));
+        service.reserveAll("b", Map.of(BOOK, 4), Map.of(BOOK, 10));
+
+        service.commit("a", BOOK);
+        service.releaseTo("b", BOOK, 1);
+
+        assertThat(service.getAvailable(BOOK)).isEqualTo(6);
+    }
+
+    @Test
+    void expiredReservationsAreReleased() {
+        service.reserveAll("kept", Map.of(BOOK, 2), Map.of(BOOK, 10));
+        ReflectionTestUtils.setField(service, "ttlMinutes", -1L);
+        service.reserveAll("abandoned", Map.of(BOOK, 5), Map.of(BOOK, 10));
+        assertThat(service.getAvailable(BOOK)).isEqualTo(3);
+
+        service.expireReservations();
+
+        assertThat(service.getAvailable(BOOK)).isEqualTo(8);
+        // releasing an expired reservation again does not give stock back twice
+        service.releaseTo("abandoned", BOOK, 0);
+        assertThat(service.getAvailable(BOOK)).isEqualTo(8);
+    }
+
+    @Test
+    void reconcileRealignsReservedBooksWithDatabase() {
+        jdbcTemplate.update("INSERT INTO book (id, stock_quantity) VALUES (1, 100), (2, 100)");
+        service.reserveAll("a", Map.of(1L, 10), Map.of(1L, 100));
+        service.reserveAll("a", Map.of(2L, 0), Map.of(2L, 100));
+
+        // stock changed behind the cart's back, e.g. by an admin or another checkout
+        jdbcTemplate.update("UPDATE book SET stock_quantity = 40");
+        service.reconcile();
+
+        assertThat(service.getAvailable(1L)).isEqualTo(30);
+        // nobody holds book 2: it is re-aligned from the stock read by the next reservation instead
+        assertThat(service.getAvailable(2L)).isEqualTo(100);
+        service.reserveAll("b", Map.of(2L, 1), Map.of(2L, 40));
+        assertThat(service.getAvailable(2L)).isEqualTo(39);
+
+        service.releaseTo("a", 1L, 0);
+        assertThat(service.getAvailable(1L)).isEqualTo(40);
+    }
+}
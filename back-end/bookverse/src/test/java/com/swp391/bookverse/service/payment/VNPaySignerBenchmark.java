@@ -0,0 +1,108 @@
+package com.swp391.bookverse.service.payment;
+
+import com.swp391.bookverse.configuration.VNPayConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing a VNPay payment request: VNPaySigner against the former createPayment code
+ * (HashMap, sort, every value URL-encoded twice, then VNPayConfig.hmacSHA512 with a new Mac and String.format hex).
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Dbenchmark=VNPaySignerBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VNPaySignerBenchmark {
+    VNPaySigner signer;
+    Map<String, String> params;
+    String data;
+
+    @Setup
+    public void setUp() {
+        signer = new VNPaySigner(VNPayConfig.secretKey);
+        params = paymentParams();
+        data = signer.canonicalQuery(params);
+    }
+
+    @Benchmark
+    public String legacyBuildSignedQuery() throws UnsupportedEncodingException {
+        return legacySignedQuery(new HashMap<>(params));
+    }
+
+    @Benchmark
+    public String signerBuildSignedQuery() {
+        return signer.buildSignedQuery(new TreeMap<>(params));
+    }
+
+    @Benchmark
+    public String legacySign() {
+        return VNPayConfig.hmacSHA512(VNPayConfig.secretKey, data);
+    }
+
+    @Benchmark
+    public String signerSign() {
+        return signer.sign(data);
+    }
+
+    /**
+     * Fields of a typical createPayment request.
+     */
+    static Map<String, String> paymentParams() {
+        Map<String, String> params = new HashMap<>();
+        params.put("vnp_Version", VNPayConfig.vnp_Version);
+        params.put("vnp_Command", VNPayConfig.vnp_Command);
+        params.put("vnp_TmnCode", VNPayConfig.vnp_TmnCode);
+        params.put("vnp_Amount", "25000000");
+        params.put("vnp_CurrCode", "VND");
+        params.put("vnp_BankCode", "NCB");
+        params.put("vnp_TxnRef", "48213907");
+        params.put("vnp_OrderInfo", "Thanh toan don hang:48213907");
+        params.put("vnp_Locale", "vn");
+        params.put("vnp_IpAddr", "171.246.74.195");
+        params.put("vnp_OrderType", "other");
+        params.put("vnp_ReturnUrl", VNPayConfig.vnp_ReturnUrl);
+        params.put("vnp_CreateDate", "20261019103000");
+        params.put("vnp_ExpireDate", "20261019104500");
+        return params;
+    }
+
+    /**
+     * Query building and signing as createPayment did it before VNPaySigner.
+     */
+    static String legacySignedQuery(Map<String, String> vnp_Params) throws UnsupportedEncodingException {
+        List fieldNames = new ArrayList(vnp_Params.keySet());
+        Collections.sort(fieldNames);
+        StringBuilder hashData = new StringBuilder();
+        StringBuilder query = new StringBuilder();
+        Iterator itr = fieldNames.iterator();
+        while (itr.hasNext()) {
+            String fieldName = (String) itr.next();
+            String fieldValue = (String) vnp_Params.get(fieldName);
+            if ((fieldValue != null) && (fieldValue.length() > 0)) {
+                hashData.append(fieldName);
+                hashData.append('=');
+                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
+                query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII.toString()));
+                query.append('=');
+                query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
+                if (itr.hasNext()) {
+                    query.append('&');
+                    hashData.append('&');
+                }
+            }
+        }
+        String queryUrl = query.toString();
+        String vnp_SecureHash = VNPayConfig.hmacSHA512(VNPayConfig.secretKey, hashData.toString());
+        return queryUrl + "&vnp_SecureHash=" + vnp_SecureHash;
+    }
+}
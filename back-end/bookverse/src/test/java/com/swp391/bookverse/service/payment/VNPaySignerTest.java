@@ -0,0 +1,112 @@
+package com.swp391.bookverse.service.payment;
+
+import com.swp391.bookverse.configuration.VNPayConfig;
+import org.junit.jupiter.api.Test;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VNPaySignerTest {
+    VNPaySigner signer = new VNPaySigner(VNPayConfig.secretKey);
+
+    @Test
+    void signMatchesHmacSHA512() {
+        for (String data : new String[]{"", "vnp_Amount=25000000", "Thanh toán đơn hàng", "a".repeat(10_000)}) {
+            assertThat(signer.sign(data)).isEqualTo(VNPayConfig.hmacSHA512(VNPayConfig.secretKey, data));
+        }
+    }
+
+    @Test
+    void signedQueryMatchesFormerCreatePayment() throws Exception {
+        Map<String, String> params = VNPaySignerBenchmark.paymentParams();
+        params.put("vnp_OrderInfo", "Thanh toan don hang #42 & more/?=+ 100%");
+        params.put("vnp_Bill_Mobile", "");
+
+        assertThat(signer.buildSignedQuery(new TreeMap<>(params)))
+                .isEqualTo(VNPaySignerBenchmark.legacySignedQuery(new HashMap<>(params)));
+        assertThat(signer.buildSignedQuery(new HashMap<>(params)))
+                .isEqualTo(VNPaySignerBenchmark.legacySignedQuery(new HashMap<>(params)));
+    }
+
+    @Test
+    void encodeMatchesUrlEncoder() {
+        Random random = new Random(42);
+        for (int run = 0; run < 2_000; run++) {
+            StringBuilder value = new StringBuilder();
+            for (int i = random.nextInt(20); i > 0; i--) {
+                switch (random.nextInt(4)) {
+                    case 0 -> value.append((char) random.nextInt(0x80));
+                    case 1 -> value.append((char) (0x80 + random.nextInt(0x700)));
+                    case 2 -> value.appendCodePoint(0x1F600 + random.nextInt(50));
+                    default -> value.append(' ');
+                }
+            }
+            StringBuilder encoded = new StringBuilder();
+            VNPaySigner.encode(value.toString(), encoded);
+            assertThat(encoded.toString()).isEqualTo(URLEncoder.encode(value.toString(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void verifyAcceptsSignedCallback() {
+        Map<String, String> callback = callback();
+
+        assertThat(signer.verify(callback)).isTrue();
+
+        callback.put(VNPaySigner.SECURE_HASH, callback.get(VNPaySigner.SECURE_HASH).toUpperCase());
+        assertThat(signer.verify(callback)).isTrue();
+    }
+
+    @Test
+    void verifyRejectsTamperedCallback() {
+        Map<String, String> tamperedAmount = callback();
+        tamperedAmount.put("vnp_Amount", "100");
+        assertThat(signer.verify(tamperedAmount)).isFalse();
+
+        Map<String, String> addedField = callback();
+        addedField.put("vnp_BankTranNo", "VNP000001");
+        assertThat(signer.verify(addedField)).isFalse();
+
+        Map<String, String> tamperedHash = callback();
+        String hash = tamperedHash.get(VNPaySigner.SECURE_HASH);
+        tamperedHash.put(VNPaySigner.SECURE_HASH, hash.substring(0, 127) + (hash.charAt(127) == '0' ? '1' : '0'));
+        assertThat(signer.verify(tamperedHash)).isFalse();
+
+        Map<String, String> notHex = callback();
+        notHex.put(VNPaySigner.SECURE_HASH, "zz" + hash.substring(2));
+        assertThat(signer.verify(notHex)).isFalse();
+
+        Map<String, String> missingHash = callback();
+        missingHash.remove(VNPaySigner.SECURE_HASH);
+        assertThat(signer.verify(missingHash)).isFalse();
+
+        assertThat(new VNPaySigner("another-secret").verify(callback())).isFalse();
+    }
+
+    /**
+     * Decoded query parameters of a return URL / IPN call signed with the secret key.
+     */
+    private Map<String, String> callback() {
+        Map<String, String> params = new HashMap<>(VNPaySignerBenchmark.paymentParams());
+        params.put("vnp_ResponseCode", "00");
+        params.put("vnp_TransactionNo", "14123456");
+        params.put("vnp_OrderInfo", "Thanh toan don hang:48213907");
+        String query = signer.buildSignedQuery(params);
+
+        Map<String, String> callback = new HashMap<>();
+        for (String pair : query.split("&")) {
+            String[] nameValue = pair.split("=", 2);
+            callback.put(URLDecoder.decode(nameValue[0], StandardCharsets.US_ASCII),
+                    URLDecoder.decode(nameValue[1], StandardCharsets.US_ASCII));
+        }
+        callback.put(VNPaySigner.SECURE_HASH_TYPE, "HmacSHA512");
+        return callback;
+    }
+}
@@ -1,7 +1,11 @@
 import apiClient from "../client";
-import type { ApiResponse } from "../../types/api/common.types";
+import type {
+  ApiResponse,
+  PaginatedResponse,
+} from "../../types/api/common.types";
 import type {
   CartResponse,
+  CartSummaryResponse,
   AddToCartRequest,
   CartItemUpdateRequest,
 } from "../../types/api/cart.types";
@@ -10,12 +14,15 @@ const CART_ENDPOINT = "/carts";
 
 export const cartApi = {
   /**
-   * Get all carts (Admin only)
+   * Get one page of cart summaries (Admin only)
    */
-  getAllCarts: async (): Promise<CartResponse[]> => {
-    const response = await apiClient.get<ApiResponse<CartResponse[]>>(
-      CART_ENDPOINT
-    );
+  getAllCarts: async (
+    page = 0,
+    size = 20
+  ): Promise<PaginatedResponse<CartSummaryResponse>> => {
+    const response = await apiClient.get<
+      ApiResponse<PaginatedResponse<CartSummaryResponse>>
+    >(CART_ENDPOINT, { params: { page, size } });
     return response.data.result;
   },
 
@@ -15,6 +15,16 @@ export type CartResponse = {
   active: boolean;
 };
 
+export type CartSummaryResponse = {
+  cartId: number;
+  userId: string;
+  username: string;
+  active: boolean;
+  itemCount: number;
+  totalQuantity: number;
+  totalPrice: number;
+};
+
 export type AddToCartRequest = {
   bookId: number;
 };